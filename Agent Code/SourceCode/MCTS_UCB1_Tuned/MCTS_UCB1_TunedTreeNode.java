@@ -3,10 +3,17 @@ package players.MCTS_UCB1_Tuned;
 import core.AbstractGameState;
 import core.actions.AbstractAction;
 import players.PlayerConstants;
+import players.searchCommon.EarlyStop;
+import players.searchCommon.Ponderer;
+import players.searchCommon.SearchDeadline;
+import players.searchCommon.SearchStats;
 import players.simple.RandomPlayer;
 import utilities.ElapsedCpuTimer;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -23,7 +30,7 @@ class MCTS_UCB1_TunedTreeNode {
     // Children of this node
     Map<AbstractAction, MCTS_UCB1_TunedTreeNode> children = new HashMap<>(); //是一个 Map<AbstractAction, BasicTreeNode>，存储当前节点下的子节点。键为动作（AbstractAction），值为其对应的子节点。
     // Depth of this node
-    final int depth;
+    int depth;
 
     // Total value of this node
     private double totValue; //累积值，表示从这个节点及其子树中的模拟回传的总得分。
@@ -36,7 +43,11 @@ class MCTS_UCB1_TunedTreeNode {
     // Parameters guiding the search
     private MCTS_UCB1_TunedPlayer player; //关联的 BasicMCTSPlayer 对象，包含 MCTS 参数和前向模型（Forward Model）。
     private Random rnd; //随机数生成器，用于选择动作时的随机性。
-    private RandomPlayer randomPlayer = new RandomPlayer();
+    // Counters and timings of the search, shared by all nodes of the tree
+    SearchStats stats;
+    // Hard deadline of the search, held by the root
+    private SearchDeadline deadline = SearchDeadline.NONE;
+    private RandomPlayer randomPlayer;
 
     // State in this node (closed loop)
     private AbstractGameState state; //当前节点对应的游戏状态，通过前向模型和执行动作来生成新的游戏状态。
@@ -46,6 +57,7 @@ class MCTS_UCB1_TunedTreeNode {
         this.fmCallsCount = 0;
         this.parent = parent;
         this.root = parent == null ? this : parent.root;
+        this.stats = parent == null ? new SearchStats() : parent.stats;
         totValue = 0.0;
         totValueSquared = 0.0; // 初始化平方和为0 /*添加的内容*/
         setState(state);
@@ -54,16 +66,29 @@ class MCTS_UCB1_TunedTreeNode {
         } else {
             depth = 0;
         }
+        stats.nodeCreated(depth);
         this.rnd = rnd;
+        randomPlayer = new RandomPlayer(rnd);
         randomPlayer.setForwardModel(player.getForwardModel());
     }
 
     /**
      * Performs full MCTS search, using the defined budget limits.
      */
-    void mctsSearch() { //MCTS 搜索的主循环，执行整个搜索过程。
+    void mctsSearch() {
+        mctsSearch(player.getParameters().budget);
+    }
+
+    /**
+     * Performs full MCTS search with the given budget, in units of the budget type.
+     */
+    void mctsSearch(int budget) { //MCTS 搜索的主循环，执行整个搜索过程。
+        long searchStart = System.nanoTime();
+        long allocatedStart = SearchStats.threadAllocatedBytes();
 
         MCTS_UCB1_Tuned params = player.getParameters(); //获取与当前玩家（player）相关的 MCTS 参数。params 包含了搜索预算、树的最大深度等配置。
+        deadline = SearchDeadline.start(params.hardDeadlineMs);
+        stats.budget = budget;
 
         // Variables for tracking time budget
         double avgTimeTaken; //记录每次迭代所花费的平均时间。
@@ -72,26 +97,40 @@ class MCTS_UCB1_TunedTreeNode {
         int remainingLimit = params.breakMS; //允许的最小剩余时间，当剩余时间小于此值时停止搜索。
         ElapsedCpuTimer elapsedTimer = new ElapsedCpuTimer(); //用于跟踪总时间消耗的计时器。
         if (params.budgetType == BUDGET_TIME) { //如果预算类型是时间（BUDGET_TIME），则将搜索的总时间预算（params.budget）设置给计时器。
-            elapsedTimer.setMaxTimeMillis(params.budget);
+            elapsedTimer.setMaxTimeMillis(budget);
         }
 
         // Tracking number of iterations for iteration budget
         int numIters = 0; //用于跟踪完成的 MCTS 迭代次数。
+        // A reused root has counted calls before this search
+        int fmCallsStart = fmCallsCount;
 
         boolean stop = false; //stop 用于控制主循环的停止条件，当 stop 为 true 时，循环结束。
 
         while (!stop) {
+            // Past the hard deadline, keep what has been found so far
+            if (deadline.isExpired()) {
+                stats.deadlineExpired = true;
+                break;
+            }
             // New timer for this iteration
-            ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer(); //每次迭代都重新初始化一个新的计时器，跟踪该迭代的时间消耗。
+            ElapsedCpuTimer elapsedTimerIteration = params.budgetType == BUDGET_TIME ? new ElapsedCpuTimer() : null; //每次迭代都重新初始化一个新的计时器，跟踪该迭代的时间消耗。
 
             // Selection + expansion: navigate tree until a node not fully expanded is found, add a new node to the tree
+            long phaseStart = System.nanoTime();
             MCTS_UCB1_TunedTreeNode selected = treePolicy(); //从当前根节点沿着树向下遍历，直到找到尚未完全扩展的节点，然后扩展一个新的节点。
+            long treePolicyEnd = System.nanoTime();
+            stats.treePolicyNanos += treePolicyEnd - phaseStart;
             // Monte carlo rollout: return value of MC rollout from the newly added node
             double delta = selected.rollOut(); //对选择出的节点执行蒙特卡洛模拟（Monte Carlo Rollout），从该节点的状态随机进行游戏，直到游戏结束或达到指定深度。rollOut() 返回模拟的得分 delta。
+            long rolloutEnd = System.nanoTime();
+            stats.rolloutNanos += rolloutEnd - treePolicyEnd;
             // Back up the value of the rollout through the tree
             selected.backUp(delta); //将蒙特卡洛模拟的结果（delta）回溯到父节点及其祖先节点，更新这些节点的累积值和访问次数。
+            stats.backupNanos += System.nanoTime() - rolloutEnd;
             // Finished iteration
             numIters++; //每完成一次迭代，增加迭代次数。
+            stats.iterations++;
 
             // Check stopping condition
             PlayerConstants budgetType = params.budgetType; //获取当前使用的预算类型（时间、迭代次数或前向模型调用次数）。
@@ -103,12 +142,27 @@ class MCTS_UCB1_TunedTreeNode {
                 stop = remaining <= 2 * avgTimeTaken || remaining <= remainingLimit;
             } else if (budgetType == BUDGET_ITERATIONS) { //如果使用迭代次数预算（BUDGET_ITERATIONS），则检查迭代次数是否达到设定的迭代次数上限（params.budget），是则停止搜索。
                 // Iteration budget
-                stop = numIters >= params.budget;
+                stop = numIters >= budget;
             } else if (budgetType == BUDGET_FM_CALLS) { //如果使用前向模型调用次数预算（BUDGET_FM_CALLS），则检查前向模型调用次数是否超出预算，是则停止搜索。
                 // FM calls budget
-                stop = fmCallsCount > params.budget;
+                stop = fmCallsCount - fmCallsStart > budget;
+            }
+
+            // Every earlyStopInterval iterations, stop once the choice at the root cannot change
+            if (!stop && params.earlyStopInterval > 0 && numIters % params.earlyStopInterval == 0
+                    && rootSettled(EarlyStop.remainingIterations(budgetType, budget, numIters,
+                    fmCallsCount - fmCallsStart, System.nanoTime() - searchStart), params.earlyStopZ)) {
+                stats.stoppedEarly = true;
+                stop = true;
             }
         }
+        deadline.cancel();
+        stats.searchNanos = System.nanoTime() - searchStart;
+        stats.budgetUsed = params.budgetType == BUDGET_ITERATIONS ? numIters
+                : params.budgetType == BUDGET_FM_CALLS ? fmCallsCount - fmCallsStart
+                : (int) (stats.searchNanos / 1_000_000);
+        if (allocatedStart >= 0)
+            stats.allocatedBytes = SearchStats.threadAllocatedBytes() - allocatedStart;
     }
 
     /**
@@ -124,7 +178,7 @@ class MCTS_UCB1_TunedTreeNode {
 
         // Keep iterating while the state reached is not terminal and the depth of the tree is not exceeded
         while (cur.state.isNotTerminal() && cur.depth < player.getParameters().maxTreeDepth) { //这是一个循环，遍历树结构。该循环继续执行，直到达到以下两个停止条件中的任意一个：当前状态是否为非终止状态（即游戏还没结束），确保在非终止状态下继续扩展。或当前节点的深度小于玩家设置的最大树深度，避免树的深度超过预定值。
-            if (!cur.unexpandedActions().isEmpty()) { //返回当前节点中还未被扩展的动作列表。如果这个列表不为空，意味着当前节点还可以扩展出新的子节点。
+            if (cur.hasUnexpandedActions()) { //返回当前节点中还未被扩展的动作列表。如果这个列表不为空，意味着当前节点还可以扩展出新的子节点。
                 // We have an unexpanded action
                 cur = cur.expand(); //扩展当前节点，创建一个新的子节点并返回它。扩展意味着从当前节点选择一个未扩展的动作，并基于该动作生成新的节点。
                 return cur;
@@ -160,26 +214,41 @@ class MCTS_UCB1_TunedTreeNode {
     //  如果 children.get(a) == null，意味着这个动作 a 尚未扩展为一个子节点。
     //.collect(toList()) 将经过过滤的动作收集为一个 List<AbstractAction>，并将其返回。
 
+    /**
+     * Allocation-free check used on every step of the tree policy.
+     *
+     * @return true if at least one action from this State has not been expanded yet
+     */
+    private boolean hasUnexpandedActions() {
+        for (MCTS_UCB1_TunedTreeNode child : children.values()) {
+            if (child == null)
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Expands the node by creating a new random child node and adding to the tree.
      *
      * @return - new child node.
      */
     private MCTS_UCB1_TunedTreeNode expand() { //扩展当前节点，随机选择一个未选择的动作，并创建一个新的子节点，将其添加到树中。
+        long expandStart = System.nanoTime();
         // Find random child not already created
-        Random r = new Random(player.getParameters().getRandomSeed()); //创建一个随机数生成器，用来从未扩展的动作列表中随机选择一个动作。这里用的是 player.getParameters().getRandomSeed()，确保随机性可以通过固定的种子进行控制，便于复现实验结果。返回（设置好或随机生成的）Randomseed
         // pick a random unchosen action
         List<AbstractAction> notChosen = unexpandedActions(); //获取当前节点中还未被选择并扩展的动作列表，存储在 notChosen 中。这些动作可以用来生成新的子节点。
-        AbstractAction chosen = notChosen.get(r.nextInt(notChosen.size())); //r.nextInt(notChosen.size())：使用随机数生成器 r 从未扩展的动作中随机选择一个动作的索引。notChosen.get(...)：根据生成的随机索引，从未扩展动作列表中选择该动作，并将其存储在 chosen 中。
+        AbstractAction chosen = notChosen.get(rnd.nextInt(notChosen.size())); //r.nextInt(notChosen.size())：使用随机数生成器 r 从未扩展的动作中随机选择一个动作的索引。notChosen.get(...)：根据生成的随机索引，从未扩展动作列表中选择该动作，并将其存储在 chosen 中。
 
         // copy the current state and advance it using the chosen action
         // we first copy the action so that the one stored in the node will not have any state changes
         AbstractGameState nextState = state.copy(); //对当前的游戏状态 state 进行深拷贝，生成一个独立的副本 nextState。这样可以确保当前节点的状态不会被修改。
+        stats.stateCopies++;
         advance(nextState, chosen.copy()); //使用选中的动作 chosen（也进行了拷贝操作）推进游戏状态。advance() 方法基于所选动作更新游戏状态，模拟该动作的执行。
 
         // then instantiate a new node
         MCTS_UCB1_TunedTreeNode tn = new MCTS_UCB1_TunedTreeNode(player, this, nextState, rnd); //创建一个新的树节点 tn。新节点基于以下参数初始化
         children.put(chosen, tn); //将新扩展的子节点 tn 以及对应的动作 chosen 存储在当前节点的 children（子节点集合）中，建立动作和子节点的映射。
+        stats.expansionNanos += System.nanoTime() - expandStart;
         return tn;
     }
 
@@ -191,11 +260,12 @@ class MCTS_UCB1_TunedTreeNode {
      */
     private void advance(AbstractGameState gs, AbstractAction act) { //将游戏状态推进到下一步，即应用给定的动作，并计算下一个状态。
         player.getForwardModel().next(gs, act); //gs：表示当前游戏状态，类型为 AbstractGameState，是游戏的抽象表示。 act：表示要执行的动作，类型为 AbstractAction，是对当前状态执行的动作。
+        stats.fmCalls++;
         root.fmCallsCount++; //root.fmCallsCount++ 增加根节点的 fmCallsCount 计数器。
     } //player.getForwardModel() 返回当前玩家使用的前向模型（ForwardModel），这是负责模拟游戏进展的逻辑类。
     //next(gs, act) 调用前向模型的 next 方法，将当前游戏状态 gs 和动作 act 作为参数，执行该动作并将游戏状态推进到下一步。这一步会模拟应用某个动作后的游戏状态变化，决定游戏的下一步是什么。
 
-    private AbstractAction ucb() { //UCB1 算法的实现。通过权衡利用（选择访问次数最多的子节点）和探索（选择访问次数较少的节点），选择最佳的子节点进行扩展。该方法还会根据是玩家回合还是对手回合，调整计算公式。
+    AbstractAction ucb() { //UCB1 算法的实现。通过权衡利用（选择访问次数最多的子节点）和探索（选择访问次数较少的节点），选择最佳的子节点进行扩展。该方法还会根据是玩家回合还是对手回合，调整计算公式。
         // Find child with highest UCB value, maximising for ourselves and minimizing for opponent
         AbstractAction bestAction = null; //bestAction 初始化为 null，用于存储当前找到的最佳动作。
         double bestValue = -Double.MAX_VALUE; //初始化为负的最大值，作为比较的起始点。
@@ -251,12 +321,15 @@ class MCTS_UCB1_TunedTreeNode {
      *
      * @return - value of rollout.
      */
-    private double rollOut() { //执行 Monte Carlo 模拟，从当前状态开始一直进行到游戏结束或达到指定深度。模拟完成后，评估终局状态，并返回一个启发式评分。
+    double rollOut() { //执行 Monte Carlo 模拟，从当前状态开始一直进行到游戏结束或达到指定深度。模拟完成后，评估终局状态，并返回一个启发式评分。
         int rolloutDepth = 0; // counting from end of tree //rolloutDepth 变量初始化为 0，用于计数，从树的末尾开始计算，表示当前模拟的深度。
 
         // If rollouts are enabled, select actions for the rollout in line with the rollout policy
-        AbstractGameState rolloutState = state.copy(); //复制当前的游戏状态 state，以便在模拟中使用。这样可以确保在模拟过程中不会修改原始状态，保持其不变。
-        if (player.getParameters().rolloutLength > 0) { //检查玩家的参数中是否启用了 rollouts，具体是看 rolloutLength 是否大于 0。如果启用，则进入以下循环。
+        // The heuristic only reads the state, so the copy is only needed when the rollout will advance it
+        AbstractGameState rolloutState = state;
+        if (player.getParameters().rolloutLength > 0 && state.isNotTerminal()) { //检查玩家的参数中是否启用了 rollouts，具体是看 rolloutLength 是否大于 0。如果启用，则进入以下循环。
+            rolloutState = state.copy(); //复制当前的游戏状态 state，以便在模拟中使用。这样可以确保在模拟过程中不会修改原始状态，保持其不变。
+            stats.stateCopies++;
             while (!finishRollout(rolloutState, rolloutDepth)) { //这个循环将持续进行，直到达到结束条件（由 finishRollout 方法决定）。该方法检查是否应停止模拟，可能基于当前状态或深度。
                 AbstractAction next = randomPlayer.getAction(rolloutState, randomPlayer.getForwardModel().computeAvailableActions(rolloutState, randomPlayer.parameters.actionSpace)); //计算在当前状态下可用的动作。然后 randomPlayer.getAction 从这些可用的动作中随机选择一个动作。
                 advance(rolloutState, next); //使用所选的 next 动作调用 advance 方法，将模拟的状态 rolloutState 推进到下一步。
@@ -265,6 +338,7 @@ class MCTS_UCB1_TunedTreeNode {
         }
         // Evaluate final state and return normalised score
         double value = player.getParameters().getHeuristic().evaluateState(rolloutState, player.getPlayerID()); //一旦模拟结束，使用玩家的启发式函数评估最终的 rolloutState。evaluateState 方法返回一个评估值，通常是基于游戏状态的评分。
+        stats.heuristicEvals++;
         if (Double.isNaN(value)) //检查评估值 value 是否为 NaN（不是数字），如果是，则抛出 AssertionError，表示启发式值不合法，应该返回一个有效的数值。
             throw new AssertionError("Illegal heuristic value - should be a number");
         return value;
@@ -278,6 +352,8 @@ class MCTS_UCB1_TunedTreeNode {
      * @return - true if rollout finished, false otherwise
      */
     private boolean finishRollout(AbstractGameState rollerState, int depth) {
+        if (root.deadline.isExpired())
+            return true;
         if (depth >= player.getParameters().rolloutLength)
             return true;
 
@@ -290,7 +366,7 @@ class MCTS_UCB1_TunedTreeNode {
      *
      * @param result - value of rollout to backup
      */
-    private void backUp(double result) { //将模拟的结果值从当前节点向上回传到根节点，更新各个节点的访问次数和累积值。
+    void backUp(double result) { //将模拟的结果值从当前节点向上回传到根节点，更新各个节点的访问次数和累积值。
         MCTS_UCB1_TunedTreeNode n = this;
         while (n != null) {
             n.nVisits++;
@@ -333,4 +409,126 @@ class MCTS_UCB1_TunedTreeNode {
         return bestAction;
     }
 
+    /**
+     * @param remainingIterations Iterations the budget is likely to allow still.
+     * @param z Standard errors for the confidence test; 0 to only test visits.
+     * @return Whether bestAction() is settled: the most visited child cannot be overtaken in the
+     * remaining iterations, or with z above 0, every child is expanded and its value interval lies
+     * below the leader's.
+     */
+    boolean rootSettled(double remainingIterations, double z) {
+        MCTS_UCB1_TunedTreeNode leader = null, runnerUp = null;
+        boolean expanded = true;
+        for (MCTS_UCB1_TunedTreeNode child : children.values()) {
+            if (child == null) {
+                expanded = false;
+            } else if (leader == null || child.nVisits > leader.nVisits) {
+                runnerUp = leader;
+                leader = child;
+            } else if (runnerUp == null || child.nVisits > runnerUp.nVisits) {
+                runnerUp = child;
+            }
+        }
+        if (leader == null)
+            return false;
+        if (EarlyStop.cannotOvertake(leader.nVisits, runnerUp == null ? 0 : runnerUp.nVisits, remainingIterations))
+            return true;
+        if (z <= 0 || !expanded)
+            return false;
+        for (MCTS_UCB1_TunedTreeNode child : children.values()) {
+            if (child != leader && !EarlyStop.separated(leader.totValue, leader.totValueSquared, leader.nVisits,
+                    child.totValue, child.totValueSquared, child.nVisits, z))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param actual What the player sees at the end of the actions.
+     * @return The node reached from this one by the given actions; null if actions is null, the
+     * tree has not tried them, a new round has begun since this node, or the node's state does not
+     * match actual (see Ponderer.sameObservation).
+     */
+    MCTS_UCB1_TunedTreeNode descendant(List<AbstractAction> actions, AbstractGameState actual) {
+        // The tree dealt the next round at random
+        if (actions == null || state.getRoundCounter() != actual.getRoundCounter())
+            return null;
+        MCTS_UCB1_TunedTreeNode node = this;
+        for (AbstractAction action : actions) {
+            node = node.children.get(action);
+            if (node == null)
+                return null;
+        }
+        return Ponderer.sameObservation(node.state, actual, player.getPlayerID()) ? node : null;
+    }
+
+    /**
+     * Cuts this node from its parent so the next search can carry on from it with what the tree
+     * already knows: the subtree keeps its visits and values, and gets fresh statistics and the
+     * new decision's random numbers.
+     *
+     * @param newState The state the player now sees, with the children brought in line with its
+     *                 available actions; null to keep the node's own state.
+     * @return This node, now a root.
+     */
+    MCTS_UCB1_TunedTreeNode rootify(AbstractGameState newState, Random rnd) {
+        if (newState != null) {
+            state = newState;
+            Map<AbstractAction, MCTS_UCB1_TunedTreeNode> available = new HashMap<>();
+            for (AbstractAction action : player.getForwardModel().computeAvailableActions(state, player.getParameters().actionSpace)) {
+                available.put(action, children.get(action));
+            }
+            children = available;
+        }
+        parent = null;
+        // The selection terms take ratios and logs of this count, so it goes on from the subtree's visits
+        fmCallsCount = nVisits;
+        SearchStats fresh = new SearchStats();
+        fresh.reusedVisits = nVisits;
+        int shift = depth;
+        Deque<MCTS_UCB1_TunedTreeNode> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            MCTS_UCB1_TunedTreeNode node = pending.pop();
+            node.root = this;
+            node.depth -= shift;
+            node.stats = fresh;
+            node.rnd = rnd;
+            node.randomPlayer = new RandomPlayer(rnd);
+            node.randomPlayer.setForwardModel(player.getForwardModel());
+            fresh.nodeCreated(node.depth);
+            for (MCTS_UCB1_TunedTreeNode child : node.children.values()) {
+                if (child != null)
+                    pending.push(child);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Keeps searching from this root on the ponderer's thread until it is stopped, or for maxMillis.
+     */
+    void ponder(Ponderer ponderer, double cpuShare, long maxMillis) {
+        if (!state.isNotTerminal())
+            return;
+        deadline = SearchDeadline.stoppable(maxMillis);
+        ponderer.start(deadline, () -> {
+            MCTS_UCB1_TunedTreeNode selected = treePolicy();
+            double delta = selected.rollOut();
+            selected.backUp(delta);
+        }, cpuShare);
+    }
+
+    /**
+     * @return Visit count of each expanded child, keyed by the action leading to it
+     */
+    Map<AbstractAction, Integer> childVisits() {
+        Map<AbstractAction, Integer> visits = new LinkedHashMap<>();
+        for (Map.Entry<AbstractAction, MCTS_UCB1_TunedTreeNode> entry : children.entrySet()) {
+            if (entry.getValue() != null)
+                visits.put(entry.getKey(), entry.getValue().nVisits);
+        }
+        return visits;
+    }
+
 }
@@ -0,0 +1,137 @@
+package games.sushigo;
+
+import core.AbstractGameState;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Scores a fixed set of Sushi Go states under many SushiGoHeuristic weightings at once.
+ * SushiGoHeuristic is linear in its FACTOR_* parameters, so each state is reduced once to the
+ * unweighted value behind every factor, by the same SushiGoHeuristic.factorTerms() the scalar
+ * evaluation adds up. A weighting is then just a dot product per state. Offline sweeps and tuner
+ * fitness checks can score M weight vectors over N recorded states without going back to the states.
+ */
+public class SushiGoBatchEvaluator {
+
+    /** Factor order used for feature columns and weight vectors, as registered by SushiGoHeuristic. */
+    public static final String[] FACTOR_NAMES = SushiGoHeuristic.FACTOR_NAMES.clone();
+    public static final int N_FACTORS = FACTOR_NAMES.length;
+
+    private final int nStates;
+    // Column-major N_FACTORS x nStates: the values of factor f over all states are contiguous
+    private final double[] features;
+    // Weight-independent part of each state's value (the fixed win/lose scores of finished games)
+    private final double[] constants;
+
+    /**
+     * Extracts the features of every state.
+     * @param states The states to score.
+     * @param playerIds The player each state is evaluated for, one per state.
+     */
+    public SushiGoBatchEvaluator(List<? extends AbstractGameState> states, int[] playerIds) {
+        if (states.size() != playerIds.length)
+            throw new IllegalArgumentException("Need one player ID per state: " + states.size() + " states, " + playerIds.length + " IDs");
+        nStates = states.size();
+        features = new double[N_FACTORS * nStates];
+        constants = new double[nStates];
+        SushiGoFeatureTracker tracker = new SushiGoFeatureTracker();
+        double[] row = new double[N_FACTORS];
+        SushiGoHeuristic.WeightedTables unit = null;
+        for (int n = 0; n < nStates; n++) {
+            SGGameState state = (SGGameState) states.get(n);
+            SGParameters params = (SGParameters) state.getGameParameters();
+            if (unit == null || unit.unit != SushiGoScoreTables.forParams(params))
+                unit = SushiGoHeuristic.unitTables(params);
+            constants[n] = extractFeatures(state, playerIds[n], tracker, unit, row);
+            for (int f = 0; f < N_FACTORS; f++) {
+                features[f * nStates + n] = row[f];
+            }
+        }
+    }
+
+    /**
+     * Extracts the unweighted value behind each factor through SushiGoHeuristic.factorTerms.
+     * @param state The state to evaluate.
+     * @param playerId The player to evaluate it for.
+     * @param tracker Scratch tracker, reset from the state.
+     * @param unit SushiGoHeuristic.unitTables() for the state's parameters.
+     * @param out Destination for N_FACTORS values.
+     * @return The weight-independent part of the value.
+     */
+    static double extractFeatures(SGGameState state, int playerId, SushiGoFeatureTracker tracker,
+                                  SushiGoHeuristic.WeightedTables unit, double[] out) {
+        double result = SushiGoHeuristic.resultValue(state, playerId);
+        if (!Double.isNaN(result)) {
+            Arrays.fill(out, 0);
+            return result;
+        }
+        tracker.resetFor(state, playerId);
+        SushiGoHeuristic.factorTerms(tracker, playerId, state.getGameScore(playerId), unit, out, 0);
+        return 0;
+    }
+
+    /**
+     * @param heuristic A configured heuristic.
+     * @return Its factors as a weight vector in FACTOR_NAMES order.
+     */
+    public static double[] weightsOf(SushiGoHeuristic heuristic) {
+        return heuristic.factors();
+    }
+
+    /**
+     * Scores all states under one weighting.
+     * @param weights N_FACTORS weights in FACTOR_NAMES order.
+     * @return One value per state.
+     */
+    public double[] evaluate(double[] weights) {
+        return evaluate(new double[][]{weights})[0];
+    }
+
+    /**
+     * Scores all states under every weighting. For each weighting, each factor's column is scaled
+     * and added to the values in one stride-1 loop over the states, which the JIT can vectorise.
+     * @param weights M weight vectors, each of N_FACTORS weights in FACTOR_NAMES order.
+     * @return values[m][n], the value of state n under weighting m.
+     */
+    public double[][] evaluate(double[][] weights) {
+        int nWeights = weights.length;
+        double[][] values = new double[nWeights][];
+        for (int m = 0; m < nWeights; m++) {
+            if (weights[m].length != N_FACTORS)
+                throw new IllegalArgumentException("Weight vector " + m + " has " + weights[m].length + " entries, expected " + N_FACTORS);
+            double[] value = constants.clone();
+            for (int f = 0; f < N_FACTORS; f++) {
+                double w = weights[m][f];
+                int column = f * nStates;
+                for (int n = 0; n < nStates; n++) {
+                    value[n] += w * features[column + n];
+                }
+            }
+            values[m] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Checks the batch against SushiGoHeuristic.evaluateState.
+     * @param heuristic A configured heuristic.
+     * @param states The states this evaluator was built from.
+     * @param playerIds Their player IDs.
+     * @return The largest absolute difference between the batch value under the heuristic's
+     * weights and evaluateState, over all states.
+     */
+    public double maxDifference(SushiGoHeuristic heuristic, List<? extends AbstractGameState> states, int[] playerIds) {
+        double[] batch = evaluate(weightsOf(heuristic));
+        double max = 0;
+        for (int n = 0; n < nStates; n++) {
+            max = Math.max(max, Math.abs(batch[n] - heuristic.evaluateState(states.get(n), playerIds[n])));
+        }
+        return max;
+    }
+
+    public int getNStates() {
+        return nStates;
+    }
+}
@@ -0,0 +1,157 @@
+package games.sushigo;
+
+import core.AbstractGameState;
+import core.actions.AbstractAction;
+import core.components.Deck;
+import evaluation.optimisation.TunableParameters;
+import games.sushigo.actions.ChooseCard;
+import games.sushigo.cards.SGCard;
+import games.sushigo.cards.SGCard.SGCardType;
+import players.searchCommon.IDecisionImportance;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * How much a Sushi Go pick matters, for BudgetManager. A pick between cards of the same kind makes
+ * no difference. Otherwise picks weigh more early in a round, when the hand is large and most of
+ * the round depends on them, and less towards its end. Picks that can take a Maki card in a close
+ * Maki race, or a Pudding in a close Pudding race, weigh more, and Puddings most in the last round,
+ * when the Pudding scores are settled.
+ */
+public class SushiGoDecisionImportance extends TunableParameters implements IDecisionImportance {
+
+    // Weight of the last pick of a round that still has a choice
+    double WEIGHT_LATE_PICK = 0.5;
+    // Added in proportion to how much of the round's hand is left
+    double WEIGHT_EARLY_PICK = 1.0;
+    // Added when a Maki card can be taken and an opponent is within MAKI_MARGIN icons
+    double WEIGHT_MAKI_RACE = 0.5;
+    int MAKI_MARGIN = 3;
+    // Added when a Pudding can be taken and an opponent is within PUDDING_MARGIN puddings
+    double WEIGHT_PUDDING_RACE = 0.5;
+    // Added instead in the last round
+    double WEIGHT_LAST_PUDDING = 1.0;
+    int PUDDING_MARGIN = 2;
+
+    public SushiGoDecisionImportance() {
+        addTunableParameter("WEIGHT_LATE_PICK", WEIGHT_LATE_PICK);
+        addTunableParameter("WEIGHT_EARLY_PICK", WEIGHT_EARLY_PICK);
+        addTunableParameter("WEIGHT_MAKI_RACE", WEIGHT_MAKI_RACE);
+        addTunableParameter("MAKI_MARGIN", MAKI_MARGIN);
+        addTunableParameter("WEIGHT_PUDDING_RACE", WEIGHT_PUDDING_RACE);
+        addTunableParameter("WEIGHT_LAST_PUDDING", WEIGHT_LAST_PUDDING);
+        addTunableParameter("PUDDING_MARGIN", PUDDING_MARGIN);
+    }
+
+    @Override
+    public void _reset() {
+        WEIGHT_LATE_PICK = (double) getParameterValue("WEIGHT_LATE_PICK");
+        WEIGHT_EARLY_PICK = (double) getParameterValue("WEIGHT_EARLY_PICK");
+        WEIGHT_MAKI_RACE = (double) getParameterValue("WEIGHT_MAKI_RACE");
+        MAKI_MARGIN = (int) getParameterValue("MAKI_MARGIN");
+        WEIGHT_PUDDING_RACE = (double) getParameterValue("WEIGHT_PUDDING_RACE");
+        WEIGHT_LAST_PUDDING = (double) getParameterValue("WEIGHT_LAST_PUDDING");
+        PUDDING_MARGIN = (int) getParameterValue("PUDDING_MARGIN");
+    }
+
+    @Override
+    public double importance(AbstractGameState gs, List<AbstractAction> actions, int playerId) {
+        SGGameState state = (SGGameState) gs;
+        Deck<SGCard> hand = state.getPlayerHands().get(playerId);
+
+        // Cards of the same type and count are interchangeable
+        Set<Integer> options = new HashSet<>();
+        boolean maki = false, pudding = false;
+        for (AbstractAction action : actions) {
+            if (!(action instanceof ChooseCard))
+                return 1.0;
+            ChooseCard choice = (ChooseCard) action;
+            SGCard card = hand.get(choice.cardIdx);
+            options.add((card.type.ordinal() * 8 + card.count) * 2 + (choice.useChopsticks ? 1 : 0));
+            maki |= card.type == SGCardType.Maki;
+            pudding |= card.type == SGCardType.Pudding;
+        }
+        if (options.size() <= 1)
+            return 0;
+
+        int inHand = hand.getSize();
+        int roundHand = inHand + state.getPlayedCards().get(playerId).getSize();
+        double weight = WEIGHT_LATE_PICK;
+        if (roundHand > 2)
+            weight += WEIGHT_EARLY_PICK * (inHand - 2) / (roundHand - 2);
+
+        if (maki && closeRace(state, playerId, SGCardType.Maki, MAKI_MARGIN, false))
+            weight += WEIGHT_MAKI_RACE;
+        if (pudding && closeRace(state, playerId, SGCardType.Pudding, PUDDING_MARGIN, true)) {
+            int nRounds = ((SGParameters) state.getGameParameters()).nRounds;
+            weight += state.getRoundCounter() == nRounds - 1 ? WEIGHT_LAST_PUDDING : WEIGHT_PUDDING_RACE;
+        }
+        return weight;
+    }
+
+    /**
+     * @return Whether some opponent has within margin as many cards of the type as the player.
+     */
+    private static boolean closeRace(SGGameState state, int playerId, SGCardType type, int margin, boolean allGame) {
+        int own = count(state, playerId, type, allGame);
+        for (int p = 0; p < state.getNPlayers(); p++) {
+            if (p != playerId && Math.abs(count(state, p, type, allGame) - own) <= margin)
+                return true;
+        }
+        return false;
+    }
+
+    private static int count(SGGameState state, int playerId, SGCardType type, boolean allGame) {
+        return allGame ? state.getPlayedCardTypesAllGame()[playerId].get(type).getValue()
+                : state.getPlayedCardTypes(type, playerId).getValue();
+    }
+
+    /**
+     * Every hand is passed on until its last card, which is forced, so each round has one decision
+     * fewer than the cards dealt.
+     */
+    @Override
+    public int decisionsLeft(AbstractGameState gs, int playerId) {
+        SGGameState state = (SGGameState) gs;
+        int inHand = state.getPlayerHands().get(playerId).getSize();
+        int roundHand = inHand + state.getPlayedCards().get(playerId).getSize();
+        int roundsAfter = ((SGParameters) state.getGameParameters()).nRounds - 1 - state.getRoundCounter();
+        return Math.max(inHand - 1, 0) + Math.max(roundsAfter, 0) * Math.max(roundHand - 1, 0);
+    }
+
+    @Override
+    protected SushiGoDecisionImportance _copy() {
+        SushiGoDecisionImportance copy = new SushiGoDecisionImportance();
+        copy.WEIGHT_LATE_PICK = WEIGHT_LATE_PICK;
+        copy.WEIGHT_EARLY_PICK = WEIGHT_EARLY_PICK;
+        copy.WEIGHT_MAKI_RACE = WEIGHT_MAKI_RACE;
+        copy.MAKI_MARGIN = MAKI_MARGIN;
+        copy.WEIGHT_PUDDING_RACE = WEIGHT_PUDDING_RACE;
+        copy.WEIGHT_LAST_PUDDING = WEIGHT_LAST_PUDDING;
+        copy.PUDDING_MARGIN = PUDDING_MARGIN;
+        return copy;
+    }
+
+    @Override
+    protected boolean _equals(Object o) {
+        if (o instanceof SushiGoDecisionImportance) {
+            SushiGoDecisionImportance other = (SushiGoDecisionImportance) o;
+            return other.WEIGHT_LATE_PICK == WEIGHT_LATE_PICK &&
+                    other.WEIGHT_EARLY_PICK == WEIGHT_EARLY_PICK &&
+                    other.WEIGHT_MAKI_RACE == WEIGHT_MAKI_RACE &&
+                    other.MAKI_MARGIN == MAKI_MARGIN &&
+                    other.WEIGHT_PUDDING_RACE == WEIGHT_PUDDING_RACE &&
+                    other.WEIGHT_LAST_PUDDING == WEIGHT_LAST_PUDDING &&
+                    other.PUDDING_MARGIN == PUDDING_MARGIN;
+        }
+        return false;
+    }
+
+    @Override
+    public SushiGoDecisionImportance instantiate() {
+        return this._copy();
+    }
+}
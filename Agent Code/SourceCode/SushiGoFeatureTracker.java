@@ -0,0 +1,158 @@
+package games.sushigo;
+
+import core.components.Counter;
+import games.sushigo.cards.SGCard.SGCardType;
+
+import java.util.Arrays;
+
+
+/**
+ * Running card-type totals for every player of a Sushi Go game, used by SushiGoHeuristic.
+ * The tracker is reset once from a state, then synced after each action applied to it, so that
+ * later states can be scored without reading every counter again. Cards are chosen face down and
+ * revealed together at the end of the turn; sync() re-reads only the players whose table has
+ * changed since the last read, so after sync() the totals agree with the state whatever choices
+ * were already pending when the tracker was reset.
+ */
+public class SushiGoFeatureTracker {
+
+    static final SGCardType[] CARD_TYPES = SGCardType.values();
+
+    // Cards on the table this round, per player and card type (Maki counts icons, not cards)
+    int[][] counts = new int[0][CARD_TYPES.length];
+    // Puddings are kept for the whole game
+    int[] puddingAllGame = new int[0];
+    // Score counters as last read from the state
+    int[] scores = new int[0];
+    int nPlayers;
+    int round;
+    SGParameters params;
+    // Scratch for SushiGoHeuristic's per-factor terms
+    final double[] terms = new double[SushiGoHeuristic.N_FACTORS];
+
+    // Size of each player's table at the last read
+    private int[] tableSizes = new int[0];
+
+    /**
+     * Rebuilds all totals from the given state.
+     * @param state The state to read.
+     */
+    public void reset(SGGameState state) {
+        begin(state);
+        Counter[] playerScores = state.getPlayerScore();
+        for (int p = 0; p < nPlayers; p++) {
+            for (SGCardType type : CARD_TYPES) {
+                counts[p][type.ordinal()] = state.getPlayedCardTypes(type, p).getValue();
+            }
+            puddingAllGame[p] = state.getPlayedCardTypesAllGame()[p].get(SGCardType.Pudding).getValue();
+            scores[p] = playerScores[p].getValue();
+        }
+    }
+
+    private void begin(SGGameState state) {
+        nPlayers = state.getNPlayers();
+        if (counts.length != nPlayers) {
+            counts = new int[nPlayers][CARD_TYPES.length];
+            puddingAllGame = new int[nPlayers];
+            scores = new int[nPlayers];
+            tableSizes = new int[nPlayers];
+        }
+        params = (SGParameters) state.getGameParameters();
+        round = state.getRoundCounter();
+        for (int p = 0; p < nPlayers; p++) {
+            tableSizes[p] = state.getPlayedCards().get(p).getSize();
+        }
+    }
+
+    /**
+     * Rebuilds only the totals SushiGoHeuristic reads when scoring the given player: all of that
+     * player's card types, every player's Maki, puddings and score. Other counts are left at 0.
+     * @param state The state to read.
+     * @param playerId The player to be scored.
+     */
+    public void resetFor(SGGameState state, int playerId) {
+        begin(state);
+        Counter[] playerScores = state.getPlayerScore();
+        for (int p = 0; p < nPlayers; p++) {
+            if (p == playerId) {
+                for (SGCardType type : CARD_TYPES) {
+                    counts[p][type.ordinal()] = state.getPlayedCardTypes(type, p).getValue();
+                }
+            } else {
+                Arrays.fill(counts[p], 0);
+                counts[p][SGCardType.Maki.ordinal()] = state.getPlayedCardTypes(SGCardType.Maki, p).getValue();
+            }
+            puddingAllGame[p] = state.getPlayedCardTypesAllGame()[p].get(SGCardType.Pudding).getValue();
+            scores[p] = playerScores[p].getValue();
+        }
+    }
+
+    /**
+     * Applies a single played card to the totals.
+     * @param playerId The player who played the card.
+     * @param type The type of the card.
+     * @param amount How much the card adds to its type's counter (the icon count for Maki, otherwise 1).
+     */
+    public void cardPlayed(int playerId, SGCardType type, int amount) {
+        // The totals index lookup tables, so they never go below 0
+        counts[playerId][type.ordinal()] = Math.max(0, counts[playerId][type.ordinal()] + amount);
+        if (type == SGCardType.Pudding) {
+            puddingAllGame[playerId] = Math.max(0, puddingAllGame[playerId] + amount);
+        }
+    }
+
+    /**
+     * Brings the totals in line with the state after an action has been applied. The counts of each
+     * player whose table has changed size are re-read, and then the scores; the table is rebuilt
+     * once when a round ends and the played cards are cleared.
+     * @param state The state after the action.
+     */
+    public void sync(SGGameState state) {
+        if (state.getRoundCounter() != round || state.getNPlayers() != nPlayers) {
+            reset(state);
+            return;
+        }
+        boolean revealed = false;
+        for (int p = 0; p < nPlayers; p++) {
+            int size = state.getPlayedCards().get(p).getSize();
+            if (size == tableSizes[p])
+                continue;
+            for (SGCardType type : CARD_TYPES) {
+                counts[p][type.ordinal()] = state.getPlayedCardTypes(type, p).getValue();
+            }
+            puddingAllGame[p] = state.getPlayedCardTypesAllGame()[p].get(SGCardType.Pudding).getValue();
+            tableSizes[p] = size;
+            revealed = true;
+        }
+        if (revealed) {
+            Counter[] playerScores = state.getPlayerScore();
+            for (int p = 0; p < nPlayers; p++) {
+                scores[p] = playerScores[p].getValue();
+            }
+        }
+    }
+
+    public int getCount(int playerId, SGCardType type) {
+        return counts[playerId][type.ordinal()];
+    }
+
+    public int getPuddingAllGame(int playerId) {
+        return puddingAllGame[playerId];
+    }
+
+    public int getScore(int playerId) {
+        return scores[playerId];
+    }
+
+    public int getNPlayers() {
+        return nPlayers;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public SGParameters getParams() {
+        return params;
+    }
+}
@@ -2,12 +2,13 @@ package games.sushigo;
 
 import core.AbstractGameState;
 import core.CoreConstants;
-import core.components.Deck;
 import core.interfaces.IStateHeuristic;
 import evaluation.optimisation.TunableParameters;
-import games.sushigo.cards.SGCard;
 import games.sushigo.cards.SGCard.SGCardType;
-import core.components.Counter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -26,6 +27,14 @@ import core.components.Counter;
  */
 public class SushiGoHeuristic extends TunableParameters implements IStateHeuristic {
 
+    // Factor order of factors(), factorTerms() and SushiGoBatchEvaluator
+    static final String[] FACTOR_NAMES = {
+            "FACTOR_CURRENT_SCORE", "FACTOR_POTENTIAL_SCORE", "FACTOR_TEMPURA_SET", "FACTOR_SASHIMI_SET",
+            "FACTOR_DUMPLING_SET", "FACTOR_WASABI_VALUE", "FACTOR_MAKI_POSITION", "FACTOR_PUDDING_POSITION",
+            "FACTOR_CHOPSTICKS_VALUE"
+    };
+    static final int N_FACTORS = FACTOR_NAMES.length;
+
     // Base score factors
     double FACTOR_CURRENT_SCORE = 1.0;
     double FACTOR_POTENTIAL_SCORE = 0.8;
@@ -41,6 +50,12 @@ public class SushiGoHeuristic extends TunableParameters implements IStateHeurist
     double FACTOR_PUDDING_POSITION = 0.5;
     double FACTOR_CHOPSTICKS_VALUE = 0.3;
 
+    // Per-thread scratch totals for one-shot evaluations, so a shared heuristic stays thread-safe
+    private final ThreadLocal<SushiGoFeatureTracker> scratchFeatures = ThreadLocal.withInitial(SushiGoFeatureTracker::new);
+
+    // Factor-weighted lookup tables per set of game parameter values, cleared by _reset()
+    private final Map<SushiGoScoreTables, WeightedTables> tables = new ConcurrentHashMap<>();
+
     /**
      * Constructor for SushiGoHeuristic.
      * Initializes tunable parameters for the heuristic.
@@ -71,6 +86,7 @@ public class SushiGoHeuristic extends TunableParameters implements IStateHeurist
         FACTOR_MAKI_POSITION = (double) getParameterValue("FACTOR_MAKI_POSITION");
         FACTOR_PUDDING_POSITION = (double) getParameterValue("FACTOR_PUDDING_POSITION");
         FACTOR_CHOPSTICKS_VALUE = (double) getParameterValue("FACTOR_CHOPSTICKS_VALUE");
+        tables.clear();
     }
 
     /**
@@ -82,128 +98,196 @@ public class SushiGoHeuristic extends TunableParameters implements IStateHeurist
     @Override
     public double evaluateState(AbstractGameState gs, int playerId) {
         SGGameState state = (SGGameState) gs;
-        SGParameters params = (SGParameters) state.getGameParameters();
 
         // First check win/lose conditions and modify base score
-        double score = state.getGameScore(playerId);
-        if (gs.getPlayerResults()[playerId] == CoreConstants.GameResult.WIN_GAME)
-            return score * 1.5;
-        if (gs.getPlayerResults()[playerId] == CoreConstants.GameResult.LOSE_GAME)
-            return score * 0.5;
-
-        // Base score from current game state
-        score *= FACTOR_CURRENT_SCORE;
-
-        // Evaluate current board position
-        Counter[] scores = state.getPlayerScore();
-        double maxOppScore = 0;
-        for (int i = 0; i < state.getNPlayers(); i++) {
-            if (i != playerId) {
-                maxOppScore = Math.max(maxOppScore, scores[i].getValue());
-            }
-        }
-
-        // Add relative position to score
-        score += (scores[playerId].getValue() - maxOppScore) * FACTOR_CURRENT_SCORE;
-
-        // Evaluate sets in progress
-        evaluateSetsInProgress(state, playerId, params, score);
-
-        // Special card evaluations
-        score += evaluateSpecialCards(state, playerId, params);
+        double result = resultValue(state, playerId);
+        if (!Double.isNaN(result))
+            return result;
 
-        return score;
+        SushiGoFeatureTracker features = scratchFeatures.get();
+        features.resetFor(state, playerId);
+        return evaluateFeatures(features, playerId, state.getGameScore(playerId));
     }
 
     /**
-     * Evaluates the sets in progress for a given player.
-     * @param state The current game state.
-     * @param playerId The ID of the player.
-     * @param params The game parameters.
-     * @param score The current score to be modified.
+     * Evaluates an intermediate state from a tracker that has been kept up to date during a rollout,
+     * without reading the state again. Terminal states should still go through evaluateState.
+     * @param features The tracked totals.
+     * @param playerId The ID of the player for whom the state is being evaluated.
+     * @return The heuristic score for the given player.
      */
-    private void evaluateSetsInProgress(SGGameState state, int playerId, SGParameters params, double score) {
-        // Tempura sets
-        int tempuraCount = state.getPlayedCardTypes(SGCardType.Tempura, playerId).getValue();
-        score += (tempuraCount / 2) * params.valueTempuraPair * FACTOR_TEMPURA_SET;
-        if (tempuraCount % 2 == 1) {
-            score += params.valueTempuraPair * FACTOR_TEMPURA_SET * 0.3; // Partial set
-        }
+    public double evaluateState(SushiGoFeatureTracker features, int playerId) {
+        return evaluateFeatures(features, playerId, features.getScore(playerId));
+    }
 
-        // Sashimi sets
-        int sashimiCount = state.getPlayedCardTypes(SGCardType.Sashimi, playerId).getValue();
-        score += (sashimiCount / 3) * params.valueSashimiTriple * FACTOR_SASHIMI_SET;
-        if (sashimiCount % 3 > 0) {
-            score += params.valueSashimiTriple * FACTOR_SASHIMI_SET * (sashimiCount % 3) * 0.2; // Partial set
+    private double evaluateFeatures(SushiGoFeatureTracker features, int playerId, double score) {
+        double[] terms = features.terms;
+        factorTerms(features, playerId, score, weightedTables(features.getParams()), terms, 0);
+        double value = 0;
+        for (int f = 0; f < N_FACTORS; f++) {
+            value += terms[f];
         }
+        return value;
+    }
 
-        // Dumpling value
-        int dumplingCount = state.getPlayedCardTypes(SGCardType.Dumpling, playerId).getValue();
-        if (dumplingCount < params.valueDumpling.length) {
-            score += params.valueDumpling[dumplingCount] * FACTOR_DUMPLING_SET;
-        }
+    /**
+     * @return The fixed value of a game the player has won or lost; NaN while the game is open.
+     */
+    static double resultValue(AbstractGameState gs, int playerId) {
+        double score = gs.getGameScore(playerId);
+        if (gs.getPlayerResults()[playerId] == CoreConstants.GameResult.WIN_GAME)
+            return score * 1.5;
+        if (gs.getPlayerResults()[playerId] == CoreConstants.GameResult.LOSE_GAME)
+            return score * 0.5;
+        return Double.NaN;
     }
 
     /**
-     * Evaluates the special cards for a given player.
-     * @param state The current game state.
+     * Splits the value of an open game by factor, in FACTOR_NAMES order: term f is the part of the
+     * value that FACTOR_NAMES[f] scales. With the heuristic's own tables the terms add up to its
+     * value; with unitTables() they are the unweighted features SushiGoBatchEvaluator weighs.
+     * @param features The tracked card totals.
      * @param playerId The ID of the player.
-     * @param params The game parameters.
-     * @return The score contribution from special cards.
+     * @param score The player's game score.
+     * @param weighted The compiled lookup tables.
+     * @param out Destination for N_FACTORS terms.
+     * @param offset Index in out of the first term.
      */
-    private double evaluateSpecialCards(SGGameState state, int playerId, SGParameters params) {
-        double specialScore = 0.0;
-
-        // Wasabi value
-        if (state.getPlayedCardTypes(SGCardType.Wasabi, playerId).getValue() > 0) {
-            // Check for unused wasabi
-            int wasabiCount = state.getPlayedCardTypes(SGCardType.Wasabi, playerId).getValue();
-            int nigiriCount = state.getPlayedCardTypes(SGCardType.SquidNigiri, playerId).getValue() +
-                    state.getPlayedCardTypes(SGCardType.SalmonNigiri, playerId).getValue() +
-                    state.getPlayedCardTypes(SGCardType.EggNigiri, playerId).getValue();
-            if (wasabiCount > nigiriCount) {
-                specialScore += params.multiplierWasabi * FACTOR_WASABI_VALUE;
-            }
-        }
-
-        // Maki competition
-        int playerMaki = state.getPlayedCardTypes(SGCardType.Maki, playerId).getValue();
+    static void factorTerms(SushiGoFeatureTracker features, int playerId, double score, WeightedTables weighted,
+                            double[] out, int offset) {
+        // Base score, plus the relative position to the best opponent
+        double maxOppScore = 0;
         int maxOpponentMaki = 0;
-        for (int i = 0; i < state.getNPlayers(); i++) {
+        for (int i = 0; i < features.getNPlayers(); i++) {
             if (i != playerId) {
-                maxOpponentMaki = Math.max(maxOpponentMaki, state.getPlayedCardTypes(SGCardType.Maki, i).getValue());
+                maxOppScore = Math.max(maxOppScore, features.getScore(i));
+                maxOpponentMaki = Math.max(maxOpponentMaki, features.getCount(i, SGCardType.Maki));
             }
         }
+        out[offset] = (score + features.getScore(playerId) - maxOppScore) * weighted.factorCurrentScore;
+
+        // FACTOR_POTENTIAL_SCORE is registered but not used
+        out[offset + 1] = 0;
+
+        // Sets in progress
+        out[offset + 2] = weighted.tempura(features.getCount(playerId, SGCardType.Tempura));
+        out[offset + 3] = weighted.sashimi(features.getCount(playerId, SGCardType.Sashimi));
+        out[offset + 4] = weighted.dumpling(features.getCount(playerId, SGCardType.Dumpling));
+
+        // Unused wasabi
+        int wasabiCount = features.getCount(playerId, SGCardType.Wasabi);
+        int nigiriCount = features.getCount(playerId, SGCardType.SquidNigiri) +
+                features.getCount(playerId, SGCardType.SalmonNigiri) +
+                features.getCount(playerId, SGCardType.EggNigiri);
+        out[offset + 5] = wasabiCount > 0 && wasabiCount > nigiriCount ? weighted.wasabi : 0;
+
+        // Maki competition
+        int playerMaki = features.getCount(playerId, SGCardType.Maki);
         if (playerMaki >= maxOpponentMaki) {
-            specialScore += params.valueMakiMost * FACTOR_MAKI_POSITION;
+            out[offset + 6] = weighted.makiMost;
         } else if (playerMaki == maxOpponentMaki - 1) {
-            specialScore += params.valueMakiSecond * FACTOR_MAKI_POSITION;
+            out[offset + 6] = weighted.makiSecond;
+        } else {
+            out[offset + 6] = 0;
         }
 
         // Pudding position
-        if (state.getRoundCounter() == params.nRounds - 1) {
-            int playerPudding = state.getPlayedCardTypesAllGame()[playerId].get(SGCardType.Pudding).getValue();
+        out[offset + 7] = 0;
+        if (features.getRound() == weighted.lastRound) {
+            int playerPudding = features.getPuddingAllGame(playerId);
             int maxPudding = 0, minPudding = Integer.MAX_VALUE;
-            for (int i = 0; i < state.getNPlayers(); i++) {
+            for (int i = 0; i < features.getNPlayers(); i++) {
                 if (i != playerId) {
-                    int oppPudding = state.getPlayedCardTypesAllGame()[i].get(SGCardType.Pudding).getValue();
+                    int oppPudding = features.getPuddingAllGame(i);
                     maxPudding = Math.max(maxPudding, oppPudding);
                     minPudding = Math.min(minPudding, oppPudding);
                 }
             }
             if (playerPudding > maxPudding) {
-                specialScore += params.valuePuddingMost * FACTOR_PUDDING_POSITION;
+                out[offset + 7] = weighted.puddingMost;
             } else if (playerPudding < minPudding) {
-                specialScore += params.valuePuddingLeast * FACTOR_PUDDING_POSITION;
+                out[offset + 7] = weighted.puddingLeast;
             }
         }
 
-        // Chopsticks value
-        if (state.getPlayedCardTypes(SGCardType.Chopsticks, playerId).getValue() > 0) {
-            specialScore += 5 * FACTOR_CHOPSTICKS_VALUE; // Value of potential double play
+        // Chopsticks value of a potential double play
+        out[offset + 8] = features.getCount(playerId, SGCardType.Chopsticks) > 0 ? weighted.chopsticks : 0;
+    }
+
+    /**
+     * @return The factors in FACTOR_NAMES order.
+     */
+    double[] factors() {
+        return new double[]{FACTOR_CURRENT_SCORE, FACTOR_POTENTIAL_SCORE, FACTOR_TEMPURA_SET, FACTOR_SASHIMI_SET,
+                FACTOR_DUMPLING_SET, FACTOR_WASABI_VALUE, FACTOR_MAKI_POSITION, FACTOR_PUDDING_POSITION,
+                FACTOR_CHOPSTICKS_VALUE};
+    }
+
+    /**
+     * @param params The game parameters of the state being evaluated.
+     * @return Lookup tables combining the current factors with the given game parameters.
+     */
+    private WeightedTables weightedTables(SGParameters params) {
+        return tables.computeIfAbsent(SushiGoScoreTables.forParams(params), unit -> new WeightedTables(unit, factors()));
+    }
+
+    /**
+     * @param params The game parameters.
+     * @return Tables with every factor 1, holding the unweighted values.
+     */
+    static WeightedTables unitTables(SGParameters params) {
+        double[] ones = new double[N_FACTORS];
+        Arrays.fill(ones, 1.0);
+        return new WeightedTables(SushiGoScoreTables.forParams(params), ones);
+    }
+
+    /**
+     * The heuristic compiled for one set of factors and game parameters: each set's value by card
+     * count, and each special card bonus, already multiplied by its factor.
+     */
+    static final class WeightedTables {
+        final SushiGoScoreTables unit;
+        final double factorCurrentScore, factorTempura, factorSashimi, factorDumpling;
+        final double[] tempura = new double[SushiGoScoreTables.TABLE_SIZE];
+        final double[] sashimi = new double[SushiGoScoreTables.TABLE_SIZE];
+        final double[] dumpling = new double[SushiGoScoreTables.TABLE_SIZE];
+        final double wasabi, makiMost, makiSecond, puddingMost, puddingLeast, chopsticks;
+        final int lastRound;
+
+        /**
+         * @param factors The factors in FACTOR_NAMES order.
+         */
+        WeightedTables(SushiGoScoreTables unit, double[] factors) {
+            this.unit = unit;
+            factorCurrentScore = factors[0];
+            factorTempura = factors[2];
+            factorSashimi = factors[3];
+            factorDumpling = factors[4];
+            for (int count = 0; count < SushiGoScoreTables.TABLE_SIZE; count++) {
+                tempura[count] = unit.tempura[count] * factorTempura;
+                sashimi[count] = unit.sashimi[count] * factorSashimi;
+                dumpling[count] = unit.dumpling[count] * factorDumpling;
+            }
+            wasabi = unit.multiplierWasabi * factors[5];
+            makiMost = unit.valueMakiMost * factors[6];
+            makiSecond = unit.valueMakiSecond * factors[6];
+            puddingMost = unit.valuePuddingMost * factors[7];
+            puddingLeast = unit.valuePuddingLeast * factors[7];
+            chopsticks = SushiGoScoreTables.CHOPSTICKS_VALUE * factors[8];
+            lastRound = unit.nRounds - 1;
+        }
+
+        double tempura(int count) {
+            return count < tempura.length ? tempura[count] : unit.tempura(count) * factorTempura;
+        }
+
+        double sashimi(int count) {
+            return count < sashimi.length ? sashimi[count] : unit.sashimi(count) * factorSashimi;
         }
 
-        return specialScore;
+        double dumpling(int count) {
+            return count < dumpling.length ? dumpling[count] : unit.dumpling(count) * factorDumpling;
+        }
     }
 
     /**
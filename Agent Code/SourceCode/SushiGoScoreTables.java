@@ -0,0 +1,117 @@
+package games.sushigo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Unweighted set values used by SushiGoHeuristic, precomputed for one set of game parameters.
+ * Each table is indexed by the number of cards of that type a player has on the table, so scoring
+ * a set is a single array load. Counts beyond the table fall back to the arithmetic.
+ */
+final class SushiGoScoreTables {
+
+    // Larger than the number of copies of any one card type in the deck
+    static final int TABLE_SIZE = 32;
+
+    // Value of the last chopsticks in hand, as a potential double play
+    static final double CHOPSTICKS_VALUE = 5;
+
+    // Tables by game parameter values, shared by every game and thread that uses the same values
+    private static final Map<List<Integer>, SushiGoScoreTables> byValues = new ConcurrentHashMap<>();
+    // The tables each thread used last, found again without building a key
+    private static final ThreadLocal<SushiGoScoreTables> lastUsed = new ThreadLocal<>();
+
+    // The game parameter values the tables were built from
+    final int valueTempuraPair, valueSashimiTriple, multiplierWasabi;
+    final int valueMakiMost, valueMakiSecond, valuePuddingMost, valuePuddingLeast, nRounds;
+    final int[] valueDumpling;
+    final double[] tempura = new double[TABLE_SIZE];
+    final double[] sashimi = new double[TABLE_SIZE];
+    final double[] dumpling = new double[TABLE_SIZE];
+
+    private SushiGoScoreTables(SGParameters params) {
+        valueTempuraPair = params.valueTempuraPair;
+        valueSashimiTriple = params.valueSashimiTriple;
+        multiplierWasabi = params.multiplierWasabi;
+        valueMakiMost = params.valueMakiMost;
+        valueMakiSecond = params.valueMakiSecond;
+        valuePuddingMost = params.valuePuddingMost;
+        valuePuddingLeast = params.valuePuddingLeast;
+        nRounds = params.nRounds;
+        valueDumpling = params.valueDumpling.clone();
+        for (int count = 0; count < TABLE_SIZE; count++) {
+            tempura[count] = tempuraValue(count);
+            sashimi[count] = sashimiValue(count);
+            dumpling[count] = dumplingValue(count);
+        }
+    }
+
+    /**
+     * @param params The game parameters.
+     * @return The tables for the values of the given parameters, built on first use. Parameter
+     * objects with equal values, such as copies, get the same tables.
+     */
+    static SushiGoScoreTables forParams(SGParameters params) {
+        SushiGoScoreTables tables = lastUsed.get();
+        if (tables == null || !tables.matches(params)) {
+            tables = byValues.computeIfAbsent(key(params), k -> new SushiGoScoreTables(params));
+            lastUsed.set(tables);
+        }
+        return tables;
+    }
+
+    private static List<Integer> key(SGParameters params) {
+        List<Integer> key = new ArrayList<>(8 + params.valueDumpling.length);
+        Collections.addAll(key, params.valueTempuraPair, params.valueSashimiTriple, params.multiplierWasabi,
+                params.valueMakiMost, params.valueMakiSecond, params.valuePuddingMost, params.valuePuddingLeast, params.nRounds);
+        for (int value : params.valueDumpling) {
+            key.add(value);
+        }
+        return key;
+    }
+
+    private boolean matches(SGParameters params) {
+        return params.valueTempuraPair == valueTempuraPair && params.valueSashimiTriple == valueSashimiTriple
+                && params.multiplierWasabi == multiplierWasabi && params.valueMakiMost == valueMakiMost
+                && params.valueMakiSecond == valueMakiSecond && params.valuePuddingMost == valuePuddingMost
+                && params.valuePuddingLeast == valuePuddingLeast && params.nRounds == nRounds
+                && Arrays.equals(params.valueDumpling, valueDumpling);
+    }
+
+    double tempura(int count) {
+        return count < TABLE_SIZE ? tempura[count] : tempuraValue(count);
+    }
+
+    double sashimi(int count) {
+        return count < TABLE_SIZE ? sashimi[count] : sashimiValue(count);
+    }
+
+    double dumpling(int count) {
+        return count < TABLE_SIZE ? dumpling[count] : dumplingValue(count);
+    }
+
+    private double tempuraValue(int count) {
+        double value = (count / 2) * valueTempuraPair;
+        if (count % 2 == 1) {
+            value += valueTempuraPair * 0.3; // Partial set
+        }
+        return value;
+    }
+
+    private double sashimiValue(int count) {
+        double value = (count / 3) * valueSashimiTriple;
+        if (count % 3 > 0) {
+            value += valueSashimiTriple * (count % 3) * 0.2; // Partial set
+        }
+        return value;
+    }
+
+    private double dumplingValue(int count) {
+        return count < valueDumpling.length ? valueDumpling[count] : 0;
+    }
+}
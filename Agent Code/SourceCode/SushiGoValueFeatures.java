@@ -0,0 +1,107 @@
+package games.sushigo;
+
+import games.sushigo.cards.SGCard.SGCardType;
+
+
+/**
+ * Card-count features of a Sushi Go position from one player's point of view, the inputs of the
+ * learned linear value function (SushiGoValueHeuristic). They are computed from plain per-player
+ * totals, so the same features come out of a live state, a rollout's SushiGoFeatureTracker or a
+ * recorded self-play position.
+ */
+public class SushiGoValueFeatures {
+
+    static final SGCardType[] CARD_TYPES = SGCardType.values();
+
+    public static final String[] FEATURE_NAMES = featureNames();
+    public static final int N_FEATURES = FEATURE_NAMES.length;
+
+    private static String[] featureNames() {
+        String[] names = new String[5 + 2 * CARD_TYPES.length];
+        int f = 0;
+        names[f++] = "bias";
+        names[f++] = "scoreLead";
+        names[f++] = "roundProgress";
+        for (SGCardType type : CARD_TYPES) {
+            names[f++] = "own" + type.name();
+        }
+        for (SGCardType type : CARD_TYPES) {
+            names[f++] = "lead" + type.name();
+        }
+        names[f++] = "puddingLeadOverMost";
+        names[f] = "puddingLeadOverLeast";
+        return names;
+    }
+
+    /**
+     * @param tracker Up-to-date totals.
+     * @param playerId The player whose point of view is taken.
+     * @param out Destination for N_FEATURES values.
+     */
+    public static void extract(SushiGoFeatureTracker tracker, int playerId, double[] out) {
+        extract(tracker.counts, tracker.puddingAllGame, tracker.scores, tracker.getNPlayers(),
+                tracker.getRound(), tracker.getParams().nRounds, playerId, out);
+    }
+
+    /**
+     * @param counts Cards on the table this round, [player][card type ordinal].
+     * @param puddingAllGame Puddings collected over the whole game, per player.
+     * @param scores Current scores, per player.
+     * @param nPlayers Number of players.
+     * @param round Current round, counting from 0.
+     * @param nRounds Number of rounds in the game.
+     * @param playerId The player whose point of view is taken.
+     * @param out Destination for N_FEATURES values.
+     */
+    public static void extract(int[][] counts, int[] puddingAllGame, int[] scores, int nPlayers,
+                               int round, int nRounds, int playerId, double[] out) {
+        int maxOppScore = Integer.MIN_VALUE;
+        int maxOppPudding = Integer.MIN_VALUE, minOppPudding = Integer.MAX_VALUE;
+        for (int i = 0; i < nPlayers; i++) {
+            if (i != playerId) {
+                maxOppScore = Math.max(maxOppScore, scores[i]);
+                maxOppPudding = Math.max(maxOppPudding, puddingAllGame[i]);
+                minOppPudding = Math.min(minOppPudding, puddingAllGame[i]);
+            }
+        }
+        if (nPlayers < 2) {
+            maxOppScore = maxOppPudding = minOppPudding = 0;
+        }
+
+        int f = 0;
+        out[f++] = 1;
+        out[f++] = scores[playerId] - maxOppScore;
+        out[f++] = nRounds > 1 ? (double) round / (nRounds - 1) : 0;
+        int[] own = counts[playerId];
+        for (int t = 0; t < CARD_TYPES.length; t++) {
+            out[f++] = own[t];
+        }
+        for (int t = 0; t < CARD_TYPES.length; t++) {
+            int maxOpp = 0;
+            for (int i = 0; i < nPlayers; i++) {
+                if (i != playerId) {
+                    maxOpp = Math.max(maxOpp, counts[i][t]);
+                }
+            }
+            out[f++] = own[t] - maxOpp;
+        }
+        out[f++] = puddingAllGame[playerId] - maxOppPudding;
+        out[f] = puddingAllGame[playerId] - minOppPudding;
+    }
+
+    /**
+     * The training target: final score lead over the best opponent.
+     * @param finalScores Final scores, per player.
+     * @param playerId The player whose point of view is taken.
+     * @return The lead, negative if the player was behind.
+     */
+    public static double scoreLead(double[] finalScores, int playerId) {
+        double maxOpp = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < finalScores.length; i++) {
+            if (i != playerId) {
+                maxOpp = Math.max(maxOpp, finalScores[i]);
+            }
+        }
+        return finalScores.length < 2 ? finalScores[playerId] : finalScores[playerId] - maxOpp;
+    }
+}
@@ -0,0 +1,155 @@
+package games.sushigo;
+
+import core.AbstractGameState;
+import core.interfaces.IStateHeuristic;
+import evaluation.optimisation.TunableParameters;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.FileReader;
+import java.io.IOException;
+
+
+/**
+ * A learned linear value function for Sushi Go: the predicted final score lead over the best
+ * opponent, as a weighted sum of SushiGoValueFeatures. The weights are fitted offline by
+ * SushiGoValueTrainer and loaded from the JSON file named by the "weightsFile" parameter.
+ * With a good leaf estimate the agents can run with rolloutLength 0 and spend their budget on
+ * growing the tree instead of on random playouts.
+ */
+public class SushiGoValueHeuristic extends TunableParameters implements IStateHeuristic {
+
+    // Path of the weights written by SushiGoValueTrainer; empty means score lead only
+    String weightsFile = "";
+
+    double[] weights = defaultWeights();
+
+    // Per-thread scratch, so a shared heuristic stays thread-safe
+    private final ThreadLocal<SushiGoFeatureTracker> scratchFeatures = ThreadLocal.withInitial(SushiGoFeatureTracker::new);
+    private final ThreadLocal<double[]> scratchValues = ThreadLocal.withInitial(() -> new double[SushiGoValueFeatures.N_FEATURES]);
+
+    /**
+     * Constructor for SushiGoValueHeuristic.
+     * Initializes tunable parameters for the heuristic.
+     */
+    public SushiGoValueHeuristic() {
+        addTunableParameter("weightsFile", weightsFile);
+    }
+
+    /**
+     * Reloads the weights from the configured file.
+     */
+    @Override
+    public void _reset() {
+        weightsFile = (String) getParameterValue("weightsFile");
+        weights = weightsFile == null || weightsFile.isEmpty() ? defaultWeights() : loadWeights(weightsFile);
+    }
+
+    /**
+     * Evaluates the current game state for a given player.
+     * @param gs The current game state.
+     * @param playerId The ID of the player for whom the state is being evaluated.
+     * @return The predicted final score lead of the player; the actual lead once the game is over.
+     */
+    @Override
+    public double evaluateState(AbstractGameState gs, int playerId) {
+        SGGameState state = (SGGameState) gs;
+        if (!state.isNotTerminal()) {
+            double[] finalScores = new double[state.getNPlayers()];
+            for (int i = 0; i < finalScores.length; i++) {
+                finalScores[i] = state.getGameScore(i);
+            }
+            return SushiGoValueFeatures.scoreLead(finalScores, playerId);
+        }
+        SushiGoFeatureTracker features = scratchFeatures.get();
+        features.reset(state);
+        return evaluateState(features, playerId);
+    }
+
+    /**
+     * Evaluates an intermediate state from totals kept up to date during a rollout.
+     * @param features The tracked totals.
+     * @param playerId The ID of the player for whom the state is being evaluated.
+     * @return The predicted final score lead of the player.
+     */
+    public double evaluateState(SushiGoFeatureTracker features, int playerId) {
+        double[] x = scratchValues.get();
+        SushiGoValueFeatures.extract(features, playerId, x);
+        double value = 0;
+        for (int f = 0; f < x.length; f++) {
+            value += weights[f] * x[f];
+        }
+        return value;
+    }
+
+    /**
+     * Untrained fallback: the current score lead, i.e. assume the rest of the game is even.
+     */
+    static double[] defaultWeights() {
+        double[] w = new double[SushiGoValueFeatures.N_FEATURES];
+        w[1] = 1.0;
+        return w;
+    }
+
+    /**
+     * Reads weights written by SushiGoValueTrainer. The feature names in the file must match
+     * SushiGoValueFeatures, so a file trained on an older feature layout is rejected.
+     * @param file Path of the weights file.
+     * @return The weights in SushiGoValueFeatures order.
+     */
+    static double[] loadWeights(String file) {
+        try (FileReader reader = new FileReader(file)) {
+            JSONObject json = (JSONObject) new JSONParser().parse(reader);
+            JSONArray names = (JSONArray) json.get("features");
+            JSONArray values = (JSONArray) json.get("weights");
+            if (names == null || values == null || names.size() != SushiGoValueFeatures.N_FEATURES || values.size() != names.size())
+                throw new IllegalArgumentException("Weights file " + file + " does not match the " + SushiGoValueFeatures.N_FEATURES + " SushiGo value features");
+            double[] w = new double[SushiGoValueFeatures.N_FEATURES];
+            for (int f = 0; f < w.length; f++) {
+                if (!SushiGoValueFeatures.FEATURE_NAMES[f].equals(names.get(f)))
+                    throw new IllegalArgumentException("Weights file " + file + " has feature " + names.get(f) + " where " + SushiGoValueFeatures.FEATURE_NAMES[f] + " was expected");
+                w[f] = ((Number) values.get(f)).doubleValue();
+            }
+            return w;
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Could not read SushiGo value weights from " + file, e);
+        }
+    }
+
+    /**
+     * Creates a copy of the current SushiGoValueHeuristic instance.
+     * @return A new instance of SushiGoValueHeuristic with the same weights.
+     */
+    @Override
+    protected SushiGoValueHeuristic _copy() {
+        SushiGoValueHeuristic copy = new SushiGoValueHeuristic();
+        copy.weightsFile = weightsFile;
+        copy.weights = weights.clone();
+        return copy;
+    }
+
+    /**
+     * Checks if the current instance is equal to another SushiGoValueHeuristic instance.
+     * @param o The object to compare with.
+     * @return True if both use the same weights file, false otherwise.
+     */
+    @Override
+    protected boolean _equals(Object o) {
+        if (o instanceof SushiGoValueHeuristic) {
+            SushiGoValueHeuristic other = (SushiGoValueHeuristic) o;
+            return other.weightsFile.equals(weightsFile);
+        }
+        return false;
+    }
+
+    /**
+     * Instantiates a new SushiGoValueHeuristic instance.
+     * @return A new instance of SushiGoValueHeuristic.
+     */
+    @Override
+    public SushiGoValueHeuristic instantiate() {
+        return this._copy();
+    }
+}
@@ -0,0 +1,215 @@
+package games.sushigo;
+
+import core.AbstractForwardModel;
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import evaluation.selfplay.SelfPlayReader;
+import games.GameType;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import players.PlayerFactory;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * Fits the weights of SushiGoValueHeuristic by ridge regression. Each decision point of each game
+ * gives one sample per player: the SushiGoValueFeatures of the position from that player's point of
+ * view, labelled with the player's final score lead. Only the normal equations are accumulated, so
+ * memory does not grow with the number of games.
+ *
+ * Arguments (name=value):
+ *   players  comma-separated player JSON files, seated in rotation (default json/testplayers/alphaAMAF.json)
+ *   nPlayers number of players per game (default 3)
+ *   games    number of games to play (default 200)
+ *   seed     seed of the first game (default 0)
+ *   lambda   ridge penalty (default 1e-3)
+ *   out      weights file to write (default json/sushigo/valueWeights.json)
+ *   records  comma-separated files from evaluation.selfplay.SelfPlayGenerator; if given, the
+ *            samples are read from them instead of playing games
+ */
+public class SushiGoValueTrainer {
+
+    final int n = SushiGoValueFeatures.N_FEATURES;
+    // Upper triangle is kept in full for simplicity; the matrix is tiny
+    final double[][] xtx = new double[n][n];
+    final double[] xty = new double[n];
+    long nSamples;
+
+    public static void main(String[] args) throws IOException {
+        String[] playerFiles = getArg(args, "players", "json/testplayers/alphaAMAF.json").split(",");
+        int nPlayers = getArg(args, "nPlayers", 3);
+        int nGames = getArg(args, "games", 200);
+        long seed = getArg(args, "seed", 0L);
+        double lambda = getArg(args, "lambda", 1e-3);
+        String out = getArg(args, "out", "json/sushigo/valueWeights.json");
+
+        String records = getArg(args, "records", "");
+
+        SushiGoValueTrainer trainer = new SushiGoValueTrainer();
+        if (!records.isEmpty()) {
+            for (String file : records.split(",")) {
+                long n = trainer.addRecords(Paths.get(file.trim()));
+                System.out.printf("%s: %d records, %d samples%n", file, n, trainer.nSamples);
+            }
+            nGames = 0;
+        }
+        for (int g = 0; g < nGames; g++) {
+            List<AbstractPlayer> players = new ArrayList<>();
+            for (int p = 0; p < nPlayers; p++) {
+                players.add(PlayerFactory.createPlayer(playerFiles[(g + p) % playerFiles.length]));
+            }
+            trainer.playGame(players, seed + g);
+            if ((g + 1) % 50 == 0)
+                System.out.printf("%d games, %d samples%n", g + 1, trainer.nSamples);
+        }
+        double[] weights = trainer.solve(lambda);
+        trainer.write(weights, lambda, nGames, out);
+        System.out.println("Wrote " + out + ": " + Arrays.toString(weights));
+    }
+
+    /**
+     * Plays one game and adds its positions to the normal equations.
+     * @param players One player per seat.
+     * @param seed Game seed.
+     */
+    void playGame(List<AbstractPlayer> players, long seed) {
+        Game game = GameType.SushiGo.createGameInstance(players.size(), seed);
+        game.reset(players, seed);
+        AbstractGameState gs = game.getGameState();
+        AbstractForwardModel fm = game.getForwardModel();
+
+        SushiGoFeatureTracker tracker = new SushiGoFeatureTracker();
+        List<double[]> positions = new ArrayList<>();
+        List<Integer> perspectives = new ArrayList<>();
+        while (gs.isNotTerminal()) {
+            tracker.reset((SGGameState) gs);
+            for (int p = 0; p < players.size(); p++) {
+                double[] x = new double[n];
+                SushiGoValueFeatures.extract(tracker, p, x);
+                positions.add(x);
+                perspectives.add(p);
+            }
+            int current = gs.getCurrentPlayer();
+            AbstractGameState observation = gs.copy(current);
+            List<AbstractAction> actions = fm.computeAvailableActions(observation, players.get(current).getParameters().actionSpace);
+            AbstractAction action = players.get(current).getAction(observation, actions);
+            fm.next(gs, action);
+        }
+
+        double[] finalScores = new double[players.size()];
+        for (int p = 0; p < finalScores.length; p++) {
+            finalScores[p] = gs.getGameScore(p);
+        }
+        for (int i = 0; i < positions.size(); i++) {
+            addSample(positions.get(i), SushiGoValueFeatures.scoreLead(finalScores, perspectives.get(i)));
+        }
+    }
+
+    /**
+     * Adds one sample per player for each position in a self-play file.
+     * @param file File written by SelfPlayWriter.
+     * @return The number of records read.
+     */
+    long addRecords(Path file) throws IOException {
+        double[] x = new double[n];
+        return new SelfPlayReader(file).forEach(record -> {
+            for (int p = 0; p < record.nPlayers; p++) {
+                record.valueFeatures(p, x);
+                addSample(x, SushiGoValueFeatures.scoreLead(record.finalScores, p));
+            }
+        });
+    }
+
+    void addSample(double[] x, double y) {
+        for (int i = 0; i < n; i++) {
+            xty[i] += x[i] * y;
+            for (int j = 0; j < n; j++) {
+                xtx[i][j] += x[i] * x[j];
+            }
+        }
+        nSamples++;
+    }
+
+    /**
+     * Solves (X'X + lambda I) w = X'y by Cholesky decomposition. The bias is not penalised.
+     * @param lambda Ridge penalty, scaled by the number of samples.
+     * @return The fitted weights.
+     */
+    double[] solve(double lambda) {
+        if (nSamples == 0)
+            throw new IllegalStateException("No samples to fit");
+        double[][] a = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            a[i] = xtx[i].clone();
+            if (i > 0)
+                a[i][i] += lambda * nSamples;
+        }
+        // Guard the bias term against a singular matrix as well
+        a[0][0] += 1e-9 * nSamples;
+
+        double[][] l = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = a[i][j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i][k] * l[j][k];
+                }
+                if (i == j) {
+                    if (sum <= 0)
+                        throw new IllegalStateException("Normal equations are not positive definite; increase lambda");
+                    l[i][i] = Math.sqrt(sum);
+                } else {
+                    l[i][j] = sum / l[j][j];
+                }
+            }
+        }
+        // Forward then back substitution
+        double[] z = new double[n];
+        for (int i = 0; i < n; i++) {
+            double sum = xty[i];
+            for (int k = 0; k < i; k++) {
+                sum -= l[i][k] * z[k];
+            }
+            z[i] = sum / l[i][i];
+        }
+        double[] w = new double[n];
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = z[i];
+            for (int k = i + 1; k < n; k++) {
+                sum -= l[k][i] * w[k];
+            }
+            w[i] = sum / l[i][i];
+        }
+        return w;
+    }
+
+    @SuppressWarnings("unchecked")
+    void write(double[] weights, double lambda, int nGames, String file) throws IOException {
+        JSONArray names = new JSONArray();
+        names.addAll(Arrays.asList(SushiGoValueFeatures.FEATURE_NAMES));
+        JSONArray values = new JSONArray();
+        for (double w : weights) {
+            values.add(w);
+        }
+        JSONObject json = new JSONObject();
+        json.put("features", names);
+        json.put("weights", values);
+        json.put("lambda", lambda);
+        json.put("games", nGames);
+        json.put("samples", nSamples);
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(json.toJSONString());
+        }
+    }
+}
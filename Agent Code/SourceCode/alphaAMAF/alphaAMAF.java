@@ -3,11 +3,14 @@ package players.alphaAMAF;
 import core.AbstractGameState;
 import core.interfaces.IStateHeuristic;
 import players.PlayerParameters;
+import players.searchCommon.BudgetManager;
+import players.searchCommon.IDecisionImportance;
+import players.searchCommon.IHardDeadline;
 
 import java.util.Arrays;
 
 
-public class alphaAMAF extends PlayerParameters { //playersparameters extends evaluation/optimisation/TunableParameters extends core/AbstractParameters
+public class alphaAMAF extends PlayerParameters implements IHardDeadline { //playersparameters extends evaluation/optimisation/TunableParameters extends core/AbstractParameters
 
     public double K = Math.sqrt(2);
     //public double K = 2;
@@ -15,7 +18,24 @@ public class alphaAMAF extends PlayerParameters { //playersparameters extends ev
     public int maxTreeDepth = 100; // effectively no limit
     public double epsilon = 1e-6;
     public IStateHeuristic heuristic = AbstractGameState::getHeuristicScore;
-    public double amafConstant;
+    // Watchdog deadline of a search in milliseconds, whatever the budget; 0 for none
+    public int hardDeadlineMs = 0;
+    // Share of a core used to keep searching between decisions; 0 turns pondering off
+    public double ponderShare = 0.0;
+    // Longest time to ponder after a decision, in milliseconds; 0 for no limit
+    public int ponderMaxMs = 10000;
+    // Share the budget of a game out over its decisions by importance (see BudgetManager)
+    public boolean budgetScheduling = false;
+    // Budget for a whole game in budget units; 0 for the flat budget times the expected decisions
+    public int gameBudget = 0;
+    // Most a single decision may get, as a multiple of the flat budget
+    public double maxBudgetFactor = 3.0;
+    public IDecisionImportance importance = BudgetManager.FLAT;
+    // Iterations between checks whether the root choice is settled (see EarlyStop); 0 for none
+    public int earlyStopInterval = 0;
+    // Also stop when the leader's value is this many standard errors clear of the rest; 0 for none
+    public double earlyStopZ = 0.0;
+    public double amafConstant = 10.0;
 
     public alphaAMAF() { //这意味着它继承了与玩家参数相关的基本行为，并可以利用父类的功能来存储和调整参数。
         addTunableParameter("K", Math.sqrt(2), Arrays.asList(0.0, 0.1, 1.0, Math.sqrt(2), 3.0, 10.0));
@@ -23,6 +43,15 @@ public class alphaAMAF extends PlayerParameters { //playersparameters extends ev
         addTunableParameter("maxTreeDepth", 100, Arrays.asList(1, 3, 10, 30, 100));
         addTunableParameter("epsilon", 1e-6);
         addTunableParameter("heuristic", (IStateHeuristic) AbstractGameState::getHeuristicScore);
+        addTunableParameter("hardDeadlineMs", 0);
+        addTunableParameter("ponderShare", 0.0);
+        addTunableParameter("ponderMaxMs", 10000);
+        addTunableParameter("budgetScheduling", false);
+        addTunableParameter("gameBudget", 0);
+        addTunableParameter("maxBudgetFactor", 3.0);
+        addTunableParameter("importance", BudgetManager.FLAT);
+        addTunableParameter("earlyStopInterval", 0);
+        addTunableParameter("earlyStopZ", 0.0);
         // 新增 AMAF 相关的参数
         addTunableParameter("amafConstant", 10.0, Arrays.asList(1.0, 5.0, 10.0, 20.0)); /*添加的内容2*/
     }
@@ -35,6 +64,26 @@ public class alphaAMAF extends PlayerParameters { //playersparameters extends ev
         maxTreeDepth = (int) getParameterValue("maxTreeDepth");
         epsilon = (double) getParameterValue("epsilon");
         heuristic = (IStateHeuristic) getParameterValue("heuristic"); //启发式评估函数，默认为 AbstractGameState::getHeuristicScore，即利用游戏状态中的默认启发式评分函数。
+        hardDeadlineMs = (int) getParameterValue("hardDeadlineMs");
+        ponderShare = (double) getParameterValue("ponderShare");
+        ponderMaxMs = (int) getParameterValue("ponderMaxMs");
+        budgetScheduling = (boolean) getParameterValue("budgetScheduling");
+        gameBudget = (int) getParameterValue("gameBudget");
+        maxBudgetFactor = (double) getParameterValue("maxBudgetFactor");
+        importance = (IDecisionImportance) getParameterValue("importance");
+        earlyStopInterval = (int) getParameterValue("earlyStopInterval");
+        earlyStopZ = (double) getParameterValue("earlyStopZ");
+        amafConstant = (double) getParameterValue("amafConstant");
+    }
+
+    @Override
+    public int getHardDeadlineMs() {
+        return hardDeadlineMs;
+    }
+
+    @Override
+    public void setHardDeadlineMs(int millis) {
+        hardDeadlineMs = millis;
     }
 
     @Override
@@ -4,8 +4,16 @@ import core.AbstractGameState;
 import core.AbstractPlayer;
 import core.actions.AbstractAction;
 import core.interfaces.IStateHeuristic;
-
+import players.searchCommon.BudgetManager;
+import players.searchCommon.DecisionSeeds;
+import players.searchCommon.ISearchReporter;
+import players.searchCommon.Ponderer;
+import players.searchCommon.SearchDecisionEvent;
+import players.searchCommon.SearchStats;
+
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 
@@ -14,7 +22,17 @@ import java.util.Random;
  * It strips out some of the additional configuration of MCTSPlayer. It uses BasicTreeNode in place of
  * SingleTreeNode.
  */
-public class alphaAMAFPlayer extends AbstractPlayer {
+public class alphaAMAFPlayer extends AbstractPlayer implements ISearchReporter {
+
+    // Root statistics of the last search, for ISearchReporter
+    private Map<AbstractAction, Integer> lastRootVisits = Collections.emptyMap();
+    private SearchStats lastStats;
+    // Pondering: the tree from this player's last move on, and the length of the game history just after that move
+    private final Ponderer ponderer = new Ponderer("αAMAF pondering");
+    private alphaAMAFTreeNode ponderRoot;
+    private int ponderHistory;
+    // Shares the budget of the current game out over its decisions, when budgetScheduling is on
+    private final BudgetManager budgetManager = new BudgetManager();
 
     public alphaAMAFPlayer() {
         this(System.currentTimeMillis());
@@ -42,14 +60,88 @@ public class alphaAMAFPlayer extends AbstractPlayer {
 
     @Override
     public AbstractAction _getAction(AbstractGameState gameState, List<AbstractAction> actions) {
-        // Search for best action from the root
-        alphaAMAFTreeNode root = new alphaAMAFTreeNode(this, null, gameState, rnd);
+        SearchDecisionEvent event = new SearchDecisionEvent();
+        event.begin();
+
+        // Pondering must have stopped before the tree and rnd are used here
+        int pondered = ponderer.stop();
+
+        // Every decision draws from its own seed, so it can be replayed on its own
+        rnd = new Random(DecisionSeeds.decisionSeed(getParameters().getRandomSeed(), gameState, getPlayerID()));
+
+        // The budget manager can give this decision more or less than the flat budget, or none at all
+        int budget = getParameters().budget;
+        if (getParameters().budgetScheduling) {
+            budget = budgetManager.allocate(getParameters().importance, gameState, actions, getPlayerID(),
+                    getParameters().budget, getParameters().gameBudget, getParameters().maxBudgetFactor);
+            if (budget == 0) {
+                // A forced move, or a choice between equivalent actions
+                ponderRoot = null;
+                lastRootVisits = Collections.emptyMap();
+                lastStats = new SearchStats();
+                AbstractAction move = actions.get(rnd.nextInt(actions.size()));
+                event.report(this, getParameters(), lastStats, move);
+                return move;
+            }
+        }
+
+        // Search for best action from the root, carrying on from the pondered tree if it has tried the moves since and they led here
+        alphaAMAFTreeNode reused = ponderRoot == null ? null : ponderRoot.descendant(Ponderer.actionsSince(gameState, ponderHistory), gameState);
+        ponderRoot = null;
+        alphaAMAFTreeNode root;
+        if (reused != null) {
+            root = reused.rootify(gameState, rnd);
+            root.stats.ponderIterations = pondered;
+        } else {
+            root = new alphaAMAFTreeNode(this, null, gameState, rnd);
+        }
 
         // mctsSearch does all of the hard work
-        root.mctsSearch();
+        root.mctsSearch(budget);
+        lastRootVisits = root.childVisits();
+        lastStats = root.stats;
+        // What an early stop saved goes back to the game's budget
+        if (getParameters().budgetScheduling)
+            budgetManager.refund(budget - root.stats.budgetUsed);
 
         // Return best action
-        return root.bestAction();
+        // A search stopped by its hard deadline before the first iteration has nothing to go on
+        AbstractAction best = root.stats.iterations == 0 ? actions.get(rnd.nextInt(actions.size())) : root.bestAction();
+        event.report(this, getParameters(), root.stats, best);
+
+        // Keep searching from the position after this move while the other players think
+        if (getParameters().ponderShare > 0 && root.children.get(best) != null) {
+            ponderRoot = root.children.get(best).rootify(null, rnd);
+            ponderHistory = gameState.getHistory().size() + 1;
+            ponderRoot.ponder(ponderer, getParameters().ponderShare, getParameters().ponderMaxMs);
+        }
+        return best;
+    }
+
+    @Override
+    public void initializePlayer(AbstractGameState gameState) {
+        stopPondering();
+        budgetManager.newGame();
+    }
+
+    @Override
+    public void finalizePlayer(AbstractGameState gameState) {
+        stopPondering();
+    }
+
+    private void stopPondering() {
+        ponderer.stop();
+        ponderRoot = null;
+    }
+
+    @Override
+    public Map<AbstractAction, Integer> getRootVisits() {
+        return lastRootVisits;
+    }
+
+    @Override
+    public SearchStats getSearchStats() {
+        return lastStats;
     }
 
     @Override
@@ -3,6 +3,10 @@ package players.alphaAMAF;
 import core.AbstractGameState;
 import core.actions.AbstractAction;
 import players.PlayerConstants;
+import players.searchCommon.EarlyStop;
+import players.searchCommon.Ponderer;
+import players.searchCommon.SearchDeadline;
+import players.searchCommon.SearchStats;
 import players.simple.RandomPlayer;
 import utilities.ElapsedCpuTimer;
 
@@ -27,18 +31,22 @@ class alphaAMAFTreeNode {
     Map<AbstractAction, Integer> opponentModel = new HashMap<>();
 
     List<AbstractAction> rolloutActions = new ArrayList<>();
+    // Scratch weights for selectBiasedAction, held by the root and reused across rollout steps
+    private double[] rolloutWeights;
 
     //alpha-beta cutting
     private double alpha = -Double.MAX_VALUE; // 当前节点的 alpha 值
     private double beta = Double.MAX_VALUE; // 当前节点的 beta 值
 
     // Depth of this node
-    final int depth;
+    int depth;
 
     // Total value of this node
     private double totValue; //累积值，表示从这个节点及其子树中的模拟回传的总得分。
     // Total value of squared value
     public double totValueSquared; /**/
+    // Total of squared values, for the early-stop confidence test (ucb() reads totValueSquared, which backUp leaves at 0)
+    private double valueSquares;
     // Number of visits
     private int nVisits; //表示访问次数，跟踪节点被访问的频率，用于计算 UCB1 算法中的利用部分。
     // Number of FM calls and State copies up until this node
@@ -46,7 +54,11 @@ class alphaAMAFTreeNode {
     // Parameters guiding the search
     private alphaAMAFPlayer player; //关联的 BasicMCTSPlayer 对象，包含 MCTS 参数和前向模型（Forward Model）。
     private Random rnd; //随机数生成器，用于选择动作时的随机性。
-    private RandomPlayer randomPlayer = new RandomPlayer();
+    // Counters and timings of the search, shared by all nodes of the tree
+    SearchStats stats;
+    // Hard deadline of the search, held by the root
+    private SearchDeadline deadline = SearchDeadline.NONE;
+    private RandomPlayer randomPlayer;
 
     // State in this node (closed loop)
     private AbstractGameState state; //当前节点对应的游戏状态，通过前向模型和执行动作来生成新的游戏状态。
@@ -56,6 +68,7 @@ class alphaAMAFTreeNode {
         this.fmCallsCount = 0;
         this.parent = parent;
         this.root = parent == null ? this : parent.root;
+        this.stats = parent == null ? new SearchStats() : parent.stats;
         totValue = 0.0;
         totValueSquared = 0.0; // 初始化平方和为0 /*添加的内容*/
         setState(state);
@@ -64,16 +77,29 @@ class alphaAMAFTreeNode {
         } else {
             depth = 0;
         }
+        stats.nodeCreated(depth);
         this.rnd = rnd;
+        randomPlayer = new RandomPlayer(rnd);
         randomPlayer.setForwardModel(player.getForwardModel());
     }
 
     /**
      * Performs full MCTS search, using the defined budget limits.
      */
-    void mctsSearch() { //MCTS 搜索的主循环，执行整个搜索过程。
+    void mctsSearch() {
+        mctsSearch(player.getParameters().budget);
+    }
+
+    /**
+     * Performs full MCTS search with the given budget, in units of the budget type.
+     */
+    void mctsSearch(int budget) { //MCTS 搜索的主循环，执行整个搜索过程。
+        long searchStart = System.nanoTime();
+        long allocatedStart = SearchStats.threadAllocatedBytes();
 
         alphaAMAF params = player.getParameters(); //获取与当前玩家（player）相关的 MCTS 参数。params 包含了搜索预算、树的最大深度等配置。
+        deadline = SearchDeadline.start(params.hardDeadlineMs);
+        stats.budget = budget;
 
         // Variables for tracking time budget
         double avgTimeTaken; //记录每次迭代所花费的平均时间。
@@ -82,26 +108,40 @@ class alphaAMAFTreeNode {
         int remainingLimit = params.breakMS; //允许的最小剩余时间，当剩余时间小于此值时停止搜索。
         ElapsedCpuTimer elapsedTimer = new ElapsedCpuTimer(); //用于跟踪总时间消耗的计时器。
         if (params.budgetType == BUDGET_TIME) { //如果预算类型是时间（BUDGET_TIME），则将搜索的总时间预算（params.budget）设置给计时器。
-            elapsedTimer.setMaxTimeMillis(params.budget);
+            elapsedTimer.setMaxTimeMillis(budget);
         }
 
         // Tracking number of iterations for iteration budget
         int numIters = 0; //用于跟踪完成的 MCTS 迭代次数。
+        // A reused root has counted calls before this search
+        int fmCallsStart = fmCallsCount;
 
         boolean stop = false; //stop 用于控制主循环的停止条件，当 stop 为 true 时，循环结束。
 
         while (!stop) {
+            // Past the hard deadline, keep what has been found so far
+            if (deadline.isExpired()) {
+                stats.deadlineExpired = true;
+                break;
+            }
             // New timer for this iteration
-            ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer(); //每次迭代都重新初始化一个新的计时器，跟踪该迭代的时间消耗。
+            ElapsedCpuTimer elapsedTimerIteration = params.budgetType == BUDGET_TIME ? new ElapsedCpuTimer() : null; //每次迭代都重新初始化一个新的计时器，跟踪该迭代的时间消耗。
 
             // Selection + expansion: navigate tree until a node not fully expanded is found, add a new node to the tree
+            long phaseStart = System.nanoTime();
             alphaAMAFTreeNode selected = treePolicy(); //从当前根节点沿着树向下遍历，直到找到尚未完全扩展的节点，然后扩展一个新的节点。
+            long treePolicyEnd = System.nanoTime();
+            stats.treePolicyNanos += treePolicyEnd - phaseStart;
             // Monte carlo rollout: return value of MC rollout from the newly added node
             double delta = selected.rollOut(); //对选择出的节点执行蒙特卡洛模拟（Monte Carlo Rollout），从该节点的状态随机进行游戏，直到游戏结束或达到指定深度。rollOut() 返回模拟的得分 delta。
+            long rolloutEnd = System.nanoTime();
+            stats.rolloutNanos += rolloutEnd - treePolicyEnd;
             // Back up the value of the rollout through the tree
             selected.backUp(delta,rolloutActions); //将蒙特卡洛模拟的结果（delta）回溯到父节点及其祖先节点，更新这些节点的累积值和访问次数。
+            stats.backupNanos += System.nanoTime() - rolloutEnd;
             // Finished iteration
             numIters++; //每完成一次迭代，增加迭代次数。
+            stats.iterations++;
 
             // Check stopping condition
             PlayerConstants budgetType = params.budgetType; //获取当前使用的预算类型（时间、迭代次数或前向模型调用次数）。
@@ -113,12 +153,27 @@ class alphaAMAFTreeNode {
                 stop = remaining <= 2 * avgTimeTaken || remaining <= remainingLimit;
             } else if (budgetType == BUDGET_ITERATIONS) { //如果使用迭代次数预算（BUDGET_ITERATIONS），则检查迭代次数是否达到设定的迭代次数上限（params.budget），是则停止搜索。
                 // Iteration budget
-                stop = numIters >= params.budget;
+                stop = numIters >= budget;
             } else if (budgetType == BUDGET_FM_CALLS) { //如果使用前向模型调用次数预算（BUDGET_FM_CALLS），则检查前向模型调用次数是否超出预算，是则停止搜索。
                 // FM calls budget
-                stop = fmCallsCount > params.budget;
+                stop = fmCallsCount - fmCallsStart > budget;
+            }
+
+            // Every earlyStopInterval iterations, stop once the choice at the root cannot change
+            if (!stop && params.earlyStopInterval > 0 && numIters % params.earlyStopInterval == 0
+                    && rootSettled(EarlyStop.remainingIterations(budgetType, budget, numIters,
+                    fmCallsCount - fmCallsStart, System.nanoTime() - searchStart), params.earlyStopZ)) {
+                stats.stoppedEarly = true;
+                stop = true;
             }
         }
+        deadline.cancel();
+        stats.searchNanos = System.nanoTime() - searchStart;
+        stats.budgetUsed = params.budgetType == BUDGET_ITERATIONS ? numIters
+                : params.budgetType == BUDGET_FM_CALLS ? fmCallsCount - fmCallsStart
+                : (int) (stats.searchNanos / 1_000_000);
+        if (allocatedStart >= 0)
+            stats.allocatedBytes = SearchStats.threadAllocatedBytes() - allocatedStart;
     }
 
     /**
@@ -133,7 +188,7 @@ class alphaAMAFTreeNode {
 
         // Keep iterating while the state reached is not terminal and the depth of the tree is not exceeded
         while (cur.state.isNotTerminal() && cur.depth < player.getParameters().maxTreeDepth) {
-            if (!cur.unexpandedActions().isEmpty()) {
+            if (cur.hasUnexpandedActions()) {
                 // We have an unexpanded action
                 cur = cur.expand();
                 return cur;
@@ -191,26 +246,41 @@ class alphaAMAFTreeNode {
     //  如果 children.get(a) == null，意味着这个动作 a 尚未扩展为一个子节点。
     //.collect(toList()) 将经过过滤的动作收集为一个 List<AbstractAction>，并将其返回。
 
+    /**
+     * Allocation-free check used on every step of the tree policy.
+     *
+     * @return true if at least one action from this State has not been expanded yet
+     */
+    private boolean hasUnexpandedActions() {
+        for (alphaAMAFTreeNode child : children.values()) {
+            if (child == null)
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Expands the node by creating a new random child node and adding to the tree.
      *
      * @return - new child node.
      */
     private alphaAMAFTreeNode expand() { //扩展当前节点，随机选择一个未选择的动作，并创建一个新的子节点，将其添加到树中。
+        long expandStart = System.nanoTime();
         // Find random child not already created
-        Random r = new Random(player.getParameters().getRandomSeed()); //创建一个随机数生成器，用来从未扩展的动作列表中随机选择一个动作。这里用的是 player.getParameters().getRandomSeed()，确保随机性可以通过固定的种子进行控制，便于复现实验结果。返回（设置好或随机生成的）Randomseed
         // pick a random unchosen action
         List<AbstractAction> notChosen = unexpandedActions(); //获取当前节点中还未被选择并扩展的动作列表，存储在 notChosen 中。这些动作可以用来生成新的子节点。
-        AbstractAction chosen = notChosen.get(r.nextInt(notChosen.size())); //r.nextInt(notChosen.size())：使用随机数生成器 r 从未扩展的动作中随机选择一个动作的索引。notChosen.get(...)：根据生成的随机索引，从未扩展动作列表中选择该动作，并将其存储在 chosen 中。
+        AbstractAction chosen = notChosen.get(rnd.nextInt(notChosen.size())); //r.nextInt(notChosen.size())：使用随机数生成器 r 从未扩展的动作中随机选择一个动作的索引。notChosen.get(...)：根据生成的随机索引，从未扩展动作列表中选择该动作，并将其存储在 chosen 中。
 
         // copy the current state and advance it using the chosen action
         // we first copy the action so that the one stored in the node will not have any state changes
         AbstractGameState nextState = state.copy(); //对当前的游戏状态 state 进行深拷贝，生成一个独立的副本 nextState。这样可以确保当前节点的状态不会被修改。
+        stats.stateCopies++;
         advance(nextState, chosen.copy()); //使用选中的动作 chosen（也进行了拷贝操作）推进游戏状态。advance() 方法基于所选动作更新游戏状态，模拟该动作的执行。
 
         // then instantiate a new node
         alphaAMAFTreeNode tn = new alphaAMAFTreeNode(player, this, nextState, rnd); //创建一个新的树节点 tn。新节点基于以下参数初始化
         children.put(chosen, tn); //将新扩展的子节点 tn 以及对应的动作 chosen 存储在当前节点的 children（子节点集合）中，建立动作和子节点的映射。
+        stats.expansionNanos += System.nanoTime() - expandStart;
         return tn;
     }
 
@@ -223,6 +293,7 @@ class alphaAMAFTreeNode {
     private void advance(AbstractGameState gs, AbstractAction act) { //将游戏状态推进到下一步，即应用给定的动作，并计算下一个状态。
         boolean iAmMoving = gs.getCurrentPlayer() == player.getPlayerID();
         player.getForwardModel().next(gs, act); //gs：表示当前游戏状态，类型为 AbstractGameState，是游戏的抽象表示。 act：表示要执行的动作，类型为 AbstractAction，是对当前状态执行的动作。
+        stats.fmCalls++;
         root.fmCallsCount++; //root.fmCallsCount++ 增加根节点的 fmCallsCount 计数器。
         if (!iAmMoving) {
             opponentModel.put(act, opponentModel.getOrDefault(act, 0) + 1);
@@ -230,7 +301,7 @@ class alphaAMAFTreeNode {
     } //player.getForwardModel() 返回当前玩家使用的前向模型（ForwardModel），这是负责模拟游戏进展的逻辑类。
     //next(gs, act) 调用前向模型的 next 方法，将当前游戏状态 gs 和动作 act 作为参数，执行该动作并将游戏状态推进到下一步。这一步会模拟应用某个动作后的游戏状态变化，决定游戏的下一步是什么。
 
-    private AbstractAction ucb() {
+    AbstractAction ucb() {
         AbstractAction bestAction = null;
         double bestValue = -Double.MAX_VALUE;
         alphaAMAF params = player.getParameters();
@@ -294,14 +365,17 @@ class alphaAMAFTreeNode {
      *
      * @return - value of rollout.
      */
-    private double rollOut() {
+    double rollOut() {
         //List<AbstractAction> rolloutActions = new ArrayList<>();
-        rolloutActions = new ArrayList<>();
+        rolloutActions.clear();
         int rolloutDepth = 0;
 
-        AbstractGameState rolloutState = state.copy(); // 复制游戏状态
+        // The heuristic only reads the state, so the copy is only needed when the rollout will advance it
+        AbstractGameState rolloutState = state;
 
-        if (player.getParameters().rolloutLength > 0) {
+        if (player.getParameters().rolloutLength > 0 && state.isNotTerminal()) {
+            rolloutState = state.copy(); // 复制游戏状态
+            stats.stateCopies++;
             while (!finishRollout(rolloutState, rolloutDepth)) {
                 List<AbstractAction> availableActions = randomPlayer.getForwardModel().computeAvailableActions(
                         rolloutState, randomPlayer.parameters.actionSpace);
@@ -315,6 +389,7 @@ class alphaAMAFTreeNode {
 
         // 评估最终状态并返回标准化得分
         double value = player.getParameters().getHeuristic().evaluateState(rolloutState, player.getPlayerID());
+        stats.heuristicEvals++;
         if (Double.isNaN(value))
             throw new AssertionError("Illegal heuristic value - should be a number");
 
@@ -326,13 +401,18 @@ class alphaAMAFTreeNode {
      * 根据对手模型的估计值偏向性地选择动作
      */
     private AbstractAction selectBiasedAction(AbstractGameState rolloutState, List<AbstractAction> availableActions) {
-        Map<AbstractAction, Double> actionProbabilities = new HashMap<>();
+        // Weights are kept in a reusable array indexed like availableActions, rather than a new map per step
+        int nActions = availableActions.size();
+        if (root.rolloutWeights == null || root.rolloutWeights.length < nActions)
+            root.rolloutWeights = new double[nActions];
+        double[] actionProbabilities = root.rolloutWeights;
         boolean iAmMoving = rolloutState.getCurrentPlayer() == player.getPlayerID();
 
         double totalExponentiatedWeight = 0.0;
 
         // 计算每个动作的指数权重，并求总和
-        for (AbstractAction action : availableActions) {
+        for (int i = 0; i < nActions; i++) {
+            AbstractAction action = availableActions.get(i);
             double weight;
 
             // 获取对手模型的估计权重
@@ -345,23 +425,22 @@ class alphaAMAFTreeNode {
             }
 
             double exponentiatedWeight = Math.exp(weight);  // 计算指数权重
-            actionProbabilities.put(action, exponentiatedWeight);
+            actionProbabilities[i] = exponentiatedWeight;
             totalExponentiatedWeight += exponentiatedWeight;
         }
 
         // 归一化每个动作的概率
-        for (AbstractAction action : actionProbabilities.keySet()) {
-            double normalizedProbability = actionProbabilities.get(action) / totalExponentiatedWeight;
-            actionProbabilities.put(action, normalizedProbability);
+        for (int i = 0; i < nActions; i++) {
+            actionProbabilities[i] /= totalExponentiatedWeight;
         }
 
         // 使用加权随机选择算法来选择动作
         double rand = player.getRnd().nextDouble();
         double cumulativeProbability = 0.0;
-        for (Map.Entry<AbstractAction, Double> entry : actionProbabilities.entrySet()) {
-            cumulativeProbability += entry.getValue();
+        for (int i = 0; i < nActions; i++) {
+            cumulativeProbability += actionProbabilities[i];
             if (rand <= cumulativeProbability) {
-                return entry.getKey();
+                return availableActions.get(i);
             }
         }
 
@@ -377,6 +456,8 @@ class alphaAMAFTreeNode {
      * @return - true if rollout finished, false otherwise
      */
     private boolean finishRollout(AbstractGameState rollerState, int depth) {
+        if (root.deadline.isExpired())
+            return true;
         if (depth >= player.getParameters().rolloutLength)
             return true;
 
@@ -388,12 +469,13 @@ class alphaAMAFTreeNode {
      * Back up the value of the child through all parents. Increase number of visits and total value.
      //* @param result - value of rollout to backup
      */
-    private void backUp(double reward, List<AbstractAction> rolloutActions) {
+    void backUp(double reward, List<AbstractAction> rolloutActions) {
         // 回溯标准MCTS
         alphaAMAFTreeNode node = this;
         while (node != null) {
             node.nVisits++;
             node.totValue += reward;
+            node.valueSquares += reward * reward;
 
             // 回溯AMAF
             for (AbstractAction action : rolloutActions) {
@@ -438,6 +520,128 @@ class alphaAMAFTreeNode {
         return bestAction;
     }
 
+    /**
+     * @param remainingIterations Iterations the budget is likely to allow still.
+     * @param z Standard errors for the confidence test; 0 to only test visits.
+     * @return Whether bestAction() is settled: the most visited child cannot be overtaken in the
+     * remaining iterations, or with z above 0, every child is expanded and its value interval lies
+     * below the leader's.
+     */
+    boolean rootSettled(double remainingIterations, double z) {
+        alphaAMAFTreeNode leader = null, runnerUp = null;
+        boolean expanded = true;
+        for (alphaAMAFTreeNode child : children.values()) {
+            if (child == null) {
+                expanded = false;
+            } else if (leader == null || child.nVisits > leader.nVisits) {
+                runnerUp = leader;
+                leader = child;
+            } else if (runnerUp == null || child.nVisits > runnerUp.nVisits) {
+                runnerUp = child;
+            }
+        }
+        if (leader == null)
+            return false;
+        if (EarlyStop.cannotOvertake(leader.nVisits, runnerUp == null ? 0 : runnerUp.nVisits, remainingIterations))
+            return true;
+        if (z <= 0 || !expanded)
+            return false;
+        for (alphaAMAFTreeNode child : children.values()) {
+            if (child != leader && !EarlyStop.separated(leader.totValue, leader.valueSquares, leader.nVisits,
+                    child.totValue, child.valueSquares, child.nVisits, z))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param actual What the player sees at the end of the actions.
+     * @return The node reached from this one by the given actions; null if actions is null, the
+     * tree has not tried them, a new round has begun since this node, or the node's state does not
+     * match actual (see Ponderer.sameObservation).
+     */
+    alphaAMAFTreeNode descendant(List<AbstractAction> actions, AbstractGameState actual) {
+        // The tree dealt the next round at random
+        if (actions == null || state.getRoundCounter() != actual.getRoundCounter())
+            return null;
+        alphaAMAFTreeNode node = this;
+        for (AbstractAction action : actions) {
+            node = node.children.get(action);
+            if (node == null)
+                return null;
+        }
+        return Ponderer.sameObservation(node.state, actual, player.getPlayerID()) ? node : null;
+    }
+
+    /**
+     * Cuts this node from its parent so the next search can carry on from it with what the tree
+     * already knows: the subtree keeps its visits and values, and gets fresh statistics and the
+     * new decision's random numbers.
+     *
+     * @param newState The state the player now sees, with the children brought in line with its
+     *                 available actions; null to keep the node's own state.
+     * @return This node, now a root.
+     */
+    alphaAMAFTreeNode rootify(AbstractGameState newState, Random rnd) {
+        if (newState != null) {
+            state = newState;
+            Map<AbstractAction, alphaAMAFTreeNode> available = new HashMap<>();
+            for (AbstractAction action : player.getForwardModel().computeAvailableActions(state, player.getParameters().actionSpace)) {
+                available.put(action, children.get(action));
+            }
+            children = available;
+        }
+        parent = null;
+        // The selection terms take ratios and logs of this count, so it goes on from the subtree's visits
+        fmCallsCount = nVisits;
+        SearchStats fresh = new SearchStats();
+        fresh.reusedVisits = nVisits;
+        int shift = depth;
+        Deque<alphaAMAFTreeNode> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            alphaAMAFTreeNode node = pending.pop();
+            node.root = this;
+            node.depth -= shift;
+            node.stats = fresh;
+            node.rnd = rnd;
+            node.randomPlayer = new RandomPlayer(rnd);
+            node.randomPlayer.setForwardModel(player.getForwardModel());
+            fresh.nodeCreated(node.depth);
+            for (alphaAMAFTreeNode child : node.children.values()) {
+                if (child != null)
+                    pending.push(child);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Keeps searching from this root on the ponderer's thread until it is stopped, or for maxMillis.
+     */
+    void ponder(Ponderer ponderer, double cpuShare, long maxMillis) {
+        if (!state.isNotTerminal())
+            return;
+        deadline = SearchDeadline.stoppable(maxMillis);
+        ponderer.start(deadline, () -> {
+            alphaAMAFTreeNode selected = treePolicy();
+            double delta = selected.rollOut();
+            selected.backUp(delta, rolloutActions);
+        }, cpuShare);
+    }
+
+    /**
+     * @return Visit count of each expanded child, keyed by the action leading to it
+     */
+    Map<AbstractAction, Integer> childVisits() {
+        Map<AbstractAction, Integer> visits = new LinkedHashMap<>();
+        for (Map.Entry<AbstractAction, alphaAMAFTreeNode> entry : children.entrySet()) {
+            if (entry.getValue() != null)
+                visits.put(entry.getKey(), entry.getValue().nVisits);
+        }
+        return visits;
+    }
+
     private double estimateOpponentValue(AbstractAction action) {
         return opponentModel.getOrDefault(action, 0) / (double) root.fmCallsCount;
     }
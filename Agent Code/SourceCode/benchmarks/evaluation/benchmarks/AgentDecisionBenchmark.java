@@ -0,0 +1,54 @@
+package evaluation.benchmarks;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import evaluation.benchmarks.BenchmarkPositions.Phase;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Latency of a whole decision (_getAction) of each agent, at the budget of its JSON config. Sample
+ * time mode reports the latency distribution, not only the mean.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AgentDecisionBenchmark {
+
+    @Param({BenchmarkPositions.ALPHA_AMAF, BenchmarkPositions.PROGRESSIVE_BIAS, BenchmarkPositions.UCB1_TUNED})
+    public String agent;
+
+    @Param({"2", "3", "5"})
+    public int nPlayers;
+
+    @Param({"EARLY", "MID", "LATE"})
+    public Phase phase;
+
+    private AbstractPlayer player;
+    private AbstractGameState observation;
+    private List<AbstractAction> actions;
+
+    @Setup
+    public void setup() {
+        List<AbstractPlayer> players = BenchmarkPositions.players(agent, nPlayers);
+        Game game = BenchmarkPositions.playTo(players, phase, BenchmarkPositions.SEED);
+        AbstractGameState state = game.getGameState();
+        int current = state.getCurrentPlayer();
+        player = players.get(current);
+        observation = state.copy(current);
+        actions = game.getForwardModel().computeAvailableActions(observation, player.getParameters().actionSpace);
+    }
+
+    @Benchmark
+    public AbstractAction getAction() {
+        return player._getAction(observation, actions);
+    }
+}
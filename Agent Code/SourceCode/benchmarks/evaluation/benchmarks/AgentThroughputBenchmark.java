@@ -0,0 +1,72 @@
+package evaluation.benchmarks;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import evaluation.benchmarks.BenchmarkPositions.Phase;
+import org.openjdk.jmh.annotations.*;
+import players.searchCommon.ISearchReporter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Search throughput of each agent, the set RegressionGate checks. One operation is one decision,
+ * so the GC profiler's gc.alloc.rate.norm is the bytes allocated per decision, and the
+ * "iterations" counter is the MCTS iterations per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class AgentThroughputBenchmark {
+
+    @Param({BenchmarkPositions.ALPHA_AMAF, BenchmarkPositions.PROGRESSIVE_BIAS, BenchmarkPositions.UCB1_TUNED})
+    public String agent;
+
+    @Param({"3"})
+    public int nPlayers;
+
+    @Param({"EARLY", "MID", "LATE"})
+    public Phase phase;
+
+    private AbstractPlayer player;
+    private AbstractGameState observation;
+    private List<AbstractAction> actions;
+
+    /**
+     * Search iterations, reported per second like the operations.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long iterations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            iterations = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        List<AbstractPlayer> players = BenchmarkPositions.players(agent, nPlayers);
+        Game game = BenchmarkPositions.playTo(players, phase, BenchmarkPositions.SEED);
+        AbstractGameState state = game.getGameState();
+        int current = state.getCurrentPlayer();
+        player = players.get(current);
+        observation = state.copy(current);
+        actions = game.getForwardModel().computeAvailableActions(observation, player.getParameters().actionSpace);
+    }
+
+    @Benchmark
+    public AbstractAction search(Counters counters) {
+        AbstractAction action = player._getAction(observation, actions);
+        counters.iterations += ((ISearchReporter) player).getSearchStats().iterations;
+        return action;
+    }
+}
@@ -0,0 +1,89 @@
+package evaluation.benchmarks;
+
+import core.AbstractForwardModel;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import games.GameType;
+import games.sushigo.SGGameState;
+import players.PlayerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Fixed Sushi Go positions for the benchmarks. A position is reached by dealing a seeded game and
+ * playing seeded random moves up to the chosen point of a round, so the same arguments always give
+ * the same position, on any machine.
+ */
+public class BenchmarkPositions {
+
+    // The agent configurations the benchmarks run, at the budgets they play tournaments with
+    public static final String ALPHA_AMAF = "json/testplayers/alphaAMAF.json";
+    public static final String PROGRESSIVE_BIAS = "json/testplayers/progressiveBias.json";
+    public static final String UCB1_TUNED = "json/sushigo/MCTS_UCB1_Tuned.json";
+
+    public static final long SEED = 740234;
+
+    /**
+     * Point of the game a position is taken from.
+     */
+    public enum Phase {
+        // First decision of the first round
+        EARLY(0, 0),
+        // Second round, half of the hand played
+        MID(1, 0.5),
+        // Last round, three quarters of the hand played
+        LATE(2, 0.75);
+
+        final int round;
+        final double played;
+
+        Phase(int round, double played) {
+            this.round = round;
+            this.played = played;
+        }
+    }
+
+    /**
+     * @return nPlayers new players built from one JSON file.
+     */
+    public static List<AbstractPlayer> players(String file, int nPlayers) {
+        List<AbstractPlayer> players = new ArrayList<>();
+        for (int p = 0; p < nPlayers; p++) {
+            AbstractPlayer player = PlayerFactory.createPlayer(file);
+            if (player == null)
+                throw new IllegalArgumentException("Could not create a player from " + file);
+            players.add(player);
+        }
+        return players;
+    }
+
+    /**
+     * Deals a game for the players and plays random moves up to the phase. The players get their
+     * forward model and ids from the game, so they can search from the returned state.
+     * @return The game, whose state is the position.
+     */
+    public static Game playTo(List<AbstractPlayer> players, Phase phase, long seed) {
+        Game game = GameType.SushiGo.createGameInstance(players.size(), seed);
+        game.reset(players, seed);
+        SGGameState state = (SGGameState) game.getGameState();
+        AbstractForwardModel fm = game.getForwardModel();
+        Random rnd = new Random(seed);
+        int handSize = -1;
+        while (state.isNotTerminal()) {
+            if (state.getRoundCounter() == phase.round) {
+                int hand = state.getPlayerHands().get(state.getCurrentPlayer()).getSize();
+                if (handSize < 0)
+                    handSize = hand;
+                if (hand <= handSize - (int) (phase.played * handSize))
+                    return game;
+            }
+            List<AbstractAction> actions = fm.computeAvailableActions(state);
+            fm.next(state, actions.get(rnd.nextInt(actions.size())));
+        }
+        throw new IllegalStateException("Game ended before reaching " + phase);
+    }
+}
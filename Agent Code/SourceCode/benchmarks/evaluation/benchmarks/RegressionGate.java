@@ -0,0 +1,320 @@
+package evaluation.benchmarks;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * Catches search slowdowns before they reach a tournament. Runs AgentThroughputBenchmark (or reads
+ * the JMH results of a run given as results=) and compares every benchmark with a stored baseline
+ * on two metrics: MCTS iterations per second, and bytes allocated per decision.
+ *
+ * A metric fails when it is worse than the baseline by more than its threshold, and the samples
+ * show it with 99% confidence (one-sided Welch t-test on the per-iteration JMH samples of both
+ * runs). A change within the noise of the measurements therefore does not fail, however large it
+ * looks. A baseline benchmark or metric missing from the results fails as well, unless
+ * allowMissing is set, so a benchmark that stopped running cannot pass the gate. The report lists
+ * every benchmark and metric, and the run ends with an exception if any failed, so a build step
+ * running it fails too.
+ *
+ * The baseline is a JSON file holding the raw samples, with a format version, a label (such as the
+ * commit it was measured on), the time and the JVM. Write a new one with update=true.
+ *
+ * Arguments (name=value):
+ *   baseline        baseline file (default benchmark-baseline.json)
+ *   results         JMH JSON results to check (default: run the benchmarks into benchmark-results.json)
+ *   threshold       regression allowed in iterations per second, as a fraction (default 0.05)
+ *   allocThreshold  increase allowed in bytes per decision, as a fraction (default 0.10)
+ *   allowMissing    report baseline metrics missing from the results without failing (default false)
+ *   update          store the results as the new baseline instead of comparing (default false)
+ *   label           label of a new baseline (default empty)
+ */
+public class RegressionGate {
+
+    public static final int FORMAT_VERSION = 1;
+    public static final String BENCHMARKS = "AgentThroughputBenchmark";
+
+    // One-sided 99% normal quantile, the base of the t critical value
+    static final double Z_99 = 2.3263478740;
+
+    /**
+     * A metric compared by the gate.
+     */
+    enum Metric {
+        ITERATIONS_PER_SECOND("iterationsPerSecond", "iterations", true),
+        BYTES_PER_DECISION("bytesPerDecision", "gc.alloc.rate.norm", false);
+
+        final String key;
+        final String jmhName;
+        final boolean higherIsBetter;
+
+        Metric(String key, String jmhName, boolean higherIsBetter) {
+            this.key = key;
+            this.jmhName = jmhName;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baselineFile = getArg(args, "baseline", "benchmark-baseline.json");
+        String resultsFile = getArg(args, "results", "");
+        double threshold = getArg(args, "threshold", 0.05);
+        double allocThreshold = getArg(args, "allocThreshold", 0.10);
+        boolean allowMissing = getArg(args, "allowMissing", false);
+        boolean update = getArg(args, "update", false);
+        String label = getArg(args, "label", "");
+
+        if (resultsFile.isEmpty()) {
+            resultsFile = "benchmark-results.json";
+            RunBenchmarks.run(BENCHMARKS, resultsFile, -1);
+        }
+        Map<String, Map<Metric, double[]>> results = readJmh(resultsFile);
+
+        if (update) {
+            writeBaseline(Paths.get(baselineFile), results, label);
+            System.out.println("Baseline of " + results.size() + " benchmarks written to " + baselineFile);
+            return;
+        }
+        Map<String, Map<Metric, double[]>> baseline = readBaseline(baselineFile);
+        List<String> report = new ArrayList<>();
+        int regressions = compare(baseline, results, threshold, allocThreshold, allowMissing, report);
+        report.forEach(System.out::println);
+        if (regressions > 0)
+            throw new IllegalStateException(regressions + " benchmark metrics regressed or are missing against " + baselineFile);
+        System.out.println("No regressions against " + baselineFile);
+    }
+
+    /**
+     * Compares results with a baseline, adding one report line per benchmark and metric.
+     * @param allowMissing Whether a baseline metric missing from the results is only reported.
+     * @return Number of metrics that regressed, or are missing unless allowed.
+     */
+    static int compare(Map<String, Map<Metric, double[]>> baseline, Map<String, Map<Metric, double[]>> results,
+                       double threshold, double allocThreshold, boolean allowMissing, List<String> report) {
+        report.add(String.format("%-8s %-20s %14s %14s %8s  %s", "Verdict", "Metric", "Baseline", "Now", "Change", "Benchmark"));
+        int regressions = 0;
+        for (Map.Entry<String, Map<Metric, double[]>> entry : baseline.entrySet()) {
+            Map<Metric, double[]> now = results.get(entry.getKey());
+            for (Metric metric : Metric.values()) {
+                double[] before = entry.getValue().get(metric);
+                if (before == null)
+                    continue;
+                double[] after = now == null ? null : now.get(metric);
+                if (after == null) {
+                    report.add(String.format("%-8s %-20s %14.1f %14s %8s  %s", "MISSING", metric.key, mean(before), "-", "-", entry.getKey()));
+                    if (!allowMissing)
+                        regressions++;
+                    continue;
+                }
+                double limit = metric == Metric.BYTES_PER_DECISION ? allocThreshold : threshold;
+                String verdict;
+                if (regressed(before, after, limit, metric.higherIsBetter)) {
+                    verdict = "REGRESS";
+                    regressions++;
+                } else if (regressed(after, before, 0, metric.higherIsBetter)) {
+                    verdict = "better";
+                } else {
+                    verdict = "ok";
+                }
+                double change = mean(before) == 0 ? 0 : mean(after) / mean(before) - 1;
+                report.add(String.format("%-8s %-20s %14.1f %14.1f %+7.1f%%  %s", verdict, metric.key,
+                        mean(before), mean(after), 100 * change, entry.getKey()));
+            }
+        }
+        for (String key : results.keySet()) {
+            if (!baseline.containsKey(key))
+                report.add(String.format("%-8s %-20s %14s %14s %8s  %s", "NEW", "-", "-", "-", "-", key));
+        }
+        return regressions;
+    }
+
+    /**
+     * One-sided test that the samples after are worse than the samples before by more than a
+     * fraction limit: for a higher-is-better metric, that mean(after) < (1 - limit) * mean(before).
+     * @return True if that holds with 99% confidence.
+     */
+    static boolean regressed(double[] before, double[] after, double limit, boolean higherIsBetter) {
+        double scale = higherIsBetter ? 1 - limit : 1 + limit;
+        double bound = scale * mean(before);
+        double margin = higherIsBetter ? bound - mean(after) : mean(after) - bound;
+        if (margin <= 0)
+            return false;
+        double vb = scale * scale * variance(before) / before.length;
+        double va = variance(after) / after.length;
+        double se = Math.sqrt(vb + va);
+        if (se == 0)
+            return true;
+        // Welch-Satterthwaite degrees of freedom
+        double df = (vb + va) * (vb + va) / (vb * vb / Math.max(1, before.length - 1) + va * va / Math.max(1, after.length - 1));
+        return margin / se > tCritical(df);
+    }
+
+    /**
+     * @return The one-sided 99% quantile of Student's t with df degrees of freedom, by the
+     * Cornish-Fisher expansion around the normal quantile (within 2% of the exact value from 3 degrees of freedom).
+     */
+    static double tCritical(double df) {
+        double z = Z_99, z3 = z * z * z, z5 = z3 * z * z, z7 = z5 * z * z;
+        df = Math.max(df, 2);
+        return z + (z3 + z) / (4 * df) + (5 * z5 + 16 * z3 + 3 * z) / (96 * df * df)
+                + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * df * df * df);
+    }
+
+    static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return values.length == 0 ? 0 : sum / values.length;
+    }
+
+    static double variance(double[] values) {
+        if (values.length < 2)
+            return 0;
+        double mean = mean(values), sum = 0;
+        for (double v : values) {
+            sum += (v - mean) * (v - mean);
+        }
+        return sum / (values.length - 1);
+    }
+
+    /**
+     * Reads the metrics of a JMH JSON results file.
+     * @return For each benchmark, named with its parameters, the per-iteration samples of every metric it has.
+     */
+    static Map<String, Map<Metric, double[]>> readJmh(String file) throws IOException {
+        Map<String, Map<Metric, double[]>> results = new TreeMap<>();
+        for (Object o : (JSONArray) parse(file)) {
+            JSONObject run = (JSONObject) o;
+            Map<Metric, double[]> metrics = new LinkedHashMap<>();
+            JSONObject secondary = (JSONObject) run.get("secondaryMetrics");
+            if (secondary != null) {
+                for (Object name : secondary.keySet()) {
+                    // Older JMH versions prefix profiler metrics with a middle dot
+                    String metricName = ((String) name).replace("·", "");
+                    for (Metric metric : Metric.values()) {
+                        if (metric.jmhName.equals(metricName))
+                            metrics.put(metric, rawData((JSONObject) secondary.get(name)));
+                    }
+                }
+            }
+            results.put(benchmarkKey(run), metrics);
+        }
+        return results;
+    }
+
+    /**
+     * @return The benchmark's method name without its package, followed by its parameters, e.g.
+     * AgentThroughputBenchmark.search:agent=json/testplayers/alphaAMAF.json,nPlayers=3,phase=MID
+     */
+    static String benchmarkKey(JSONObject run) {
+        String name = (String) run.get("benchmark");
+        String[] parts = name.split("\\.");
+        StringBuilder key = new StringBuilder(parts.length < 2 ? name : parts[parts.length - 2] + "." + parts[parts.length - 1]);
+        JSONObject params = (JSONObject) run.get("params");
+        if (params != null && !params.isEmpty()) {
+            String separator = ":";
+            for (Object param : new TreeMap<Object, Object>(params).keySet()) {
+                key.append(separator).append(param).append('=').append(params.get(param));
+                separator = ",";
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return All iteration scores of all forks of a JMH metric.
+     */
+    static double[] rawData(JSONObject metric) {
+        List<Double> samples = new ArrayList<>();
+        JSONArray forks = (JSONArray) metric.get("rawData");
+        if (forks == null) {
+            samples.add(((Number) metric.get("score")).doubleValue());
+        } else {
+            for (Object fork : forks) {
+                for (Object value : (JSONArray) fork) {
+                    samples.add(((Number) value).doubleValue());
+                }
+            }
+        }
+        double[] values = new double[samples.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = samples.get(i);
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    static void writeBaseline(Path file, Map<String, Map<Metric, double[]>> results, String label) throws IOException {
+        JSONObject baseline = new JSONObject();
+        baseline.put("format", FORMAT_VERSION);
+        baseline.put("label", label);
+        baseline.put("created", Instant.now().toString());
+        baseline.put("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        JSONObject benchmarks = new JSONObject();
+        for (Map.Entry<String, Map<Metric, double[]>> entry : results.entrySet()) {
+            JSONObject metrics = new JSONObject();
+            for (Map.Entry<Metric, double[]> metric : entry.getValue().entrySet()) {
+                JSONArray samples = new JSONArray();
+                for (double v : metric.getValue()) {
+                    samples.add(v);
+                }
+                metrics.put(metric.getKey().key, samples);
+            }
+            benchmarks.put(entry.getKey(), metrics);
+        }
+        baseline.put("benchmarks", benchmarks);
+        Files.write(file, baseline.toJSONString().getBytes());
+    }
+
+    static Map<String, Map<Metric, double[]>> readBaseline(String file) throws IOException {
+        JSONObject baseline = (JSONObject) parse(file);
+        Object format = baseline.get("format");
+        if (!(format instanceof Number) || ((Number) format).intValue() != FORMAT_VERSION)
+            throw new IOException(file + " has baseline format " + format + ", expected " + FORMAT_VERSION + "; write a new one with update=true");
+        System.out.println("Baseline " + file + ": label '" + baseline.get("label") + "', created " + baseline.get("created") + " on " + baseline.get("jvm"));
+        Map<String, Map<Metric, double[]>> results = new TreeMap<>();
+        JSONObject benchmarks = (JSONObject) baseline.get("benchmarks");
+        for (Object name : benchmarks.keySet()) {
+            JSONObject stored = (JSONObject) benchmarks.get(name);
+            Map<Metric, double[]> metrics = new LinkedHashMap<>();
+            for (Metric metric : Metric.values()) {
+                JSONArray samples = (JSONArray) stored.get(metric.key);
+                if (samples == null)
+                    continue;
+                double[] values = new double[samples.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = ((Number) samples.get(i)).doubleValue();
+                }
+                metrics.put(metric, values);
+            }
+            results.put((String) name, metrics);
+        }
+        return results;
+    }
+
+    static Object parse(String file) throws IOException {
+        try (Reader reader = new FileReader(file)) {
+            return new JSONParser().parse(reader);
+        } catch (ParseException e) {
+            throw new IOException("Could not parse " + file, e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package evaluation.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * Runs the benchmark suite with the GC profiler, so every result comes with its allocation rate
+ * (gc.alloc.rate) and bytes allocated per operation (gc.alloc.rate.norm) next to the time.
+ *
+ * Arguments (name=value):
+ *   include  regular expression of the benchmarks to run (default: all of them)
+ *   out      JSON results file (default benchmark-results.json)
+ *   forks    forks per benchmark, overriding the annotations (default: as annotated)
+ */
+public class RunBenchmarks {
+
+    // JMH matches this against every benchmark method name, e.g. games.sushigo.SushiGoHeuristicBenchmark.evaluateState
+    public static final String ALL = "Benchmark\\.";
+
+    public static void main(String[] args) throws Exception {
+        String include = getArg(args, "include", ALL);
+        String out = getArg(args, "out", "benchmark-results.json");
+        int forks = getArg(args, "forks", -1);
+        run(include, out, forks);
+        System.out.println("Results written to " + out);
+    }
+
+    /**
+     * Runs the matching benchmarks with the GC profiler.
+     * @param include Regular expression of the benchmarks to run.
+     * @param out JSON results file.
+     * @param forks Forks per benchmark, or -1 to keep the annotated number.
+     */
+    public static void run(String include, String out, int forks) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(out)
+                .shouldFailOnError(true);
+        if (forks >= 0)
+            options.forks(forks);
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,261 @@
+package evaluation.benchmarks;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.actions.AbstractAction;
+import evaluation.experiments.AgentSpec;
+import evaluation.experiments.GameOutcome;
+import evaluation.experiments.MatchRunner;
+import games.GameType;
+import players.PlayerConstants;
+import players.searchCommon.ISearchReporter;
+import players.searchCommon.SearchStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * Measures how each agent scales with table size and budget. For every agent, player count, budget
+ * type and budget size, the agent plays games at that budget against the agents at their own
+ * configs, rotating through the seats. Each cell of the sweep records the agent's decision latency
+ * (p50, p95, p99), the heap it allocates per decision, its search iterations per decision and its
+ * win rate (games finished first).
+ *
+ * The report, ScalingReport.txt in destDir, has one table per agent, player count and budget type,
+ * and names the budget where the agent stops scaling: the smallest budget that no larger budget
+ * beats by minGain in win rate. Time-budget cells whose p99 latency runs more than 25% over the
+ * budget are flagged too. Every cell is also written to scaling.csv for plotting.
+ *
+ * Latencies are only meaningful if every game thread has a core of its own, so threads defaults to 1.
+ *
+ * Arguments (name=value):
+ *   agents        comma-separated player JSON files to sweep (default: the alphaAMAF, progressiveBias and UCB1-Tuned configs)
+ *   opponents     comma-separated player JSON files of the other seats (default: the same files)
+ *   nPlayers      comma-separated player counts (default 3,4,5)
+ *   budgetTypes   comma-separated budget types (default BUDGET_FM_CALLS,BUDGET_TIME,BUDGET_ITERATIONS)
+ *   fmBudgets     forward model call budgets (default 250,500,1000,2000,4000,8000)
+ *   timeBudgets   time budgets in ms (default 5,10,20,40,80,160)
+ *   iterBudgets   iteration budgets (default 50,100,200,400,800,1600)
+ *   games         games per cell (default 30)
+ *   minGain       win rate gain that still counts as scaling (default 0.03)
+ *   seed          seed of the first game of each cell (default 0)
+ *   threads       game threads (default 1)
+ *   destDir       output directory (default outputdir)
+ */
+public class ScalingSweep {
+
+    static final String DEFAULT_AGENTS = BenchmarkPositions.ALPHA_AMAF + "," + BenchmarkPositions.PROGRESSIVE_BIAS + "," + BenchmarkPositions.UCB1_TUNED;
+    // A time-budget decision counts as overrunning when its p99 exceeds the budget by this factor
+    static final double OVERRUN = 1.25;
+
+    /**
+     * Everything measured for one agent, player count, budget type and budget.
+     */
+    static class Cell {
+        final AgentSpec agent;
+        final int nPlayers;
+        final PlayerConstants budgetType;
+        final int budget;
+        final List<Long> latencies = new ArrayList<>();
+        final List<Long> allocations = new ArrayList<>();
+        long iterations;
+        int games, wins;
+
+        Cell(AgentSpec agent, int nPlayers, PlayerConstants budgetType, int budget) {
+            this.agent = agent;
+            this.nPlayers = nPlayers;
+            this.budgetType = budgetType;
+            this.budget = budget;
+        }
+
+        synchronized void addDecision(long nanos, SearchStats stats) {
+            latencies.add(nanos);
+            if (stats != null) {
+                iterations += stats.iterations;
+                if (stats.allocatedBytes >= 0)
+                    allocations.add(stats.allocatedBytes);
+            }
+        }
+
+        synchronized void addGame(boolean won) {
+            games++;
+            if (won)
+                wins++;
+        }
+
+        double winRate() {
+            return games == 0 ? 0 : (double) wins / games;
+        }
+
+        /**
+         * @param q Quantile in [0, 1].
+         * @return The latency quantile in milliseconds, nearest rank.
+         */
+        double latencyMs(double q) {
+            if (latencies.isEmpty())
+                return 0;
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            int rank = (int) Math.ceil(q * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank))] / 1e6;
+        }
+
+        double bytesPerDecision() {
+            return allocations.stream().mapToLong(Long::longValue).average().orElse(0);
+        }
+
+        double iterationsPerDecision() {
+            return latencies.isEmpty() ? 0 : (double) iterations / latencies.size();
+        }
+
+        boolean overruns() {
+            return budgetType == PlayerConstants.BUDGET_TIME && latencyMs(0.99) > OVERRUN * budget;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<AgentSpec> agents = AgentSpec.fromList(getArg(args, "agents", DEFAULT_AGENTS));
+        List<AgentSpec> opponents = AgentSpec.fromList(getArg(args, "opponents", DEFAULT_AGENTS));
+        int[] playerCounts = ints(getArg(args, "nPlayers", "3,4,5"));
+        String[] budgetTypes = getArg(args, "budgetTypes", "BUDGET_FM_CALLS,BUDGET_TIME,BUDGET_ITERATIONS").split(",");
+        int[] fmBudgets = ints(getArg(args, "fmBudgets", "250,500,1000,2000,4000,8000"));
+        int[] timeBudgets = ints(getArg(args, "timeBudgets", "5,10,20,40,80,160"));
+        int[] iterBudgets = ints(getArg(args, "iterBudgets", "50,100,200,400,800,1600"));
+        int nGames = getArg(args, "games", 30);
+        double minGain = getArg(args, "minGain", 0.03);
+        long seed = getArg(args, "seed", 0L);
+        int threads = getArg(args, "threads", 1);
+        File destDir = new File(getArg(args, "destDir", "outputdir"));
+        if (!destDir.exists() && !destDir.mkdirs())
+            throw new IOException("Could not create " + destDir);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<List<Cell>> series = new ArrayList<>();
+        try (PrintWriter csv = new PrintWriter(new File(destDir, "scaling.csv"))) {
+            csv.println("agent,nPlayers,budgetType,budget,games,winRate,p50Ms,p95Ms,p99Ms,bytesPerDecision,iterationsPerDecision");
+            for (AgentSpec agent : agents) {
+                for (int nPlayers : playerCounts) {
+                    for (String typeName : budgetTypes) {
+                        PlayerConstants budgetType = PlayerConstants.valueOf(typeName.trim());
+                        int[] budgets = budgetType == PlayerConstants.BUDGET_TIME ? timeBudgets
+                                : budgetType == PlayerConstants.BUDGET_ITERATIONS ? iterBudgets : fmBudgets;
+                        List<Cell> cells = new ArrayList<>();
+                        for (int budget : budgets) {
+                            Cell cell = new Cell(agent, nPlayers, budgetType, budget);
+                            play(cell, opponents, nGames, seed, pool);
+                            cells.add(cell);
+                            csv.printf("%s,%d,%s,%d,%d,%.4f,%.3f,%.3f,%.3f,%.0f,%.1f%n", agent.name, nPlayers, budgetType, budget,
+                                    cell.games, cell.winRate(), cell.latencyMs(0.5), cell.latencyMs(0.95), cell.latencyMs(0.99),
+                                    cell.bytesPerDecision(), cell.iterationsPerDecision());
+                            csv.flush();
+                            System.out.printf("%s, %d players, %s %d: win rate %.2f, p99 %.1fms%n", agent.name, nPlayers,
+                                    budgetType, budget, cell.winRate(), cell.latencyMs(0.99));
+                        }
+                        series.add(cells);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        String report = report(series, minGain);
+        try (PrintWriter out = new PrintWriter(new File(destDir, "ScalingReport.txt"))) {
+            out.print(report);
+        }
+        System.out.print(report);
+    }
+
+    /**
+     * Plays the games of one cell. The swept agent takes seat g % nPlayers in game g, and the other
+     * seats go round the opponents.
+     */
+    static void play(Cell cell, List<AgentSpec> opponents, int nGames, long seed, ExecutorService pool) throws Exception {
+        List<Future<?>> games = new ArrayList<>();
+        for (int g = 0; g < nGames; g++) {
+            int game = g;
+            games.add(pool.submit(() -> {
+                int seat = game % cell.nPlayers;
+                List<AgentSpec> seats = new ArrayList<>();
+                List<AbstractPlayer> players = new ArrayList<>();
+                for (int p = 0; p < cell.nPlayers; p++) {
+                    AgentSpec spec = p == seat ? cell.agent : opponents.get((game + p) % opponents.size());
+                    AbstractPlayer player = spec.newPlayer();
+                    if (p == seat) {
+                        player.getParameters().budgetType = cell.budgetType;
+                        player.getParameters().budget = cell.budget;
+                    }
+                    seats.add(spec);
+                    players.add(player);
+                }
+                GameOutcome outcome = MatchRunner.play(GameType.SushiGo, seats, players, seed + game, new MatchRunner.DecisionObserver() {
+                    @Override
+                    public void onDecision(int decision, AbstractGameState state, int playerId, AbstractPlayer player,
+                                           List<AbstractAction> actions, AbstractAction chosen, long nanos) {
+                        if (playerId == seat)
+                            cell.addDecision(nanos, player instanceof ISearchReporter ? ((ISearchReporter) player).getSearchStats() : null);
+                    }
+                });
+                cell.addGame(outcome.ordinals[seat] == 1);
+                return null;
+            }));
+        }
+        for (Future<?> game : games) {
+            game.get();
+        }
+    }
+
+    /**
+     * @return The scaling report: one table per series of budgets, with the budget where it stops scaling.
+     */
+    static String report(List<List<Cell>> series, double minGain) {
+        StringBuilder sb = new StringBuilder();
+        for (List<Cell> cells : series) {
+            Cell first = cells.get(0);
+            sb.append(String.format("%s, %d players, %s%n", first.agent.name, first.nPlayers, first.budgetType));
+            sb.append(String.format("  %8s %6s %7s %9s %9s %9s %12s %12s%n", "Budget", "Games", "Win", "p50 ms", "p95 ms", "p99 ms", "KB/decision", "Iterations"));
+            for (Cell cell : cells) {
+                sb.append(String.format("  %8d %6d %6.1f%% %9.2f %9.2f %9.2f %12.1f %12.1f%s%n", cell.budget, cell.games,
+                        100 * cell.winRate(), cell.latencyMs(0.5), cell.latencyMs(0.95), cell.latencyMs(0.99),
+                        cell.bytesPerDecision() / 1024, cell.iterationsPerDecision(), cell.overruns() ? "  over budget" : ""));
+            }
+            int stop = saturation(cells, minGain);
+            if (stop < cells.size() - 1)
+                sb.append(String.format("  Stops scaling at %d: no larger budget wins %.0f%% more often%n", cells.get(stop).budget, 100 * minGain));
+            else
+                sb.append(String.format("  Still scaling at %d%n", cells.get(stop).budget));
+            sb.append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return Index of the smallest budget that no larger budget beats by minGain in win rate.
+     */
+    static int saturation(List<Cell> cells, double minGain) {
+        for (int i = 0; i < cells.size(); i++) {
+            double best = cells.get(i).winRate();
+            for (int j = i + 1; j < cells.size(); j++) {
+                best = Math.max(best, cells.get(j).winRate());
+            }
+            if (best - cells.get(i).winRate() < minGain)
+                return i;
+        }
+        return cells.size() - 1;
+    }
+
+    static int[] ints(String list) {
+        return Arrays.stream(list.split(",")).map(String::trim).filter(s -> !s.isEmpty()).mapToInt(Integer::parseInt).toArray();
+    }
+}
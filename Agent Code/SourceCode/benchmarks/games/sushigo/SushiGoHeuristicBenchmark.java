@@ -0,0 +1,95 @@
+package games.sushigo;
+
+import evaluation.benchmarks.BenchmarkPositions;
+import evaluation.benchmarks.BenchmarkPositions.Phase;
+import org.openjdk.jmh.annotations.*;
+import players.simple.RandomPlayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import core.AbstractPlayer;
+
+
+/**
+ * Throughput of SushiGoHeuristic.evaluateState on fixed positions, as called at every rollout leaf.
+ * The setup first checks that SushiGoBatchEvaluator agrees with evaluateState on all the benchmark
+ * positions; main() runs that check on its own.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SushiGoHeuristicBenchmark {
+
+    @Param({"2", "3", "5"})
+    public int nPlayers;
+
+    @Param({"EARLY", "MID", "LATE"})
+    public Phase phase;
+
+    private SushiGoHeuristic heuristic;
+    private SGGameState state;
+    private int playerId;
+
+    @Setup
+    public void setup() {
+        List<AbstractPlayer> players = new ArrayList<>();
+        for (int p = 0; p < nPlayers; p++) {
+            players.add(new RandomPlayer());
+        }
+        state = (SGGameState) BenchmarkPositions.playTo(players, phase, BenchmarkPositions.SEED).getGameState();
+        playerId = state.getCurrentPlayer();
+        heuristic = new SushiGoHeuristic();
+        checkBatch();
+    }
+
+    public static void main(String[] args) {
+        checkBatch();
+        System.out.println("SushiGoBatchEvaluator matches evaluateState on all benchmark positions");
+    }
+
+    /**
+     * Scores every benchmark position, for every player, with SushiGoBatchEvaluator under the
+     * default factors and under other factors, and compares it with evaluateState.
+     * @throws IllegalStateException If any value differs.
+     */
+    static void checkBatch() {
+        List<SGGameState> states = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int n : new int[]{2, 3, 5}) {
+            for (Phase phase : Phase.values()) {
+                List<AbstractPlayer> players = new ArrayList<>();
+                for (int p = 0; p < n; p++) {
+                    players.add(new RandomPlayer());
+                }
+                SGGameState position = (SGGameState) BenchmarkPositions.playTo(players, phase, BenchmarkPositions.SEED).getGameState();
+                for (int p = 0; p < n; p++) {
+                    states.add(position);
+                    ids.add(p);
+                }
+            }
+        }
+        int[] playerIds = ids.stream().mapToInt(Integer::intValue).toArray();
+        SushiGoBatchEvaluator batch = new SushiGoBatchEvaluator(states, playerIds);
+
+        SushiGoHeuristic reweighted = new SushiGoHeuristic();
+        for (int f = 0; f < SushiGoBatchEvaluator.N_FACTORS; f++) {
+            reweighted.setParameterValue(SushiGoBatchEvaluator.FACTOR_NAMES[f], 0.25 + 0.35 * f);
+        }
+        reweighted._reset();
+        for (SushiGoHeuristic h : new SushiGoHeuristic[]{new SushiGoHeuristic(), reweighted}) {
+            double difference = batch.maxDifference(h, states, playerIds);
+            if (difference > 1e-9)
+                throw new IllegalStateException("Batch and scalar SushiGoHeuristic differ by " + difference);
+        }
+    }
+
+    @Benchmark
+    public double evaluateState() {
+        return heuristic.evaluateState(state, playerId);
+    }
+}
@@ -0,0 +1,91 @@
+package players.MCTS_UCB1_Tuned;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.actions.AbstractAction;
+import evaluation.benchmarks.BenchmarkPositions;
+import evaluation.benchmarks.BenchmarkPositions.Phase;
+import games.sushigo.actions.ChooseCard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Cost of a single rollOut() and of one ucb() selection in MCTS_UCB1_TunedTreeNode, with the
+ * parameters of json/sushigo/MCTS_UCB1_Tuned.json; rollOut() is measured at several rollout lengths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MCTS_UCB1_TunedNodeBenchmark {
+
+    @State(Scope.Thread)
+    public static class Rollout {
+        @Param({"2", "3", "5"})
+        public int nPlayers;
+
+        @Param({"EARLY", "MID", "LATE"})
+        public Phase phase;
+
+        // 0 scores the leaf in place; above 0 each rollout copies the state, which the GC profiler's
+        // gc.alloc.rate.norm shows as bytes per rollOut
+        @Param({"0", "10", "30"})
+        public int rolloutLength;
+
+        MCTS_UCB1_TunedTreeNode node;
+
+        @Setup
+        public void setup() {
+            List<AbstractPlayer> players = BenchmarkPositions.players(BenchmarkPositions.UCB1_TUNED, nPlayers);
+            AbstractGameState state = BenchmarkPositions.playTo(players, phase, BenchmarkPositions.SEED).getGameState();
+            MCTS_UCB1_TunedPlayer player = (MCTS_UCB1_TunedPlayer) players.get(state.getCurrentPlayer());
+            player.getParameters().rolloutLength = rolloutLength;
+            node = new MCTS_UCB1_TunedTreeNode(player, null, state, new Random(BenchmarkPositions.SEED));
+        }
+    }
+
+    /**
+     * A root with childCount children that have all been visited, so ucb() scores every one.
+     * The children are keyed by card indices beyond the hand, which is all ucb() needs of them.
+     */
+    @State(Scope.Thread)
+    public static class Selection {
+        @Param({"4", "16", "64", "256"})
+        public int childCount;
+
+        MCTS_UCB1_TunedTreeNode root;
+
+        @Setup
+        public void setup() {
+            List<AbstractPlayer> players = BenchmarkPositions.players(BenchmarkPositions.UCB1_TUNED, 3);
+            AbstractGameState state = BenchmarkPositions.playTo(players, Phase.EARLY, BenchmarkPositions.SEED).getGameState();
+            MCTS_UCB1_TunedPlayer player = (MCTS_UCB1_TunedPlayer) players.get(state.getCurrentPlayer());
+            Random rnd = new Random(BenchmarkPositions.SEED);
+            root = new MCTS_UCB1_TunedTreeNode(player, null, state, rnd);
+            // Drop the unexpanded actions the root starts with
+            root.children.clear();
+            for (int i = 0; i < childCount; i++) {
+                MCTS_UCB1_TunedTreeNode child = new MCTS_UCB1_TunedTreeNode(player, root, state, rnd);
+                root.children.put(new ChooseCard(player.getPlayerID(), i, false), child);
+                for (int v = 0; v <= i % 8; v++) {
+                    child.backUp(rnd.nextDouble());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public double rollOut(Rollout rollout) {
+        return rollout.node.rollOut();
+    }
+
+    @Benchmark
+    public AbstractAction ucb(Selection selection) {
+        return selection.root.ucb();
+    }
+}
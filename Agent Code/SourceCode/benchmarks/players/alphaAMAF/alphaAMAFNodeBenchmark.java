@@ -0,0 +1,92 @@
+package players.alphaAMAF;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.actions.AbstractAction;
+import evaluation.benchmarks.BenchmarkPositions;
+import evaluation.benchmarks.BenchmarkPositions.Phase;
+import games.sushigo.actions.ChooseCard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Cost of a single rollOut() and of one ucb() selection in alphaAMAFTreeNode, with the
+ * parameters of json/testplayers/alphaAMAF.json; rollOut() is measured at several rollout lengths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class alphaAMAFNodeBenchmark {
+
+    @State(Scope.Thread)
+    public static class Rollout {
+        @Param({"2", "3", "5"})
+        public int nPlayers;
+
+        @Param({"EARLY", "MID", "LATE"})
+        public Phase phase;
+
+        // 0 scores the leaf in place; above 0 each rollout copies the state, which the GC profiler's
+        // gc.alloc.rate.norm shows as bytes per rollOut
+        @Param({"0", "10", "30"})
+        public int rolloutLength;
+
+        alphaAMAFTreeNode node;
+
+        @Setup
+        public void setup() {
+            List<AbstractPlayer> players = BenchmarkPositions.players(BenchmarkPositions.ALPHA_AMAF, nPlayers);
+            AbstractGameState state = BenchmarkPositions.playTo(players, phase, BenchmarkPositions.SEED).getGameState();
+            alphaAMAFPlayer player = (alphaAMAFPlayer) players.get(state.getCurrentPlayer());
+            player.getParameters().rolloutLength = rolloutLength;
+            node = new alphaAMAFTreeNode(player, null, state, new Random(BenchmarkPositions.SEED));
+        }
+    }
+
+    /**
+     * A root with childCount children that have all been visited, so ucb() scores every one.
+     * The children are keyed by card indices beyond the hand, which is all ucb() needs of them.
+     */
+    @State(Scope.Thread)
+    public static class Selection {
+        @Param({"4", "16", "64", "256"})
+        public int childCount;
+
+        alphaAMAFTreeNode root;
+
+        @Setup
+        public void setup() {
+            List<AbstractPlayer> players = BenchmarkPositions.players(BenchmarkPositions.ALPHA_AMAF, 3);
+            AbstractGameState state = BenchmarkPositions.playTo(players, Phase.EARLY, BenchmarkPositions.SEED).getGameState();
+            alphaAMAFPlayer player = (alphaAMAFPlayer) players.get(state.getCurrentPlayer());
+            Random rnd = new Random(BenchmarkPositions.SEED);
+            root = new alphaAMAFTreeNode(player, null, state, rnd);
+            // Drop the unexpanded actions the root starts with
+            root.children.clear();
+            for (int i = 0; i < childCount; i++) {
+                alphaAMAFTreeNode child = new alphaAMAFTreeNode(player, root, state, rnd);
+                root.children.put(new ChooseCard(player.getPlayerID(), i, false), child);
+                for (int v = 0; v <= i % 8; v++) {
+                    child.backUp(rnd.nextDouble(), Collections.emptyList());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public double rollOut(Rollout rollout) {
+        return rollout.node.rollOut();
+    }
+
+    @Benchmark
+    public AbstractAction ucb(Selection selection) {
+        return selection.root.ucb();
+    }
+}
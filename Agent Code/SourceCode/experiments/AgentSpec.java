@@ -0,0 +1,83 @@
+package evaluation.experiments;
+
+import core.AbstractPlayer;
+import players.PlayerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * An agent taking part in an experiment: a display name and the player JSON it is built from.
+ * Players hold per-game search state and are not thread-safe, so every game asks for a fresh
+ * instance with newPlayer().
+ */
+public class AgentSpec {
+
+    public final String name;
+    public final String file;
+
+    public AgentSpec(String name, String file) {
+        this.name = name;
+        this.file = file;
+    }
+
+    /**
+     * @param file Player JSON file.
+     * @return An agent named after the file, without directory or extension.
+     */
+    public static AgentSpec fromFile(String file) {
+        String name = new File(file).getName();
+        if (name.endsWith(".json"))
+            name = name.substring(0, name.length() - 5);
+        return new AgentSpec(name, file);
+    }
+
+    /**
+     * @param files Comma-separated player JSON files.
+     * @return One agent per file, in the given order.
+     */
+    public static List<AgentSpec> fromList(String files) {
+        List<AgentSpec> agents = new ArrayList<>();
+        for (String file : files.split(",")) {
+            if (!file.trim().isEmpty())
+                agents.add(fromFile(file.trim()));
+        }
+        return agents;
+    }
+
+    /**
+     * Loads every player JSON directly inside a directory, like the playerDirectory of a
+     * tournament config. Sub-directories (such as gameSpecific) are not included.
+     * @param directory Directory of player JSON files.
+     * @return One agent per file, sorted by name so that agent indices are stable between runs.
+     */
+    public static List<AgentSpec> fromDirectory(String directory) {
+        File[] files = new File(directory).listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null)
+            throw new IllegalArgumentException("Not a player directory: " + directory);
+        Arrays.sort(files);
+        List<AgentSpec> agents = new ArrayList<>();
+        for (File file : files) {
+            agents.add(fromFile(file.getPath()));
+        }
+        return agents;
+    }
+
+    /**
+     * @return A new player built from the JSON file.
+     */
+    public AbstractPlayer newPlayer() {
+        AbstractPlayer player = PlayerFactory.createPlayer(file);
+        if (player == null)
+            throw new IllegalArgumentException("Could not create a player from " + file);
+        return player;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
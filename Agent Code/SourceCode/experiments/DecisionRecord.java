@@ -0,0 +1,82 @@
+package evaluation.experiments;
+
+import games.GameType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Everything needed to rebuild the state of one decision and re-run its search: the game and its
+ * seed, the player files of every seat, the index of every action played before the decision
+ * (in the list of available actions of the player who played it), and the deciding player's seed.
+ * The decision's time, search iterations and chosen action index are kept to check the replay, and
+ * the budget the search was given, which under budget scheduling depends on the decisions before it.
+ *
+ * Written as one line of tab-separated name=value fields, so records can be appended to a log.
+ */
+public class DecisionRecord {
+
+    public final GameType game;
+    public final long gameSeed;
+    public final List<String> seats;
+    public final int[] history;
+    public final int playerId;
+    public final long playerSeed;
+    public final long nanos;
+    public final int iterations;
+    // Budget allocated to the search, or 0 if it is not known
+    public final int budget;
+    public final int chosen;
+
+    public DecisionRecord(GameType game, long gameSeed, List<String> seats, int[] history, int playerId,
+                          long playerSeed, long nanos, int iterations, int budget, int chosen) {
+        this.game = game;
+        this.gameSeed = gameSeed;
+        this.seats = seats;
+        this.history = history;
+        this.playerId = playerId;
+        this.playerSeed = playerSeed;
+        this.nanos = nanos;
+        this.iterations = iterations;
+        this.budget = budget;
+        this.chosen = chosen;
+    }
+
+    public String toLine() {
+        StringBuilder moves = new StringBuilder();
+        for (int i = 0; i < history.length; i++) {
+            moves.append(i == 0 ? "" : ",").append(history[i]);
+        }
+        return "game=" + game.name() + "\tgameSeed=" + gameSeed + "\tseats=" + String.join(",", seats)
+                + "\tplayer=" + playerId + "\tplayerSeed=" + playerSeed + "\tnanos=" + nanos
+                + "\titerations=" + iterations + "\tbudget=" + budget + "\tchosen=" + chosen + "\thistory=" + moves;
+    }
+
+    public static DecisionRecord parse(String line) {
+        Map<String, String> fields = new HashMap<>();
+        for (String field : line.trim().split("\t")) {
+            int eq = field.indexOf('=');
+            if (eq < 0)
+                throw new IllegalArgumentException("Not a decision record: " + line);
+            fields.put(field.substring(0, eq), field.substring(eq + 1));
+        }
+        String moves = field(fields, "history");
+        int[] history = moves.isEmpty() ? new int[0] : Arrays.stream(moves.split(",")).mapToInt(Integer::parseInt).toArray();
+        return new DecisionRecord(GameType.valueOf(field(fields, "game")), Long.parseLong(field(fields, "gameSeed")),
+                new ArrayList<>(Arrays.asList(field(fields, "seats").split(","))), history,
+                Integer.parseInt(field(fields, "player")), Long.parseLong(field(fields, "playerSeed")),
+                Long.parseLong(field(fields, "nanos")), Integer.parseInt(field(fields, "iterations")),
+                Integer.parseInt(fields.getOrDefault("budget", "0")), Integer.parseInt(field(fields, "chosen")));
+    }
+
+    private static String field(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null)
+            throw new IllegalArgumentException("Decision record without " + name);
+        return value;
+    }
+}
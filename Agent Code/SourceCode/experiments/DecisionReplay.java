@@ -0,0 +1,152 @@
+package evaluation.experiments;
+
+import core.AbstractForwardModel;
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import players.PlayerConstants;
+import players.PlayerParameters;
+import players.searchCommon.ISearchReporter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * Re-runs one recorded decision (see DecisionRecord), for profiling. The game is dealt again from
+ * its seed and the recorded actions are replayed up to the decision, making the same observation
+ * copies as MatchRunner, so the deciding player sees exactly the state it saw in the tournament.
+ * The player gets its recorded seed back, and since every search is seeded from that seed and the
+ * point of the game (see DecisionSeeds), the search is repeated draw for draw.
+ *
+ * A search under BUDGET_TIME stops after however many iterations fit in the time, which depends
+ * on the machine; by default it is replayed with BUDGET_ITERATIONS and the recorded iteration
+ * count instead, which builds the same tree.
+ *
+ * A player with budgetScheduling shares a game budget out over its decisions, and a fresh player
+ * would allocate differently. Such a decision is replayed with scheduling off and the budget the
+ * record says it was given. Records written before the budget was logged replay with the flat budget.
+ *
+ * Arguments (name=value):
+ *   file        decision log (default outputdir/SlowDecisions.txt)
+ *   line        record to replay, from 1 (default: the slowest in the file)
+ *   warmup      searches run before the measured ones (default 0)
+ *   loops       measured searches (default 1)
+ *   pause       wait for Enter before the measured searches, to attach a profiler (default false)
+ *   iterations  replay time budgets as the recorded iteration count (default true)
+ */
+public class DecisionReplay {
+
+    /**
+     * The rebuilt decision: the deciding player, ready to search, and what it decides on.
+     */
+    public static class Decision {
+        public final AbstractPlayer player;
+        public final AbstractGameState observation;
+        public final List<AbstractAction> actions;
+
+        Decision(AbstractPlayer player, AbstractGameState observation, List<AbstractAction> actions) {
+            this.player = player;
+            this.observation = observation;
+            this.actions = actions;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String file = getArg(args, "file", "outputdir/" + MatchupTournament.SLOW_DECISIONS_FILE);
+        int line = getArg(args, "line", 0);
+        int warmup = getArg(args, "warmup", 0);
+        int loops = getArg(args, "loops", 1);
+        boolean pause = getArg(args, "pause", false);
+        boolean fixIterations = getArg(args, "iterations", true);
+
+        DecisionRecord record = select(Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8), line);
+        System.out.printf("Replaying player %d (%s) of game seed %d after %d moves; recorded %.1fms, %d iterations%n",
+                record.playerId, record.seats.get(record.playerId), record.gameSeed, record.history.length,
+                record.nanos / 1e6, record.iterations);
+        Decision decision = rebuild(record);
+        if (fixIterations && decision.player.getParameters().budgetType == PlayerConstants.BUDGET_TIME && record.iterations > 0) {
+            decision.player.getParameters().budgetType = PlayerConstants.BUDGET_ITERATIONS;
+            decision.player.getParameters().budget = record.iterations;
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            decision.player.getAction(decision.observation, decision.actions);
+        }
+        if (pause) {
+            System.out.println("Attach the profiler, then press Enter");
+            System.in.read();
+        }
+        for (int i = 0; i < loops; i++) {
+            long start = System.nanoTime();
+            AbstractAction chosen = decision.player.getAction(decision.observation, decision.actions);
+            long nanos = System.nanoTime() - start;
+            int index = decision.actions.indexOf(chosen);
+            String stats = decision.player instanceof ISearchReporter && ((ISearchReporter) decision.player).getSearchStats() != null
+                    ? ((ISearchReporter) decision.player).getSearchStats().toString() : "";
+            System.out.printf("Search %d: %.1fms, chose action %d%s; %s%n", i + 1, nanos / 1e6, index,
+                    index == record.chosen ? "" : " (recorded " + record.chosen + ")", stats);
+        }
+    }
+
+    /**
+     * @param line Record number from 1, or 0 for the slowest.
+     */
+    static DecisionRecord select(List<String> lines, int line) {
+        List<DecisionRecord> records = new ArrayList<>();
+        for (String text : lines) {
+            if (!text.trim().isEmpty())
+                records.add(DecisionRecord.parse(text));
+        }
+        if (records.isEmpty())
+            throw new IllegalArgumentException("No decision records");
+        if (line > 0)
+            return records.get(line - 1);
+        DecisionRecord slowest = records.get(0);
+        for (DecisionRecord record : records) {
+            if (record.nanos > slowest.nanos)
+                slowest = record;
+        }
+        return slowest;
+    }
+
+    /**
+     * Deals the recorded game and plays the recorded actions up to the decision.
+     */
+    public static Decision rebuild(DecisionRecord record) {
+        List<AbstractPlayer> players = new ArrayList<>();
+        for (String seat : record.seats) {
+            players.add(AgentSpec.fromFile(seat).newPlayer());
+        }
+        AbstractPlayer player = players.get(record.playerId);
+        player.getParameters().setRandomSeed(record.playerSeed);
+        PlayerParameters params = player.getParameters();
+        if (record.budget > 0 && params.getParameterNames().contains("budgetScheduling")) {
+            // Set before the budget, since changing a parameter value re-reads all of them
+            params.setParameterValue("budgetScheduling", false);
+            params.budget = record.budget;
+        }
+
+        Game game = record.game.createGameInstance(players.size(), record.gameSeed);
+        game.reset(players, record.gameSeed);
+        AbstractGameState gs = game.getGameState();
+        AbstractForwardModel fm = game.getForwardModel();
+        for (int move : record.history) {
+            int current = gs.getCurrentPlayer();
+            AbstractGameState observation = gs.copy(current);
+            List<AbstractAction> actions = fm.computeAvailableActions(observation, players.get(current).getParameters().actionSpace);
+            fm.next(gs, actions.get(move));
+        }
+        if (gs.getCurrentPlayer() != record.playerId)
+            throw new IllegalStateException("Replay reached player " + gs.getCurrentPlayer() + " instead of " + record.playerId);
+        AbstractGameState observation = gs.copy(record.playerId);
+        return new Decision(player, observation, fm.computeAvailableActions(observation, player.getParameters().actionSpace));
+    }
+}
@@ -0,0 +1,55 @@
+package evaluation.experiments;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.actions.AbstractAction;
+import games.GameType;
+import players.searchCommon.ISearchReporter;
+import players.searchCommon.SearchStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+
+/**
+ * Follows one game's actions, and hands a DecisionRecord of every decision that takes at least
+ * thresholdNanos to a sink, so that slow decisions can be replayed later with DecisionReplay.
+ * Costs one indexOf per decision when nothing is slow.
+ */
+public class DecisionTrace implements MatchRunner.DecisionObserver {
+
+    final GameType game;
+    final long gameSeed;
+    final List<String> seats = new ArrayList<>();
+    final long thresholdNanos;
+    final Consumer<DecisionRecord> sink;
+    int[] history = new int[64];
+    int moves;
+
+    public DecisionTrace(GameType game, long gameSeed, List<AgentSpec> seats, long thresholdNanos, Consumer<DecisionRecord> sink) {
+        this.game = game;
+        this.gameSeed = gameSeed;
+        for (AgentSpec seat : seats) {
+            this.seats.add(seat.file);
+        }
+        this.thresholdNanos = thresholdNanos;
+        this.sink = sink;
+    }
+
+    @Override
+    public void onDecision(int decision, AbstractGameState state, int playerId, AbstractPlayer player,
+                           List<AbstractAction> actions, AbstractAction chosen, long nanos) {
+        int index = actions.indexOf(chosen);
+        if (nanos >= thresholdNanos) {
+            SearchStats stats = player instanceof ISearchReporter ? ((ISearchReporter) player).getSearchStats() : null;
+            sink.accept(new DecisionRecord(game, gameSeed, seats, Arrays.copyOf(history, moves), playerId,
+                    player.getParameters().getRandomSeed(), nanos, stats == null ? 0 : stats.iterations,
+                    stats == null ? 0 : stats.budget, index));
+        }
+        if (moves == history.length)
+            history = Arrays.copyOf(history, 2 * moves);
+        history[moves++] = index;
+    }
+}
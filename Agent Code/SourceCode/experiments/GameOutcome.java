@@ -0,0 +1,36 @@
+package evaluation.experiments;
+
+import java.util.Arrays;
+
+
+/**
+ * The result of one finished game, with the agents in seat order.
+ */
+public class GameOutcome {
+
+    public final long seed;
+    public final String[] agents;
+    public final double[] scores;
+    // 1 for the winner; tied players share a position
+    public final int[] ordinals;
+    public final int nDecisions;
+    public final long durationNanos;
+
+    public GameOutcome(long seed, String[] agents, double[] scores, int[] ordinals, int nDecisions, long durationNanos) {
+        this.seed = seed;
+        this.agents = agents;
+        this.scores = scores;
+        this.ordinals = ordinals;
+        this.nDecisions = nDecisions;
+        this.durationNanos = durationNanos;
+    }
+
+    public int getNPlayers() {
+        return agents.length;
+    }
+
+    @Override
+    public String toString() {
+        return "seed " + seed + " " + Arrays.toString(agents) + " scores " + Arrays.toString(scores) + " positions " + Arrays.toString(ordinals);
+    }
+}
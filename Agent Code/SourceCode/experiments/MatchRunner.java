@@ -0,0 +1,115 @@
+package evaluation.experiments;
+
+import core.AbstractForwardModel;
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import games.GameType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Plays single seeded games between agents. The game loop is the same as Game.run(): each
+ * player acts on its own observation of the state, with the actions computed from that
+ * observation. Running the loop here lets experiments look at every decision. Each game is
+ * also a TournamentGameEvent for Java Flight Recorder.
+ * Safe to call from many threads at once, since each call builds its own game and players.
+ */
+public class MatchRunner {
+
+    /**
+     * Called once per decision, after the player has chosen and before the action is applied.
+     */
+    public interface DecisionObserver {
+        /**
+         * @param decision Index of the decision within the game, from 0.
+         * @param state The true game state, which must not be modified.
+         * @param playerId The acting player.
+         * @param player The acting player's agent.
+         * @param actions The actions the agent chose from.
+         * @param chosen The chosen action.
+         * @param nanos Time the agent took to decide.
+         */
+        void onDecision(int decision, AbstractGameState state, int playerId, AbstractPlayer player,
+                        List<AbstractAction> actions, AbstractAction chosen, long nanos);
+
+        /**
+         * Called once when the game is over.
+         * @param outcome The result.
+         * @param finalState The final game state.
+         */
+        default void onGameOver(GameOutcome outcome, AbstractGameState finalState) {
+        }
+    }
+
+    /**
+     * Plays one game.
+     * @param gameType The game to play.
+     * @param seats The agent in each seat; the number of seats is the number of players.
+     * @param seed Game seed.
+     * @param observer Decision callback, or null.
+     * @return The result.
+     */
+    public static GameOutcome play(GameType gameType, List<AgentSpec> seats, long seed, DecisionObserver observer) {
+        List<AbstractPlayer> players = new ArrayList<>();
+        for (AgentSpec agent : seats) {
+            players.add(agent.newPlayer());
+        }
+        return play(gameType, seats, players, seed, observer);
+    }
+
+    /**
+     * Plays one game with players that have already been built.
+     * @param gameType The game to play.
+     * @param seats The agent in each seat, used for naming only.
+     * @param players The player in each seat.
+     * @param seed Game seed.
+     * @param observer Decision callback, or null.
+     * @return The result.
+     */
+    public static GameOutcome play(GameType gameType, List<AgentSpec> seats, List<AbstractPlayer> players, long seed, DecisionObserver observer) {
+        TournamentGameEvent event = new TournamentGameEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Game game = gameType.createGameInstance(players.size(), seed);
+        game.reset(players, seed);
+        AbstractGameState gs = game.getGameState();
+        AbstractForwardModel fm = game.getForwardModel();
+
+        int decision = 0;
+        while (gs.isNotTerminal()) {
+            int current = gs.getCurrentPlayer();
+            AbstractPlayer player = players.get(current);
+            AbstractGameState observation = gs.copy(current);
+            List<AbstractAction> actions = fm.computeAvailableActions(observation, player.getParameters().actionSpace);
+            long decisionStart = System.nanoTime();
+            AbstractAction chosen = player.getAction(observation, actions);
+            long nanos = System.nanoTime() - decisionStart;
+            if (observer != null)
+                observer.onDecision(decision, gs, current, player, actions, chosen, nanos);
+            fm.next(gs, chosen);
+            decision++;
+        }
+        for (AbstractPlayer player : players) {
+            player.finalizePlayer(gs);
+        }
+
+        int nPlayers = players.size();
+        String[] names = new String[nPlayers];
+        double[] scores = new double[nPlayers];
+        int[] ordinals = new int[nPlayers];
+        for (int p = 0; p < nPlayers; p++) {
+            names[p] = seats.get(p).name;
+            scores[p] = gs.getGameScore(p);
+            ordinals[p] = gs.getOrdinalPosition(p);
+        }
+        GameOutcome outcome = new GameOutcome(seed, names, scores, ordinals, decision, System.nanoTime() - start);
+        event.report(gameType.name(), outcome);
+        if (observer != null)
+            observer.onGameOver(outcome, gs);
+        return outcome;
+    }
+}
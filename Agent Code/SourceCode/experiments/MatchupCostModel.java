@@ -0,0 +1,74 @@
+package evaluation.experiments;
+
+import java.util.Arrays;
+
+
+/**
+ * Estimates how long a game of each pairing takes, from the games played so far. Each pairing keeps
+ * an exponentially weighted average of its game durations. Until a pairing has finished a game, its
+ * estimate is built from the agents' own costs: the average thinking time each agent spent per
+ * seat in any game, plus the average time the game itself took outside the agents.
+ * A pairing nothing is known about yet is estimated as infinitely expensive, so it is tried early.
+ */
+public class MatchupCostModel {
+
+    // Weight of the newest observation
+    static final double EWMA_WEIGHT = 0.2;
+
+    final int nPlayers;
+    final double[] pairingNanos;
+    final double[] agentSeatNanos;
+    double overheadNanos = Double.NaN;
+
+    public MatchupCostModel(int nAgents, int nPairings, int nPlayers) {
+        this.nPlayers = nPlayers;
+        this.pairingNanos = new double[nPairings];
+        this.agentSeatNanos = new double[nAgents];
+        Arrays.fill(pairingNanos, Double.NaN);
+        Arrays.fill(agentSeatNanos, Double.NaN);
+    }
+
+    static double ewma(double current, double observed) {
+        return Double.isNaN(current) ? observed : current + EWMA_WEIGHT * (observed - current);
+    }
+
+    /**
+     * Adds a finished game.
+     * @param pairing The pairing.
+     * @param game The game index, which fixes the seats.
+     * @param durationNanos Duration of the whole game.
+     * @param seatNanos Thinking time of each seat, or null if not measured (games read from a journal).
+     */
+    public synchronized void observe(Pairing pairing, int game, long durationNanos, long[] seatNanos) {
+        pairingNanos[pairing.index] = ewma(pairingNanos[pairing.index], durationNanos);
+        if (seatNanos == null)
+            return;
+        long thinking = 0;
+        for (int p = 0; p < seatNanos.length; p++) {
+            int agent = Pairing.firstInSeat(game, p) ? pairing.firstIndex : pairing.secondIndex;
+            agentSeatNanos[agent] = ewma(agentSeatNanos[agent], seatNanos[p]);
+            thinking += seatNanos[p];
+        }
+        overheadNanos = ewma(overheadNanos, Math.max(0, durationNanos - thinking));
+    }
+
+    /**
+     * @return Estimated nanoseconds per game of the pairing; infinite if nothing is known.
+     */
+    public synchronized double estimate(Pairing pairing) {
+        double observed = pairingNanos[pairing.index];
+        if (!Double.isNaN(observed))
+            return observed;
+        double first = agentSeatNanos[pairing.firstIndex], second = agentSeatNanos[pairing.secondIndex];
+        if (Double.isNaN(first) || Double.isNaN(second))
+            return Double.POSITIVE_INFINITY;
+        // Over two games each agent holds every seat once
+        double perGame = 0;
+        for (int g = 0; g < 2; g++) {
+            for (int p = 0; p < nPlayers; p++) {
+                perGame += Pairing.firstInSeat(g, p) ? first : second;
+            }
+        }
+        return perGame / 2 + (Double.isNaN(overheadNanos) ? 0 : overheadNanos);
+    }
+}
@@ -0,0 +1,353 @@
+package evaluation.experiments;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Plays every pair of agents in the player directory against each other on a pool of worker
+ * threads. With adaptive=true each pairing is a sequential test (see SequentialTest) and stops as
+ * soon as one agent is significantly better, instead of always playing the full number of
+ * matchups. Time freed by decided pairings goes to the ones that are still open.
+ *
+ * Agents differ a lot in cost per game, so by default (schedule=cost) workers take the next game
+ * from the open pairing with the most estimated work left: its estimated game duration (see
+ * MatchupCostModel) times its games left. Expensive pairings start first and cheap games fill the
+ * gaps at the end, instead of a few slow games running on alone while the other cores idle.
+ * schedule=balanced instead takes the pairing with the fewest games handed out.
+ *
+ * Game g of pairing i uses the seed (seed + i * matchups + g), so a result does not depend on the
+ * thread that played it, or on which other pairings stopped early.
+ *
+ * Every finished game is appended to destDir/MatchupJournal.txt (see TournamentJournal). A run
+ * that is restarted with the same config and seed replays the journal, so the aggregates are as
+ * they were, and only plays the games that are missing. resume=false starts a new journal.
+ *
+ * Statistics are aggregated online as games finish (see OnlineTournamentStats), and every
+ * snapshotSeconds the current report is written to destDir/MatchupSnapshot.txt, so convergence
+ * can be watched during the run.
+ *
+ * With slowMs=N, every decision that takes N ms or more is appended to destDir/SlowDecisions.txt
+ * as a DecisionRecord, which DecisionReplay can re-run under a profiler.
+ *
+ * Usage: config=json/experiments/rungames3.json [adaptive=true] [delta=0.05] [alpha=0.05]
+ * [beta=0.05] [minGames=30] [threads=N] [resume=false] [syncEvery=64] [syncMs=1000]
+ * [snapshotSeconds=30] [schedule=cost|balanced] [slowMs=0].
+ * Results are written to destDir/MatchupResults.txt.
+ */
+public class MatchupTournament {
+
+    public static final String RESULTS_FILE = "MatchupResults.txt";
+    public static final String SNAPSHOT_FILE = "MatchupSnapshot.txt";
+    public static final String SLOW_DECISIONS_FILE = "SlowDecisions.txt";
+
+    final TournamentConfig config;
+    final List<AgentSpec> agents;
+    final List<Pairing> pairings = new ArrayList<>();
+    final SequentialTest test;
+    final OnlineTournamentStats stats;
+    final MatchupCostModel costs;
+    TournamentJournal journal;
+    volatile Throwable failure;
+
+    public MatchupTournament(TournamentConfig config, List<AgentSpec> agents) {
+        if (agents.size() < 2)
+            throw new IllegalArgumentException("A tournament needs at least 2 agents, found " + agents.size());
+        this.config = config;
+        this.agents = agents;
+        this.test = config.adaptive ? new SequentialTest(config.delta, config.alpha, config.beta, config.minGames) : null;
+        this.stats = new OnlineTournamentStats(agents, config.nPlayers);
+        for (int a = 0; a < agents.size(); a++) {
+            for (int b = a + 1; b < agents.size(); b++) {
+                pairings.add(new Pairing(pairings.size(), a, agents.get(a), b, agents.get(b)));
+            }
+        }
+        this.costs = new MatchupCostModel(agents.size(), pairings.size(), config.nPlayers);
+        for (Pairing pairing : pairings) {
+            for (int g = 0; g < config.matchups; g++) {
+                if (inShard(pairing, g))
+                    pairing.quota++;
+            }
+        }
+        if (!config.schedule.equals("cost") && !config.schedule.equals("balanced"))
+            throw new IllegalArgumentException("Unknown schedule " + config.schedule + ", expected cost or balanced");
+    }
+
+    public static void main(String[] args) throws Exception {
+        TournamentConfig config = TournamentConfig.fromArgs(args);
+        MatchupTournament tournament = new MatchupTournament(config, AgentSpec.fromDirectory(config.playerDirectory));
+        long start = System.currentTimeMillis();
+        int recovered = tournament.openJournal();
+        if (recovered > 0)
+            System.out.println("Resuming with " + recovered + " games from the journal");
+        ScheduledExecutorService snapshots = tournament.startSnapshots(start);
+        try {
+            tournament.run();
+        } finally {
+            if (snapshots != null)
+                snapshots.shutdownNow();
+            tournament.journal.close();
+        }
+        tournament.writeResults(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Writes the report to destDir/MatchupSnapshot.txt every snapshotSeconds.
+     * @param start Start of the run, in milliseconds.
+     * @return The snapshot thread, or null if snapshots are off.
+     */
+    ScheduledExecutorService startSnapshots(long start) {
+        if (config.snapshotSeconds <= 0)
+            return null;
+        ScheduledExecutorService snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "TournamentSnapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Path file = new File(config.destDir, SNAPSHOT_FILE).toPath();
+        snapshots.scheduleAtFixedRate(() -> {
+            try {
+                writeAtomically(file, report(System.currentTimeMillis() - start));
+            } catch (IOException e) {
+                System.err.println("Could not write snapshot: " + e.getMessage());
+            }
+        }, config.snapshotSeconds, config.snapshotSeconds, TimeUnit.SECONDS);
+        return snapshots;
+    }
+
+    /**
+     * Replaces the file in one step, so that readers never see half a report.
+     */
+    static void writeAtomically(Path file, String content) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens destDir/MatchupJournal.txt and replays the games it holds.
+     * @return The number of games recovered.
+     */
+    public int openJournal() throws IOException {
+        File dir = new File(config.destDir);
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Could not create " + dir);
+        File file = new File(dir, TournamentJournal.JOURNAL_FILE);
+        if (!config.resume)
+            Files.deleteIfExists(file.toPath());
+        int[] recovered = new int[1];
+        journal = TournamentJournal.open(file.toPath(), TournamentJournal.header(config, agents),
+                (pairing, game) -> pairings.get(pairing).seatNames(game, config.nPlayers),
+                (pairing, game, outcome) -> {
+                    if (recover(pairings.get(pairing), game, outcome))
+                        recovered[0]++;
+                },
+                config.syncEvery, config.syncMs);
+        return recovered[0];
+    }
+
+    synchronized boolean recover(Pairing pairing, int game, GameOutcome outcome) {
+        if (!pairing.recover(game))
+            return false;
+        record(pairing, game, outcome);
+        costs.observe(pairing, game, outcome.durationNanos, null);
+        return true;
+    }
+
+    /**
+     * A game handed to a worker.
+     */
+    static class Task {
+        final Pairing pairing;
+        final int game;
+
+        Task(Pairing pairing, int game) {
+            this.pairing = pairing;
+            this.game = game;
+        }
+    }
+
+    /**
+     * @return The next game to play, or null when every pairing is decided or has played all its matchups.
+     */
+    synchronized Task nextTask() {
+        boolean byCost = config.schedule.equals("cost");
+        Pairing next = null;
+        double nextWork = 0;
+        for (Pairing pairing : pairings) {
+            if (pairing.issued >= pairing.quota || pairing.isDecided())
+                continue;
+            double work = byCost ? costs.estimate(pairing) * (pairing.quota - pairing.issued) : -pairing.issued;
+            if (next == null || work > nextWork || work == nextWork && pairing.issued < next.issued) {
+                next = pairing;
+                nextWork = work;
+            }
+        }
+        if (next == null)
+            return null;
+        Pairing pairing = next;
+        return new Task(next, next.nextGame(g -> inShard(pairing, g)));
+    }
+
+    /**
+     * @return True if game g of the pairing belongs to this process's shard.
+     */
+    boolean inShard(Pairing pairing, int g) {
+        return ((long) pairing.index * config.matchups + g) % config.nShards == config.shard;
+    }
+
+    long gameSeed(Pairing pairing, int game) {
+        return config.seed + (long) pairing.index * config.matchups + game;
+    }
+
+    /**
+     * Adds the games of a journal written by another process, such as a shard, and appends them to
+     * this tournament's journal. Games already present are skipped.
+     * @param file The other journal.
+     * @param header Its expected header.
+     * @return The number of games added.
+     */
+    public int merge(Path file, String header) throws IOException {
+        int[] added = new int[1];
+        IOException[] failure = new IOException[1];
+        TournamentJournal.read(file, header,
+                (pairing, game) -> pairings.get(pairing).seatNames(game, config.nPlayers),
+                (pairing, game, outcome) -> {
+                    if (failure[0] != null || !recover(pairings.get(pairing), game, outcome))
+                        return;
+                    added[0]++;
+                    try {
+                        journal.append(pairing, game, outcome);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+        if (failure[0] != null)
+            throw failure[0];
+        return added[0];
+    }
+
+    /**
+     * Plays until nextTask() runs dry.
+     */
+    public void run() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(config.threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < config.threads; t++) {
+            workers.add(pool.submit(this::work));
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    void work() {
+        Task task;
+        while (failure == null && (task = nextTask()) != null) {
+            try {
+                play(task);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            }
+        }
+    }
+
+    void play(Task task) {
+        Pairing pairing = task.pairing;
+        long[] seatNanos = new long[config.nPlayers];
+        List<AgentSpec> seats = pairing.seats(task.game, config.nPlayers);
+        long seed = gameSeed(pairing, task.game);
+        DecisionTrace trace = config.slowMs > 0 ? new DecisionTrace(config.game, seed, seats, config.slowMs * 1_000_000L, this::logSlowDecision) : null;
+        GameOutcome outcome = MatchRunner.play(config.game, seats, seed,
+                (decision, state, playerId, player, actions, chosen, nanos) -> {
+                    seatNanos[playerId] += nanos;
+                    if (trace != null)
+                        trace.onDecision(decision, state, playerId, player, actions, chosen, nanos);
+                });
+        record(pairing, task.game, outcome);
+        costs.observe(pairing, task.game, outcome.durationNanos, seatNanos);
+        if (journal != null) {
+            try {
+                journal.append(pairing.index, task.game, outcome);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Appends a slow decision to destDir/SlowDecisions.txt. Slow decisions are rare, so the file is
+     * simply opened for each one.
+     */
+    synchronized void logSlowDecision(DecisionRecord record) {
+        Path file = new File(config.destDir, SLOW_DECISIONS_FILE).toPath();
+        try {
+            Files.write(file, (record.toLine() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void record(Pairing pairing, int game, GameOutcome outcome) {
+        double x = Pairing.firstScore(outcome, game);
+        pairing.record(x, Pairing.scoreDifference(outcome, game), test);
+        stats.record(pairing, game, outcome, x);
+    }
+
+    /**
+     * @param elapsedMs Wall-clock time so far.
+     * @return The current results: settings, agent table and pairings.
+     */
+    public String report(long elapsedMs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s, %d players, %s, seed %d%s%n", config.game, config.nPlayers,
+                config.adaptive ? String.format("adaptive (delta %.3f, alpha %.3f, beta %.3f, at least %d games, at most %d)",
+                        config.delta, config.alpha, config.beta, config.minGames, config.matchups)
+                        : config.matchups + " games per pairing", config.seed,
+                config.nShards > 1 ? ", shard " + config.shard + "/" + config.nShards : ""));
+        sb.append(String.format("%n")).append(stats.agentTable()).append(String.format("%n"));
+        sb.append(String.format("Score is 1 for a win, 0.5 for a draw and 0 for a loss of the first agent; intervals are 95%%.%n"));
+        long total = 0, cap = 0;
+        for (Pairing pairing : pairings) {
+            sb.append(pairing.summary()).append(String.format("%n"));
+            total += pairing.getNGames();
+            cap += pairing.quota;
+        }
+        sb.append(String.format("%n%d of at most %d games played in %.1fs%n", total, cap, elapsedMs / 1000.0));
+        return sb.toString();
+    }
+
+    /**
+     * Writes the results file and prints it.
+     * @param elapsedMs Wall-clock time of the run.
+     */
+    public void writeResults(long elapsedMs) throws IOException {
+        File dir = new File(config.destDir);
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Could not create " + dir);
+        String report = report(elapsedMs);
+        writeAtomically(new File(dir, RESULTS_FILE).toPath(), report);
+        System.out.print(report);
+        System.out.println("Results in " + new File(dir, RESULTS_FILE));
+    }
+}
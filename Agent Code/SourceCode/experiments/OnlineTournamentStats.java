@@ -0,0 +1,136 @@
+package evaluation.experiments;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Per-agent statistics of a running tournament: game score mean and deviation, finishing positions,
+ * head-to-head wins, draws and losses and an Elo rating. Everything is kept in adders and atomics,
+ * so game workers update it without locks and memory stays the same however many games are played.
+ * Per-pairing statistics live in Pairing.
+ *
+ * Elo ratings start at 1500 and move by up to ELO_K points per head-to-head game. Since workers
+ * finish games in any order, the ratings of a parallel run are not exactly reproducible; the
+ * other figures are.
+ */
+public class OnlineTournamentStats {
+
+    public static final double ELO_START = 1500;
+    public static final double ELO_K = 16;
+
+    /**
+     * Statistics of one agent over all its seats.
+     */
+    public static class AgentStats {
+        public final AgentSpec agent;
+        // Game score of each seat the agent played
+        public final RunningStat score = new RunningStat();
+        // Head-to-head results, as in Pairing
+        public final LongAdder wins = new LongAdder(), draws = new LongAdder(), losses = new LongAdder();
+        // Seats finishing in position i + 1
+        final LongAdder[] positions;
+        final AtomicLong elo = new AtomicLong(Double.doubleToLongBits(ELO_START));
+
+        AgentStats(AgentSpec agent, int nPlayers) {
+            this.agent = agent;
+            this.positions = new LongAdder[nPlayers];
+            for (int i = 0; i < nPlayers; i++) {
+                positions[i] = new LongAdder();
+            }
+        }
+
+        public double getElo() {
+            return Double.longBitsToDouble(elo.get());
+        }
+
+        void addElo(double delta) {
+            long current, updated;
+            do {
+                current = elo.get();
+                updated = Double.doubleToLongBits(Double.longBitsToDouble(current) + delta);
+            } while (!elo.compareAndSet(current, updated));
+        }
+
+        public long getPositionCount(int position) {
+            return positions[position - 1].sum();
+        }
+
+        public double getMeanPosition() {
+            long seats = 0, total = 0;
+            for (int i = 0; i < positions.length; i++) {
+                long count = positions[i].sum();
+                seats += count;
+                total += count * (i + 1);
+            }
+            return seats == 0 ? 0 : (double) total / seats;
+        }
+    }
+
+    final int nPlayers;
+    final AgentStats[] agents;
+
+    public OnlineTournamentStats(List<AgentSpec> agents, int nPlayers) {
+        this.nPlayers = nPlayers;
+        this.agents = new AgentStats[agents.size()];
+        for (int a = 0; a < agents.size(); a++) {
+            this.agents[a] = new AgentStats(agents.get(a), nPlayers);
+        }
+    }
+
+    /**
+     * Adds a finished game of a pairing.
+     * @param x The first agent's head-to-head score, see Pairing.firstScore().
+     */
+    public void record(Pairing pairing, int game, GameOutcome outcome, double x) {
+        for (int p = 0; p < outcome.getNPlayers(); p++) {
+            AgentStats stats = agents[Pairing.firstInSeat(game, p) ? pairing.firstIndex : pairing.secondIndex];
+            stats.score.add(outcome.scores[p]);
+            int position = Math.max(1, Math.min(nPlayers, outcome.ordinals[p]));
+            stats.positions[position - 1].increment();
+        }
+        AgentStats first = agents[pairing.firstIndex], second = agents[pairing.secondIndex];
+        if (x == 1) {
+            first.wins.increment();
+            second.losses.increment();
+        } else if (x == 0) {
+            first.losses.increment();
+            second.wins.increment();
+        } else {
+            first.draws.increment();
+            second.draws.increment();
+        }
+        double expected = 1 / (1 + Math.pow(10, (second.getElo() - first.getElo()) / 400));
+        double delta = ELO_K * (x - expected);
+        first.addElo(delta);
+        second.addElo(-delta);
+    }
+
+    public AgentStats getAgent(int index) {
+        return agents[index];
+    }
+
+    /**
+     * @return The agents' table of a results or snapshot file, best Elo first.
+     */
+    public String agentTable() {
+        List<AgentStats> sorted = new ArrayList<>(Arrays.asList(agents));
+        sorted.sort(Comparator.comparingDouble(AgentStats::getElo).reversed());
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-24s %7s %8s %8s %7s %8s %-16s %s%n", "Agent", "Elo", "Seats", "Score", "SD", "Position", "W/D/L", "Positions"));
+        for (AgentStats stats : sorted) {
+            StringBuilder positions = new StringBuilder();
+            for (int position = 1; position <= nPlayers; position++) {
+                positions.append(position == 1 ? "" : "/").append(stats.getPositionCount(position));
+            }
+            sb.append(String.format("%-24s %7.1f %8d %8.2f %7.2f %8.3f %-16s %s%n", stats.agent.name, stats.getElo(),
+                    stats.score.getN(), stats.score.getMean(), stats.score.getStdDev(), stats.getMeanPosition(),
+                    stats.wins.sum() + "/" + stats.draws.sum() + "/" + stats.losses.sum(), positions));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,224 @@
+package evaluation.experiments;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+
+/**
+ * Two agents playing a series of games against each other, and the running results of the series.
+ * In game g, seat p is taken by the first agent when (g + p) is even, so with three players the
+ * agents alternate between holding two seats and one. Each game counts as a win for the agent whose
+ * best-placed seat finished higher. Results are recorded without locks, except the game score,
+ * which is added and read for the sequential test under one short lock so the test always sees a
+ * count, sum and sum of squares that belong together.
+ */
+public class Pairing {
+
+    public final int index;
+    public final AgentSpec first, second;
+    // Indices of the agents in the tournament
+    public final int firstIndex, secondIndex;
+
+    // Games handed out to workers or recovered from the journal
+    int issued;
+    // Games this process plays: all matchups, or the pairing's share of them in a shard
+    int quota;
+    // Games recovered from the journal, which are not handed out again
+    final BitSet recovered = new BitSet();
+    // Lowest game index that may still be unplayed
+    int cursor;
+
+    final LongAdder wins = new LongAdder(), draws = new LongAdder(), losses = new LongAdder();
+    // Game score x of the first agent (1 win, 0.5 draw, 0 loss)
+    final RunningStat score = new RunningStat();
+    // Held while adding to score and while reading it for the sequential test
+    private final Object scoreLock = new Object();
+    // Mean game score of the first agent's seats minus that of the second agent's seats
+    final RunningStat difference = new RunningStat();
+
+    /**
+     * The outcome of the sequential test and the number of games it took, set once.
+     */
+    static class Verdict {
+        final SequentialTest.Decision decision;
+        final long after;
+
+        Verdict(SequentialTest.Decision decision, long after) {
+            this.decision = decision;
+            this.after = after;
+        }
+    }
+
+    static final Verdict UNDECIDED = new Verdict(SequentialTest.Decision.UNDECIDED, 0);
+    final AtomicReference<Verdict> verdict = new AtomicReference<>(UNDECIDED);
+
+    public Pairing(int index, int firstIndex, AgentSpec first, int secondIndex, AgentSpec second) {
+        this.index = index;
+        this.firstIndex = firstIndex;
+        this.first = first;
+        this.secondIndex = secondIndex;
+        this.second = second;
+    }
+
+    public String[] seatNames(int g, int nPlayers) {
+        String[] names = new String[nPlayers];
+        for (int p = 0; p < nPlayers; p++) {
+            names[p] = firstInSeat(g, p) ? first.name : second.name;
+        }
+        return names;
+    }
+
+    /**
+     * @return True if the first agent sits in seat p of game g.
+     */
+    public static boolean firstInSeat(int g, int p) {
+        return (g + p) % 2 == 0;
+    }
+
+    /**
+     * Hands out the next game that is not already in the journal. Callers hold the tournament lock.
+     * @param mine Selects the games this process plays.
+     * @return The game index.
+     */
+    int nextGame(IntPredicate mine) {
+        int game = recovered.nextClearBit(cursor);
+        while (!mine.test(game)) {
+            game = recovered.nextClearBit(game + 1);
+        }
+        cursor = game + 1;
+        issued++;
+        return game;
+    }
+
+    /**
+     * Marks a game read back from the journal as played. Callers hold the tournament lock.
+     * @return False if the game was already recovered.
+     */
+    boolean recover(int game) {
+        if (recovered.get(game))
+            return false;
+        recovered.set(game);
+        issued++;
+        return true;
+    }
+
+    public List<AgentSpec> seats(int g, int nPlayers) {
+        List<AgentSpec> seats = new ArrayList<>(nPlayers);
+        for (int p = 0; p < nPlayers; p++) {
+            seats.add(firstInSeat(g, p) ? first : second);
+        }
+        return seats;
+    }
+
+    /**
+     * @return The first agent's game score x: 1 if its best seat placed above the second agent's best seat, 0.5 if level.
+     */
+    public static double firstScore(GameOutcome outcome, int g) {
+        int bestFirst = Integer.MAX_VALUE, bestSecond = Integer.MAX_VALUE;
+        for (int p = 0; p < outcome.getNPlayers(); p++) {
+            if (firstInSeat(g, p))
+                bestFirst = Math.min(bestFirst, outcome.ordinals[p]);
+            else
+                bestSecond = Math.min(bestSecond, outcome.ordinals[p]);
+        }
+        return bestFirst < bestSecond ? 1 : bestFirst == bestSecond ? 0.5 : 0;
+    }
+
+    /**
+     * @return Mean score of the first agent's seats minus the mean score of the second agent's seats.
+     */
+    public static double scoreDifference(GameOutcome outcome, int g) {
+        double first = 0, second = 0;
+        int nFirst = 0, nSecond = 0;
+        for (int p = 0; p < outcome.getNPlayers(); p++) {
+            if (firstInSeat(g, p)) {
+                first += outcome.scores[p];
+                nFirst++;
+            } else {
+                second += outcome.scores[p];
+                nSecond++;
+            }
+        }
+        return first / nFirst - second / nSecond;
+    }
+
+    /**
+     * Adds a finished game and, when a test is given, checks whether the series can stop.
+     * Results of games that were already running when the pairing was decided are still counted.
+     * @param x The first agent's game score.
+     * @param diff The score difference.
+     * @param test Sequential test, or null for a fixed number of games.
+     */
+    void record(double x, double diff, SequentialTest test) {
+        if (x == 1)
+            wins.increment();
+        else if (x == 0)
+            losses.increment();
+        else
+            draws.increment();
+        difference.add(diff);
+        synchronized (scoreLock) {
+            score.add(x);
+            if (test != null && verdict.get() == UNDECIDED) {
+                long n = score.getN();
+                SequentialTest.Decision decision = test.decide(n, score.getSum(), score.getSumSq());
+                if (decision != SequentialTest.Decision.UNDECIDED)
+                    verdict.compareAndSet(UNDECIDED, new Verdict(decision, n));
+            }
+        }
+    }
+
+    public boolean isDecided() {
+        return verdict.get() != UNDECIDED;
+    }
+
+    public SequentialTest.Decision getDecision() {
+        return verdict.get().decision;
+    }
+
+    public long getNGames() {
+        return score.getN();
+    }
+
+    public RunningStat getScore() {
+        return score;
+    }
+
+    public RunningStat getDifference() {
+        return difference;
+    }
+
+    /**
+     * @return One line of the results file.
+     */
+    public String summary() {
+        long nGames;
+        double scoreSum;
+        synchronized (scoreLock) {
+            nGames = score.getN();
+            scoreSum = score.getSum();
+        }
+        double[] scoreCI = SequentialTest.wilson(scoreSum, nGames);
+        double[] diffCI = SequentialTest.meanInterval(nGames, difference.getSum(), difference.getSumSq());
+        Verdict v = verdict.get();
+        String outcome;
+        switch (v.decision) {
+            case FIRST_BETTER:
+                outcome = first.name + " better after " + v.after + " games";
+                break;
+            case SECOND_BETTER:
+                outcome = second.name + " better after " + v.after + " games";
+                break;
+            default:
+                outcome = "undecided";
+        }
+        return String.format("%s vs %s: %d games, W/D/L %d/%d/%d, score %.3f [%.3f, %.3f], score difference %+.2f [%+.2f, %+.2f], %s",
+                first.name, second.name, nGames, wins.sum(), draws.sum(), losses.sum(),
+                nGames == 0 ? 0 : scoreSum / nGames, scoreCI[0], scoreCI[1],
+                difference.getMean(), diffCI[0], diffCI[1], outcome);
+    }
+}
@@ -0,0 +1,56 @@
+package evaluation.experiments;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Count, mean and variance of a stream of values, updated without locks from any number of
+ * threads. Only the count, sum and sum of squares are kept, so memory does not grow with the
+ * stream. Reads taken while other threads are adding may see a value in the sum but not yet in
+ * the count, which is fine for progress reports and sequential tests.
+ */
+public class RunningStat {
+
+    private final LongAdder n = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAdder sumSq = new DoubleAdder();
+
+    public void add(double x) {
+        sum.add(x);
+        sumSq.add(x * x);
+        n.increment();
+    }
+
+    public long getN() {
+        return n.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+
+    public double getSumSq() {
+        return sumSq.sum();
+    }
+
+    public double getMean() {
+        long count = getN();
+        return count == 0 ? 0 : getSum() / count;
+    }
+
+    /**
+     * @return The sample variance, or 0 with fewer than two values.
+     */
+    public double getVariance() {
+        long count = getN();
+        if (count < 2)
+            return 0;
+        double mean = getSum() / count;
+        return Math.max(0, (getSumSq() - count * mean * mean) / (count - 1));
+    }
+
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+}
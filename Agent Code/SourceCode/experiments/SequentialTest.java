@@ -0,0 +1,94 @@
+package evaluation.experiments;
+
+
+/**
+ * Statistics for deciding a pairing early. The test is a generalised SPRT on the mean game score
+ * x (1 win, 0.5 draw, 0 loss) of the first agent, with H0: E[x] = 0.5 - delta against
+ * H1: E[x] = 0.5 + delta. The log-likelihood ratio uses the normal approximation with the sample
+ * variance, so draws are handled without a separate draw model. Accepting H1 means the first
+ * agent is better, accepting H0 that the second is; pairings closer than delta may reach neither
+ * bound and run to the game cap.
+ */
+public class SequentialTest {
+
+    public enum Decision {
+        UNDECIDED, FIRST_BETTER, SECOND_BETTER
+    }
+
+    // Two-sided 95%
+    public static final double Z95 = 1.959963984540054;
+
+    final double p0, p1;
+    final double lowerBound, upperBound;
+    final int minGames;
+
+    /**
+     * @param delta Half-width of the indifference region around 0.5.
+     * @param alpha Probability of wrongly declaring the first agent better.
+     * @param beta Probability of wrongly declaring the second agent better.
+     * @param minGames Games before the test may stop, so that the variance estimate is usable.
+     */
+    public SequentialTest(double delta, double alpha, double beta, int minGames) {
+        this.p0 = 0.5 - delta;
+        this.p1 = 0.5 + delta;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+        this.minGames = minGames;
+    }
+
+    /**
+     * @param n Games played.
+     * @param sum Sum of x.
+     * @param sumSq Sum of x squared.
+     * @return The log-likelihood ratio of H1 against H0.
+     */
+    public double llr(long n, double sum, double sumSq) {
+        if (n == 0)
+            return 0;
+        double mean = sum / n;
+        double variance = Math.max(sumSq / n - mean * mean, 1e-6);
+        return n * (p1 - p0) * (2 * mean - p0 - p1) / (2 * variance);
+    }
+
+    public Decision decide(long n, double sum, double sumSq) {
+        if (n < minGames)
+            return Decision.UNDECIDED;
+        double llr = llr(n, sum, sumSq);
+        if (llr >= upperBound)
+            return Decision.FIRST_BETTER;
+        if (llr <= lowerBound)
+            return Decision.SECOND_BETTER;
+        return Decision.UNDECIDED;
+    }
+
+    /**
+     * Wilson score interval for a proportion.
+     * @param successes Successes, where a draw may count as half.
+     * @param n Trials.
+     * @return {lower, upper}.
+     */
+    public static double[] wilson(double successes, long n) {
+        if (n == 0)
+            return new double[]{0, 1};
+        double p = successes / n;
+        double z2 = Z95 * Z95;
+        double centre = (p + z2 / (2 * n)) / (1 + z2 / n);
+        double halfWidth = Z95 * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n)) / (1 + z2 / n);
+        return new double[]{Math.max(0, centre - halfWidth), Math.min(1, centre + halfWidth)};
+    }
+
+    /**
+     * Normal interval for a mean.
+     * @return {lower, upper}.
+     */
+    public static double[] meanInterval(long n, double sum, double sumSq) {
+        if (n == 0)
+            return new double[]{Double.NaN, Double.NaN};
+        double mean = sum / n;
+        if (n == 1)
+            return new double[]{mean, mean};
+        double variance = Math.max(0, (sumSq - n * mean * mean) / (n - 1));
+        double halfWidth = Z95 * Math.sqrt(variance / n);
+        return new double[]{mean - halfWidth, mean + halfWidth};
+    }
+}
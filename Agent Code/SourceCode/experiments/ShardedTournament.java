@@ -0,0 +1,104 @@
+package evaluation.experiments;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * Runs a MatchupTournament split over several local JVMs, each with its own heap, so that many
+ * agents searching at once do not compete for one garbage collector. Shard s of N plays the games
+ * whose index (pairing * matchups + game) is s modulo N, and writes its journal and results to
+ * destDir/shard-s. When all shards have finished, their journals are merged into destDir: a
+ * combined journal and a MatchupResults.txt covering every game, as if one process had played them.
+ *
+ * A shard that dies can be restarted by running the same command again: every shard resumes from
+ * its own journal and the merge is redone from scratch.
+ *
+ * Usage: the MatchupTournament arguments, plus shards=N (default 2) and optionally shardHeap=SIZE
+ * (the -Xmx of each shard, e.g. 2g). The threads are divided between the shards. Adaptive runs
+ * cannot be sharded.
+ */
+public class ShardedTournament {
+
+    public static void main(String[] args) throws Exception {
+        int nShards = getArg(args, "shards", 2);
+        String heap = getArg(args, "shardHeap", "");
+        TournamentConfig config = TournamentConfig.fromArgs(args);
+        if (config.adaptive)
+            throw new IllegalArgumentException("Adaptive runs cannot be sharded: a pairing's test needs all its games in one process");
+        List<AgentSpec> agents = AgentSpec.fromDirectory(config.playerDirectory);
+        int threadsPerShard = Math.max(1, config.threads / nShards);
+
+        long start = System.currentTimeMillis();
+        List<Process> shards = new ArrayList<>();
+        Thread killShards = new Thread(() -> shards.forEach(Process::destroy));
+        Runtime.getRuntime().addShutdownHook(killShards);
+        for (int s = 0; s < nShards; s++) {
+            File dir = shardDir(config, s);
+            if (!dir.exists() && !dir.mkdirs())
+                throw new IOException("Could not create " + dir);
+            List<String> command = new ArrayList<>();
+            command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+            if (!heap.isEmpty())
+                command.add("-Xmx" + heap);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(MatchupTournament.class.getName());
+            command.addAll(shardArgs(args, s, nShards, dir, threadsPerShard));
+            File log = new File(dir, "shard.log");
+            shards.add(new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start());
+            System.out.println("Started shard " + s + "/" + nShards + ", log in " + log);
+        }
+
+        List<Integer> failed = new ArrayList<>();
+        for (int s = 0; s < nShards; s++) {
+            int exit = shards.get(s).waitFor();
+            System.out.println("Shard " + s + " finished with exit code " + exit);
+            if (exit != 0)
+                failed.add(s);
+        }
+        Runtime.getRuntime().removeShutdownHook(killShards);
+        if (!failed.isEmpty())
+            throw new IllegalStateException("Shards " + failed + " failed; see their shard.log. Run again to resume them.");
+
+        config.resume = false;
+        MatchupTournament merged = new MatchupTournament(config, agents);
+        merged.openJournal();
+        try {
+            for (int s = 0; s < nShards; s++) {
+                TournamentConfig shardConfig = TournamentConfig.fromArgs(shardArgs(args, s, nShards, shardDir(config, s), threadsPerShard).toArray(new String[0]));
+                File journal = new File(shardDir(config, s), TournamentJournal.JOURNAL_FILE);
+                int games = merged.merge(journal.toPath(), TournamentJournal.header(shardConfig, agents));
+                System.out.println("Merged " + games + " games from " + journal);
+            }
+        } finally {
+            merged.journal.close();
+        }
+        merged.writeResults(System.currentTimeMillis() - start);
+    }
+
+    static File shardDir(TournamentConfig config, int shard) {
+        return new File(config.destDir, "shard-" + shard);
+    }
+
+    /**
+     * @return The arguments of one shard: the given ones, with the shard, destDir and threads replaced.
+     */
+    static List<String> shardArgs(String[] args, int shard, int nShards, File dir, int threads) {
+        List<String> shardArgs = new ArrayList<>();
+        for (String arg : args) {
+            String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+            if (!Arrays.asList("shard", "shards", "shardHeap", "destDir", "threads").contains(name))
+                shardArgs.add(arg);
+        }
+        shardArgs.add("shard=" + shard + "/" + nShards);
+        shardArgs.add("destDir=" + dir.getPath());
+        shardArgs.add("threads=" + threads);
+        return shardArgs;
+    }
+}
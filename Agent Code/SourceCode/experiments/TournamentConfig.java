@@ -0,0 +1,121 @@
+package evaluation.experiments;
+
+import games.GameType;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * Settings of a MatchupTournament. The game, player count, matchups, seed, destDir and
+ * playerDirectory come from a RunGames config such as rungames3.json, so the same file drives both
+ * runners. The settings RunGames does not know are given on the command line (name=value) and
+ * override the file.
+ */
+public class TournamentConfig {
+
+    public GameType game = GameType.SushiGo;
+    public int nPlayers = 3;
+    // Games per pairing; the cap when adaptive
+    public int matchups = 1000;
+    public long seed = 0;
+    public String destDir = "outputdir";
+    public String playerDirectory = "json/testplayers";
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    // Sequential test: stop a pairing once one agent is shown to score above 0.5 + delta or below 0.5 - delta
+    public boolean adaptive = false;
+    public double delta = 0.05;
+    public double alpha = 0.05;
+    public double beta = 0.05;
+    public int minGames = 30;
+
+    // Journal: resume from destDir/MatchupJournal.txt if present, fsync after syncEvery games or syncMs
+    public boolean resume = true;
+    public int syncEvery = 64;
+    public long syncMs = 1000;
+
+    // Seconds between snapshots of the running statistics; 0 for none
+    public int snapshotSeconds = 30;
+
+    // Order of games: "cost" plays the pairings with the most estimated work left first, "balanced" the ones with fewest games
+    public String schedule = "cost";
+
+    // This process plays the games whose index (pairing * matchups + game) is shard modulo nShards
+    public int shard = 0;
+    public int nShards = 1;
+
+    // Decisions taking at least this many milliseconds are logged for DecisionReplay; 0 for none
+    public long slowMs = 0;
+
+    /**
+     * @param args Command line; config=FILE names the RunGames JSON.
+     * @return The settings.
+     */
+    public static TournamentConfig fromArgs(String[] args) throws IOException {
+        TournamentConfig config = new TournamentConfig();
+        String file = getArg(args, "config", "");
+        if (!file.isEmpty())
+            config.readFile(file);
+        config.game = GameType.valueOf(getArg(args, "game", config.game.name()));
+        config.nPlayers = getArg(args, "nPlayers", config.nPlayers);
+        config.matchups = getArg(args, "matchups", config.matchups);
+        config.seed = getArg(args, "seed", config.seed);
+        config.destDir = getArg(args, "destDir", config.destDir);
+        config.playerDirectory = getArg(args, "playerDirectory", config.playerDirectory);
+        config.threads = getArg(args, "threads", config.threads);
+        config.adaptive = getArg(args, "adaptive", config.adaptive);
+        config.delta = getArg(args, "delta", config.delta);
+        config.alpha = getArg(args, "alpha", config.alpha);
+        config.beta = getArg(args, "beta", config.beta);
+        config.minGames = getArg(args, "minGames", config.minGames);
+        config.resume = getArg(args, "resume", config.resume);
+        config.syncEvery = getArg(args, "syncEvery", config.syncEvery);
+        config.syncMs = getArg(args, "syncMs", config.syncMs);
+        config.snapshotSeconds = getArg(args, "snapshotSeconds", config.snapshotSeconds);
+        config.schedule = getArg(args, "schedule", config.schedule);
+        config.slowMs = getArg(args, "slowMs", config.slowMs);
+        String shard = getArg(args, "shard", "");
+        if (!shard.isEmpty()) {
+            String[] parts = shard.split("/");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("shard must be i/N, not " + shard);
+            config.shard = Integer.parseInt(parts[0].trim());
+            config.nShards = Integer.parseInt(parts[1].trim());
+            if (config.nShards < 1 || config.shard < 0 || config.shard >= config.nShards)
+                throw new IllegalArgumentException("No shard " + shard);
+            if (config.adaptive && config.nShards > 1)
+                throw new IllegalArgumentException("Adaptive runs cannot be sharded: a pairing's test needs all its games in one process");
+        }
+        if (config.nPlayers < 2)
+            throw new IllegalArgumentException("A matchup needs at least 2 players, not " + config.nPlayers);
+        return config;
+    }
+
+    void readFile(String file) throws IOException {
+        JSONObject json;
+        try (Reader reader = new FileReader(file)) {
+            json = (JSONObject) new JSONParser().parse(reader);
+        } catch (ParseException e) {
+            throw new IOException("Could not parse " + file, e);
+        }
+        if (json.containsKey("game"))
+            game = GameType.valueOf((String) json.get("game"));
+        if (json.containsKey("nPlayers"))
+            nPlayers = ((Number) json.get("nPlayers")).intValue();
+        if (json.containsKey("matchups"))
+            matchups = ((Number) json.get("matchups")).intValue();
+        if (json.containsKey("seed"))
+            seed = ((Number) json.get("seed")).longValue();
+        if (json.containsKey("destDir"))
+            destDir = (String) json.get("destDir");
+        if (json.containsKey("playerDirectory"))
+            playerDirectory = (String) json.get("playerDirectory");
+    }
+}
@@ -0,0 +1,67 @@
+package evaluation.experiments;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.Arrays;
+
+
+/**
+ * Java Flight Recorder event covering one game played by MatchRunner, so that the games of a
+ * tournament, tuning or self-play run show up on the JDK Mission Control timeline next to the
+ * search decisions (SearchDecisionEvent) they are made of.
+ */
+@Name("tag.experiments.Game")
+@Label("Game")
+@Category({"TAG", "Experiments"})
+@Description("One game played by MatchRunner")
+public class TournamentGameEvent extends Event {
+
+    @Label("Game")
+    public String game;
+
+    @Label("Seed")
+    public long seed;
+
+    @Label("Players")
+    public int nPlayers;
+
+    @Label("Agents")
+    @Description("Agent in each seat")
+    public String agents;
+
+    @Label("Decisions")
+    public int decisions;
+
+    @Label("Scores")
+    public String scores;
+
+    @Label("Winner")
+    @Description("Agent in first place; ties are joined with '+'")
+    public String winner;
+
+    /**
+     * Fills in the fields and commits the event, if a recording wants it.
+     */
+    void report(String gameName, GameOutcome outcome) {
+        end();
+        if (!shouldCommit())
+            return;
+        game = gameName;
+        seed = outcome.seed;
+        nPlayers = outcome.getNPlayers();
+        agents = String.join(",", outcome.agents);
+        decisions = outcome.nDecisions;
+        scores = Arrays.toString(outcome.scores);
+        StringBuilder winners = new StringBuilder();
+        for (int p = 0; p < nPlayers; p++) {
+            if (outcome.ordinals[p] == 1)
+                winners.append(winners.length() == 0 ? "" : "+").append(outcome.agents[p]);
+        }
+        winner = winners.toString();
+        commit();
+    }
+}
@@ -0,0 +1,209 @@
+package evaluation.experiments;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+
+/**
+ * Append-only log of finished tournament games, so that a run that is killed can be resumed.
+ * Each game is one text line, written as soon as the game ends. The file is fsynced after every
+ * syncEvery games or syncMs milliseconds, whichever comes first, so the cost of the sync is spread
+ * over a batch of games. If the process dies, every written line survives. Only a machine crash
+ * can lose the last unsynced batch, and those games are simply played again.
+ *
+ * Layout: a header line that identifies the experiment, then one line per game:
+ * <pre>
+ *   pairing game durationNanos nDecisions score_0 .. score_n-1 ordinal_0 .. ordinal_n-1
+ * </pre>
+ * A torn last line, left by a crash during a write, is cut off when the journal is reopened.
+ */
+public class TournamentJournal implements AutoCloseable {
+
+    public static final String JOURNAL_FILE = "MatchupJournal.txt";
+    static final String HEADER_PREFIX = "# MatchupJournal v1 ";
+
+    /**
+     * Receives the games read back from an existing journal.
+     */
+    public interface Replay {
+        void onGame(int pairing, int game, GameOutcome outcome);
+    }
+
+    /**
+     * Names the agents in the seats of game g of a pairing.
+     */
+    public interface SeatNames {
+        String[] names(int pairing, int game);
+    }
+
+    private final FileChannel channel;
+    private final int syncEvery;
+    private final long syncNanos;
+    private int unsynced;
+    private long lastSync = System.nanoTime();
+
+    private TournamentJournal(FileChannel channel, int syncEvery, long syncMs) {
+        this.channel = channel;
+        this.syncEvery = syncEvery;
+        this.syncNanos = syncMs * 1_000_000L;
+    }
+
+    /**
+     * @return The header line for an experiment; a journal is only resumed if its header matches.
+     */
+    public static String header(TournamentConfig config, List<AgentSpec> agents) {
+        StringBuilder sb = new StringBuilder(HEADER_PREFIX);
+        sb.append("game=").append(config.game).append(" nPlayers=").append(config.nPlayers)
+                .append(" matchups=").append(config.matchups).append(" seed=").append(config.seed);
+        if (config.nShards > 1)
+            sb.append(" shard=").append(config.shard).append('/').append(config.nShards);
+        sb.append(" agents=");
+        for (int a = 0; a < agents.size(); a++) {
+            sb.append(a == 0 ? "" : ",").append(agents.get(a).name);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Opens the journal, replaying the games it already holds.
+     * @param file Journal file; created if missing.
+     * @param header Expected header line.
+     * @param seats Seat assignment of a pairing's game, to name the agents of replayed outcomes.
+     * @param replay Receives each recorded game in file order.
+     * @param syncEvery Games between fsyncs.
+     * @param syncMs Milliseconds between fsyncs.
+     * @return The journal, positioned for appending.
+     * @throws IOException If the file belongs to a different experiment.
+     */
+    public static TournamentJournal open(Path file, String header, SeatNames seats, Replay replay, int syncEvery, long syncMs) throws IOException {
+        long validLength = 0;
+        if (Files.exists(file) && Files.size(file) > 0)
+            validLength = read(file, header, seats, replay);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        TournamentJournal journal = new TournamentJournal(channel, syncEvery, syncMs);
+        if (validLength == 0) {
+            journal.write(header + "\n");
+            journal.sync();
+        }
+        return journal;
+    }
+
+    /**
+     * Reads the games of a journal without opening it for writing.
+     * @return The length of the file up to the end of the last complete line.
+     * @throws IOException If the file belongs to a different experiment.
+     */
+    static long read(Path file, String header, SeatNames seats, Replay replay) throws IOException {
+        long completeLength = completeLength(file);
+        if (completeLength == 0)
+            return 0;
+        long validLength = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String first = reader.readLine();
+            if (first == null)
+                return 0;
+            if (!first.equals(header))
+                throw new IOException(file + " belongs to a different experiment:\n  " + first + "\nexpected\n  " + header
+                        + "\nMove it away or choose another destDir to start afresh.");
+            validLength = first.getBytes(StandardCharsets.UTF_8).length + 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long lineLength = line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (validLength + lineLength > completeLength)
+                    break;
+                String[] fields = line.trim().split(" ");
+                int nPlayers = (fields.length - 4) / 2;
+                if (nPlayers < 2 || fields.length != 4 + 2 * nPlayers)
+                    break;
+                try {
+                    int pairing = Integer.parseInt(fields[0]);
+                    int game = Integer.parseInt(fields[1]);
+                    long nanos = Long.parseLong(fields[2]);
+                    int nDecisions = Integer.parseInt(fields[3]);
+                    double[] scores = new double[nPlayers];
+                    int[] ordinals = new int[nPlayers];
+                    for (int p = 0; p < nPlayers; p++) {
+                        scores[p] = Double.parseDouble(fields[4 + p]);
+                        ordinals[p] = Integer.parseInt(fields[4 + nPlayers + p]);
+                    }
+                    replay.onGame(pairing, game, new GameOutcome(-1, seats.names(pairing, game), scores, ordinals, nDecisions, nanos));
+                } catch (NumberFormatException e) {
+                    break;
+                }
+                validLength += lineLength;
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * @return The length of the file up to and including its last newline.
+     */
+    private static long completeLength(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer block = ByteBuffer.allocate(4096);
+            long end = channel.size();
+            while (end > 0) {
+                long start = Math.max(0, end - block.capacity());
+                block.clear().limit((int) (end - start));
+                while (block.hasRemaining() && channel.read(block, start + block.position()) >= 0) {
+                }
+                for (int i = block.position() - 1; i >= 0; i--) {
+                    if (block.get(i) == '\n')
+                        return start + i + 1;
+                }
+                end = start;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Appends a finished game, syncing if the batch is full or old enough.
+     */
+    public synchronized void append(int pairing, int game, GameOutcome outcome) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(pairing).append(' ').append(game).append(' ').append(outcome.durationNanos).append(' ').append(outcome.nDecisions);
+        for (double score : outcome.scores) {
+            sb.append(' ').append(score);
+        }
+        for (int ordinal : outcome.ordinals) {
+            sb.append(' ').append(ordinal);
+        }
+        write(sb.append('\n').toString());
+        unsynced++;
+        if (unsynced >= syncEvery || System.nanoTime() - lastSync >= syncNanos)
+            sync();
+    }
+
+    private void write(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        unsynced = 0;
+        lastSync = System.nanoTime();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package evaluation.listeners;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static evaluation.listeners.ColumnarWriter.*;
+
+
+/**
+ * Reads a file written by ColumnarWriter back into memory, one array per column.
+ * INT columns come back as int[], LONG as long[], DOUBLE as double[], STRING as String[] and
+ * INTS as int[][]. A file cut short by a crash is read up to its last complete block.
+ */
+public class ColumnarReader {
+
+    /**
+     * One table with all its rows.
+     */
+    public static class Table {
+        public final String name;
+        public final String[] columnNames;
+        public final byte[] types;
+        final Object[] columns;
+        int rows;
+
+        Table(String name, String[] columnNames, byte[] types) {
+            this.name = name;
+            this.columnNames = columnNames;
+            this.types = types;
+            this.columns = new Object[columnNames.length];
+            for (int c = 0; c < types.length; c++) {
+                columns[c] = allocate(types[c], 64);
+            }
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int columnIndex(String column) {
+            int c = Arrays.asList(columnNames).indexOf(column);
+            if (c < 0)
+                throw new IllegalArgumentException("No column " + column + " in table " + name);
+            return c;
+        }
+
+        /**
+         * @return The column's values, as an array of exactly getRows() elements.
+         */
+        public Object column(String column) {
+            int c = columnIndex(column);
+            switch (types[c]) {
+                case LONG:
+                    return Arrays.copyOf((long[]) columns[c], rows);
+                case DOUBLE:
+                    return Arrays.copyOf((double[]) columns[c], rows);
+                case STRING:
+                    return Arrays.copyOf((String[]) columns[c], rows);
+                case INTS:
+                    return Arrays.copyOf((int[][]) columns[c], rows);
+                default:
+                    return Arrays.copyOf((int[]) columns[c], rows);
+            }
+        }
+
+        void ensureCapacity(int needed) {
+            for (int c = 0; c < columns.length; c++) {
+                if (needed > java.lang.reflect.Array.getLength(columns[c])) {
+                    Object grown = allocate(types[c], Math.max(needed, 2 * java.lang.reflect.Array.getLength(columns[c])));
+                    System.arraycopy(columns[c], 0, grown, 0, rows);
+                    columns[c] = grown;
+                }
+            }
+        }
+    }
+
+    static Object allocate(byte type, int size) {
+        switch (type) {
+            case LONG:
+                return new long[size];
+            case DOUBLE:
+                return new double[size];
+            case STRING:
+                return new String[size];
+            case INTS:
+                return new int[size][];
+            default:
+                return new int[size];
+        }
+    }
+
+    /**
+     * @return The tables of the file by name, in the order they were declared.
+     */
+    public static Map<String, Table> read(String file) throws IOException {
+        List<Table> tables = new ArrayList<>();
+        List<String> dictionary = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a columnar statistics file");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException(file + " has version " + version + ", expected " + VERSION);
+            while (true) {
+                int kind;
+                try {
+                    kind = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    switch (kind) {
+                        case 'S':
+                            tables.add(readSchema(in));
+                            break;
+                        case 'D':
+                            readDictionary(in, dictionary);
+                            break;
+                        case 'B':
+                            readBlock(in, tables, dictionary);
+                            break;
+                        default:
+                            throw new IOException("Unknown block kind " + kind + " in " + file);
+                    }
+                } catch (EOFException e) {
+                    // The last block is incomplete
+                    break;
+                }
+            }
+        }
+        Map<String, Table> byName = new LinkedHashMap<>();
+        for (Table table : tables) {
+            byName.put(table.name, table);
+        }
+        return byName;
+    }
+
+    static Table readSchema(DataInputStream in) throws IOException {
+        in.readUnsignedByte();
+        String name = in.readUTF();
+        int n = in.readUnsignedByte();
+        String[] names = new String[n];
+        byte[] types = new byte[n];
+        for (int c = 0; c < n; c++) {
+            names[c] = in.readUTF();
+            types[c] = in.readByte();
+        }
+        return new Table(name, names, types);
+    }
+
+    static void readDictionary(DataInputStream in, List<String> dictionary) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            dictionary.add(in.readUTF());
+        }
+    }
+
+    static void readBlock(DataInputStream in, List<Table> tables, List<String> dictionary) throws IOException {
+        Table table = tables.get(in.readUnsignedByte());
+        int n = in.readInt();
+        // Read the block aside first, so an incomplete block leaves the table as it was
+        Object[] block = new Object[table.types.length];
+        for (int c = 0; c < block.length; c++) {
+            switch (table.types[c]) {
+                case LONG: {
+                    long[] values = new long[n];
+                    for (int r = 0; r < n; r++) {
+                        values[r] = in.readLong();
+                    }
+                    block[c] = values;
+                    break;
+                }
+                case DOUBLE: {
+                    double[] values = new double[n];
+                    for (int r = 0; r < n; r++) {
+                        values[r] = in.readDouble();
+                    }
+                    block[c] = values;
+                    break;
+                }
+                case STRING: {
+                    String[] values = new String[n];
+                    for (int r = 0; r < n; r++) {
+                        values[r] = dictionary.get(in.readInt());
+                    }
+                    block[c] = values;
+                    break;
+                }
+                case INTS: {
+                    int[][] values = new int[n][];
+                    for (int r = 0; r < n; r++) {
+                        values[r] = new int[in.readInt()];
+                    }
+                    for (int r = 0; r < n; r++) {
+                        for (int i = 0; i < values[r].length; i++) {
+                            values[r][i] = in.readInt();
+                        }
+                    }
+                    block[c] = values;
+                    break;
+                }
+                default: {
+                    int[] values = new int[n];
+                    for (int r = 0; r < n; r++) {
+                        values[r] = in.readInt();
+                    }
+                    block[c] = values;
+                }
+            }
+        }
+        table.ensureCapacity(table.rows + n);
+        for (int c = 0; c < block.length; c++) {
+            System.arraycopy(block[c], 0, table.columns[c], table.rows, n);
+        }
+        table.rows += n;
+    }
+}
@@ -0,0 +1,218 @@
+package evaluation.listeners;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Writes tables to a compact columnar file. Rows are buffered per table, and every BLOCK_ROWS rows
+ * the block is written column by column, so each column's values sit together on disk. Strings are
+ * stored once in a shared dictionary and referenced by index.
+ *
+ * File layout: the magic "TAGC" and an int version, then a sequence of blocks, each starting with a
+ * kind byte:
+ * <pre>
+ *   'S' schema:     u8 table id, UTF table name, u8 column count, per column UTF name and u8 type
+ *   'D' dictionary: int count, then that many UTF strings, numbered on from the previous ones
+ *   'B' rows:       u8 table id, int row count, then each column's values for those rows
+ * </pre>
+ * INT and STRING columns hold ints, LONG longs and DOUBLE doubles; an INTS column holds the list
+ * lengths followed by all the values. ColumnarReader reads the file back.
+ */
+public class ColumnarWriter implements AutoCloseable {
+
+    public static final int MAGIC = 0x54414743; // "TAGC"
+    public static final int VERSION = 1;
+    public static final int BLOCK_ROWS = 4096;
+
+    public static final byte INT = 1, LONG = 2, DOUBLE = 3, STRING = 4, INTS = 5;
+
+    private final DataOutputStream out;
+    private final List<Table> tables = new ArrayList<>();
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> pendingStrings = new ArrayList<>();
+
+    public ColumnarWriter(String file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Declares a table.
+     * @param name Table name.
+     * @param columns Column names, each followed by its type, e.g. "gameIndex", INT.
+     * @return The table, to which rows are added cell by cell.
+     */
+    public Table table(String name, Object... columns) throws IOException {
+        Table table = new Table(tables.size(), name, columns);
+        tables.add(table);
+        out.writeByte('S');
+        out.writeByte(table.id);
+        out.writeUTF(name);
+        out.writeByte(table.names.length);
+        for (int c = 0; c < table.names.length; c++) {
+            out.writeUTF(table.names[c]);
+            out.writeByte(table.types[c]);
+        }
+        return table;
+    }
+
+    int stringId(String value) {
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.put(value, id);
+            pendingStrings.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * One table. Fill the cells of a row with the set methods, in any order, then call endRow().
+     */
+    public class Table {
+        final int id;
+        final String name;
+        final String[] names;
+        final byte[] types;
+        // Per column: int[], long[] or double[] of BLOCK_ROWS values; INTS columns hold the lengths here
+        final Object[] values;
+        // Per INTS column: all list values of the block
+        final int[][] listValues;
+        final int[] listSizes;
+        int rows;
+
+        Table(int id, String name, Object[] columns) {
+            this.id = id;
+            this.name = name;
+            int n = columns.length / 2;
+            names = new String[n];
+            types = new byte[n];
+            values = new Object[n];
+            listValues = new int[n][];
+            listSizes = new int[n];
+            for (int c = 0; c < n; c++) {
+                names[c] = (String) columns[2 * c];
+                types[c] = (Byte) columns[2 * c + 1];
+                switch (types[c]) {
+                    case LONG:
+                        values[c] = new long[BLOCK_ROWS];
+                        break;
+                    case DOUBLE:
+                        values[c] = new double[BLOCK_ROWS];
+                        break;
+                    case INTS:
+                        listValues[c] = new int[BLOCK_ROWS];
+                        // fall through: the lengths are ints
+                    default:
+                        values[c] = new int[BLOCK_ROWS];
+                }
+            }
+        }
+
+        public void setInt(int column, int value) {
+            ((int[]) values[column])[rows] = value;
+        }
+
+        public void setLong(int column, long value) {
+            ((long[]) values[column])[rows] = value;
+        }
+
+        public void setDouble(int column, double value) {
+            ((double[]) values[column])[rows] = value;
+        }
+
+        public void setString(int column, String value) {
+            ((int[]) values[column])[rows] = stringId(value);
+        }
+
+        public void setInts(int column, int[] list) {
+            ((int[]) values[column])[rows] = list.length;
+            if (listSizes[column] + list.length > listValues[column].length)
+                listValues[column] = Arrays.copyOf(listValues[column], Math.max(2 * listValues[column].length, listSizes[column] + list.length));
+            System.arraycopy(list, 0, listValues[column], listSizes[column], list.length);
+            listSizes[column] += list.length;
+        }
+
+        public void endRow() throws IOException {
+            rows++;
+            if (rows == BLOCK_ROWS)
+                flush();
+        }
+
+        void flush() throws IOException {
+            if (rows == 0)
+                return;
+            writeDictionary();
+            out.writeByte('B');
+            out.writeByte(id);
+            out.writeInt(rows);
+            for (int c = 0; c < names.length; c++) {
+                switch (types[c]) {
+                    case LONG:
+                        for (int r = 0; r < rows; r++) {
+                            out.writeLong(((long[]) values[c])[r]);
+                        }
+                        break;
+                    case DOUBLE:
+                        for (int r = 0; r < rows; r++) {
+                            out.writeDouble(((double[]) values[c])[r]);
+                        }
+                        break;
+                    case INTS:
+                        for (int r = 0; r < rows; r++) {
+                            out.writeInt(((int[]) values[c])[r]);
+                        }
+                        for (int i = 0; i < listSizes[c]; i++) {
+                            out.writeInt(listValues[c][i]);
+                        }
+                        listSizes[c] = 0;
+                        break;
+                    default:
+                        for (int r = 0; r < rows; r++) {
+                            out.writeInt(((int[]) values[c])[r]);
+                        }
+                }
+            }
+            rows = 0;
+        }
+    }
+
+    private void writeDictionary() throws IOException {
+        if (pendingStrings.isEmpty())
+            return;
+        out.writeByte('D');
+        out.writeInt(pendingStrings.size());
+        for (String s : pendingStrings) {
+            out.writeUTF(s);
+        }
+        pendingStrings.clear();
+    }
+
+    /**
+     * Writes out all buffered rows.
+     */
+    public void flush() throws IOException {
+        for (Table table : tables) {
+            table.flush();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+}
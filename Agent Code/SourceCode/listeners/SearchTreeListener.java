@@ -0,0 +1,183 @@
+package evaluation.listeners;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.Game;
+import core.actions.AbstractAction;
+import evaluation.metrics.Event;
+import players.searchCommon.ISearchReporter;
+import players.searchCommon.SearchStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+
+/**
+ * Records the shape and cost of every search tree built during a run, for players that implement
+ * ISearchReporter. Each decision adds a row to the "decisions" table, and each finished game a row
+ * per player to the "games" table, so that search efficiency can be related to results by joining
+ * on gameIndex and playerId. Other players' decisions are skipped.
+ *
+ * Use it through a listener file such as json/listeners/searchtreelistener.json:
+ * <pre>
+ *   {"class": "evaluation.listeners.SearchTreeListener", "args": ["SearchTreeStats.tagc"]}
+ * </pre>
+ * The file is written with ColumnarWriter into the run's output directory, and read back with
+ * ColumnarReader.
+ */
+public class SearchTreeListener implements IGameListener {
+
+    public static final String DEFAULT_FILE = "SearchTreeStats.tagc";
+
+    // Columns of the decisions table
+    static final int GAME = 0, DECISION = 1, PLAYER = 2, AGENT = 3, ITERATIONS = 4, FM_CALLS = 5, NODES = 6,
+            MAX_DEPTH = 7, MEAN_DEPTH = 8, BRANCHING = 9, ROOT_ENTROPY = 10, NODES_PER_SECOND = 11,
+            SEARCH_NANOS = 12, ALLOCATED_BYTES = 13, HEAP_USED = 14, DEPTH_HISTOGRAM = 15;
+    // Columns of the games table
+    static final int G_GAME = 0, G_PLAYER = 1, G_AGENT = 2, G_ORDINAL = 3, G_SCORE = 4;
+
+    private final String fileName;
+    private String directory = ".";
+    private Game game;
+    private ColumnarWriter writer;
+    private ColumnarWriter.Table decisions, games;
+    private int gameIndex, decision;
+
+    public SearchTreeListener() {
+        this(DEFAULT_FILE);
+    }
+
+    public SearchTreeListener(String fileName) {
+        this.fileName = fileName;
+    }
+
+    @Override
+    public synchronized void onEvent(Event event) {
+        try {
+            if (event.type == Event.GameEvent.ACTION_CHOSEN)
+                recordDecision(event);
+            else if (event.type == Event.GameEvent.GAME_OVER)
+                recordGame(event.state);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void recordDecision(Event event) throws IOException {
+        if (game == null || event.playerID < 0 || event.playerID >= game.getPlayers().size())
+            return;
+        AbstractPlayer player = game.getPlayers().get(event.playerID);
+        if (!(player instanceof ISearchReporter))
+            return;
+        ISearchReporter reporter = (ISearchReporter) player;
+        SearchStats stats = reporter.getSearchStats();
+        if (stats == null)
+            return;
+        open();
+        Runtime runtime = Runtime.getRuntime();
+        decisions.setInt(GAME, gameIndex);
+        decisions.setInt(DECISION, decision++);
+        decisions.setInt(PLAYER, event.playerID);
+        decisions.setString(AGENT, player.toString());
+        decisions.setInt(ITERATIONS, stats.iterations);
+        decisions.setLong(FM_CALLS, stats.fmCalls);
+        decisions.setInt(NODES, stats.nodesCreated);
+        decisions.setInt(MAX_DEPTH, stats.maxDepth);
+        decisions.setDouble(MEAN_DEPTH, stats.getMeanDepth());
+        decisions.setDouble(BRANCHING, stats.getEffectiveBranchingFactor());
+        decisions.setDouble(ROOT_ENTROPY, entropy(reporter.getRootVisits()));
+        decisions.setDouble(NODES_PER_SECOND, stats.getNodesPerSecond());
+        decisions.setLong(SEARCH_NANOS, stats.searchNanos);
+        decisions.setLong(ALLOCATED_BYTES, stats.allocatedBytes);
+        decisions.setLong(HEAP_USED, runtime.totalMemory() - runtime.freeMemory());
+        decisions.setInts(DEPTH_HISTOGRAM, stats.getDepthHistogram());
+        decisions.endRow();
+    }
+
+    private void recordGame(AbstractGameState state) throws IOException {
+        if (game == null || state == null)
+            return;
+        open();
+        for (int p = 0; p < game.getPlayers().size(); p++) {
+            games.setInt(G_GAME, gameIndex);
+            games.setInt(G_PLAYER, p);
+            games.setString(G_AGENT, game.getPlayers().get(p).toString());
+            games.setInt(G_ORDINAL, state.getOrdinalPosition(p));
+            games.setDouble(G_SCORE, state.getGameScore(p));
+            games.endRow();
+        }
+        gameIndex++;
+        decision = 0;
+    }
+
+    /**
+     * @return Shannon entropy, in nats, of the root visit distribution: 0 when all visits went to one
+     * action, ln(k) when they were spread evenly over k actions.
+     */
+    static double entropy(Map<AbstractAction, Integer> visits) {
+        long total = 0;
+        for (int n : visits.values()) {
+            total += n;
+        }
+        double entropy = 0;
+        for (int n : visits.values()) {
+            if (n > 0) {
+                double p = (double) n / total;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy;
+    }
+
+    private void open() throws IOException {
+        if (writer != null)
+            return;
+        File dir = new File(directory);
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Could not create " + dir);
+        writer = new ColumnarWriter(new File(dir, fileName).getPath());
+        decisions = writer.table("decisions",
+                "gameIndex", ColumnarWriter.INT, "decision", ColumnarWriter.INT, "playerId", ColumnarWriter.INT,
+                "agent", ColumnarWriter.STRING, "iterations", ColumnarWriter.INT, "fmCalls", ColumnarWriter.LONG,
+                "nodes", ColumnarWriter.INT, "maxDepth", ColumnarWriter.INT, "meanDepth", ColumnarWriter.DOUBLE,
+                "branching", ColumnarWriter.DOUBLE, "rootEntropy", ColumnarWriter.DOUBLE,
+                "nodesPerSecond", ColumnarWriter.DOUBLE, "searchNanos", ColumnarWriter.LONG,
+                "allocatedBytes", ColumnarWriter.LONG, "heapUsed", ColumnarWriter.LONG,
+                "depthHistogram", ColumnarWriter.INTS);
+        games = writer.table("games",
+                "gameIndex", ColumnarWriter.INT, "playerId", ColumnarWriter.INT, "agent", ColumnarWriter.STRING,
+                "ordinal", ColumnarWriter.INT, "score", ColumnarWriter.DOUBLE);
+    }
+
+    @Override
+    public synchronized void report() {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer = null;
+        }
+    }
+
+    @Override
+    public boolean setOutputDirectory(String... nestedDirectories) {
+        if (nestedDirectories.length > 0)
+            directory = String.join(File.separator, nestedDirectories);
+        return true;
+    }
+
+    @Override
+    public void setGame(Game game) {
+        this.game = game;
+    }
+
+    @Override
+    public Game getGame() {
+        return game;
+    }
+}
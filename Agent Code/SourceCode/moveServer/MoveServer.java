@@ -0,0 +1,213 @@
+package evaluation.moveServer;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.actions.AbstractAction;
+import players.PlayerParameters;
+import players.searchCommon.IHardDeadline;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Runs the searches of many concurrent games on one bounded pool of worker threads, one decision
+ * per worker, so the host's cores are kept busy without being oversubscribed. Games keep their own
+ * players and hand each decision in with a deadline.
+ *
+ * - Back-pressure: at most queueCapacity decisions wait for a worker. Beyond that submit() throws
+ *   RejectedExecutionException and decide() answers BUSY at once, so a caller can slow down or
+ *   fall back instead of queueing without bound.
+ * - Deadlines: a decision still queued at its deadline is not searched. A player whose parameters
+ *   implement IHardDeadline searches under the time left, less a safety margin. decide() waits no
+ *   longer than the deadline either way, and plays a fallback action if the search is late.
+ *
+ * Games ask for their moves in turn. If a late search is still running when the same player's
+ * next decision reaches a worker, that decision waits for it.
+ *
+ * A worker runs a player's whole decision. A PortfolioPlayer runs one member search on the worker
+ * and hands the others to its own shared pool, so each portfolio decision takes up to three cores.
+ * Serve portfolios with about a third as many workers as cores to keep the host from being
+ * oversubscribed.
+ */
+public class MoveServer implements AutoCloseable {
+
+    public enum Status {
+        // Searched within the deadline
+        OK,
+        // The search or the wait for a worker ran past the deadline; a fallback action was played
+        LATE,
+        // The queue was full; a fallback action was played without searching
+        BUSY
+    }
+
+    /**
+     * A decision as answered by decide().
+     */
+    public static class Decision {
+        public final AbstractAction action;
+        public final Status status;
+        public final long nanos;
+
+        Decision(AbstractAction action, Status status, long nanos) {
+            this.action = action;
+            this.status = status;
+            this.nanos = nanos;
+        }
+    }
+
+    // Time kept back from a hard deadline for handing the action back
+    static final int SAFETY_MS = 5;
+
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService requests = requestExecutor();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong late = new AtomicLong();
+
+    /**
+     * @param nWorkers Searches run at once, normally the number of cores.
+     * @param queueCapacity Decisions that may wait for a worker.
+     */
+    public MoveServer(int nWorkers, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        workers = new ThreadPoolExecutor(nWorkers, nWorkers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "MoveServerWorker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        workers.prestartAllCoreThreads();
+    }
+
+    /**
+     * Virtual threads where the JVM has them (Java 21 and later), for work that mostly waits on
+     * sockets or futures; a cached pool of daemon threads otherwise.
+     */
+    static ExecutorService requestExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "MoveServerRequest");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Queues a decision.
+     *
+     * @param deadlineNanos System.nanoTime() by which the action is needed.
+     * @return The chosen action; fails with CancellationException if the deadline passed before a
+     * worker was free.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    public Future<AbstractAction> submit(AbstractPlayer player, AbstractGameState observation,
+                                         List<AbstractAction> actions, long deadlineNanos) {
+        try {
+            Future<AbstractAction> future = workers.submit(() -> search(player, observation, actions, deadlineNanos));
+            accepted.incrementAndGet();
+            return future;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private AbstractAction search(AbstractPlayer player, AbstractGameState observation,
+                                  List<AbstractAction> actions, long deadlineNanos) {
+        long leftMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()) - SAFETY_MS;
+        if (leftMs <= 0) {
+            expired.incrementAndGet();
+            throw new CancellationException("Deadline passed in the queue");
+        }
+        // A late search may still be running when its game asks for the next move
+        synchronized (player) {
+            PlayerParameters params = player.getParameters();
+            if (!(params instanceof IHardDeadline))
+                return player.getAction(observation, actions);
+
+            Runnable restore = ((IHardDeadline) params).limitHardDeadlineMs((int) Math.min(leftMs, Integer.MAX_VALUE));
+            try {
+                return player.getAction(observation, actions);
+            } finally {
+                restore.run();
+            }
+        }
+    }
+
+    /**
+     * Searches a decision on the pool and waits for it, for at most deadlineMs. When the queue is
+     * full or the search is late, the first available action is played.
+     */
+    public Decision decide(AbstractPlayer player, AbstractGameState observation, List<AbstractAction> actions,
+                           long deadlineMs) {
+        long start = System.nanoTime();
+        long deadlineNanos = start + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        Future<AbstractAction> future;
+        try {
+            future = submit(player, observation, actions, deadlineNanos);
+        } catch (RejectedExecutionException e) {
+            return new Decision(actions.get(0), Status.BUSY, System.nanoTime() - start);
+        }
+        try {
+            AbstractAction action = future.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+            return new Decision(action, Status.OK, System.nanoTime() - start);
+        } catch (TimeoutException | CancellationException e) {
+            // A queued search is dropped; a running one finishes on its worker and is discarded
+            future.cancel(false);
+            late.incrementAndGet();
+            return new Decision(actions.get(0), Status.LATE, System.nanoTime() - start);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                late.incrementAndGet();
+                return new Decision(actions.get(0), Status.LATE, System.nanoTime() - start);
+            }
+            throw new IllegalStateException("Search failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a search", e);
+        }
+    }
+
+    /**
+     * @return Executor for request handling (parsing, rebuilding states, waiting for searches),
+     * kept apart from the search workers.
+     */
+    public ExecutorService getRequestExecutor() {
+        return requests;
+    }
+
+    public int getQueueLength() {
+        return workers.getQueue().size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("workers %d, active %d, queued %d; accepted %d, rejected %d, expired in queue %d, late %d",
+                workers.getCorePoolSize(), workers.getActiveCount(), getQueueLength(),
+                accepted.get(), rejected.get(), expired.get(), late.get());
+    }
+
+    @Override
+    public void close() {
+        requests.shutdownNow();
+        workers.shutdownNow();
+    }
+}
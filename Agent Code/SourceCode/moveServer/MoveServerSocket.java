@@ -0,0 +1,101 @@
+package evaluation.moveServer;
+
+import core.actions.AbstractAction;
+import evaluation.experiments.DecisionRecord;
+import evaluation.experiments.DecisionReplay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * A line-based front end for MoveServer on a local socket, so that programs outside this JVM can
+ * ask for moves. Each connection is handled on the server's request executor; the searches run on
+ * its workers. Requests on one connection are answered in order, so a client with many games open
+ * at once uses one connection per game.
+ *
+ * Requests, one per line:
+ *   DECIDE <deadlineMs> <record>  decide the position of a decision record (see DecisionRecord):
+ *                                 the game is dealt from its seed and the history replayed, and
+ *                                 the recorded player searches with its recorded seed. The
+ *                                 record's nanos, iterations and chosen fields are ignored.
+ *                                 Answers OK|LATE|BUSY <action index> <milliseconds>
+ *   STATS                         answers the server's counters
+ *   QUIT                          closes the connection
+ * A request that cannot be read is answered with ERROR <message>.
+ *
+ * Arguments (name=value):
+ *   port      port on the loopback address (default 7345)
+ *   workers   searches run at once (default: the number of cores)
+ *   queue     decisions that may wait for a worker (default 64)
+ *   deadline  deadline in milliseconds of a DECIDE without one (default 1000)
+ */
+public class MoveServerSocket {
+
+    public static void main(String[] args) throws IOException {
+        int port = getArg(args, "port", 7345);
+        int workers = getArg(args, "workers", Runtime.getRuntime().availableProcessors());
+        int queue = getArg(args, "queue", 64);
+        long deadline = getArg(args, "deadline", 1000L);
+
+        try (MoveServer server = new MoveServer(workers, queue);
+             ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.printf("Move server on %s: %s%n", socket.getLocalSocketAddress(), server);
+            while (!socket.isClosed()) {
+                Socket client = socket.accept();
+                server.getRequestExecutor().execute(() -> serve(server, client, deadline));
+            }
+        }
+    }
+
+    private static void serve(MoveServer server, Socket client, long defaultDeadline) {
+        try (Socket connection = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(connection.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+                if (line.equals("QUIT"))
+                    break;
+                if (line.equals("STATS")) {
+                    out.println(server);
+                    continue;
+                }
+                try {
+                    out.println(answer(server, line, defaultDeadline));
+                } catch (RuntimeException e) {
+                    out.println("ERROR " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Move server connection closed: " + e.getMessage());
+        }
+    }
+
+    private static String answer(MoveServer server, String line, long defaultDeadline) {
+        if (!line.startsWith("DECIDE "))
+            throw new IllegalArgumentException("Unknown request: " + line);
+        String rest = line.substring("DECIDE ".length()).trim();
+        long deadline = defaultDeadline;
+        int space = rest.indexOf(' ');
+        if (space > 0 && rest.substring(0, space).chars().allMatch(Character::isDigit)) {
+            deadline = Long.parseLong(rest.substring(0, space));
+            rest = rest.substring(space + 1).trim();
+        }
+
+        DecisionReplay.Decision decision = DecisionReplay.rebuild(DecisionRecord.parse(rest));
+        MoveServer.Decision result = server.decide(decision.player, decision.observation, decision.actions, deadline);
+        AbstractAction action = result.action;
+        return String.format("%s %d %.1f", result.status, decision.actions.indexOf(action), result.nanos / 1e6);
+    }
+}
@@ -0,0 +1,84 @@
+package players.portfolio;
+
+import players.MCTS_UCB1_Tuned.MCTS_UCB1_Tuned;
+import players.PlayerParameters;
+import players.alphaAMAF.alphaAMAF;
+import players.progressiveBias_Lab.progressiveBiasParams;
+import players.searchCommon.IHardDeadline;
+
+
+public class PortfolioParams extends PlayerParameters implements IHardDeadline {
+
+    // Parameters of the member searches; their budgets are replaced by the portfolio's
+    public MCTS_UCB1_Tuned ucb1Tuned = new MCTS_UCB1_Tuned();
+    public progressiveBiasParams progressiveBias = new progressiveBiasParams();
+    public alphaAMAF amaf = new alphaAMAF();
+    // Weight of each member's normalised root visits in the vote; a member with weight 0 is not run
+    public double ucb1TunedWeight = 1.0;
+    public double progressiveBiasWeight = 1.0;
+    public double amafWeight = 1.0;
+
+    public PortfolioParams() {
+        addTunableParameter("ucb1Tuned", new MCTS_UCB1_Tuned());
+        addTunableParameter("progressiveBias", new progressiveBiasParams());
+        addTunableParameter("amaf", new alphaAMAF());
+        addTunableParameter("ucb1TunedWeight", 1.0);
+        addTunableParameter("progressiveBiasWeight", 1.0);
+        addTunableParameter("amafWeight", 1.0);
+    }
+
+    @Override
+    public void _reset() {
+        super._reset();
+        ucb1Tuned = (MCTS_UCB1_Tuned) getParameterValue("ucb1Tuned");
+        progressiveBias = (progressiveBiasParams) getParameterValue("progressiveBias");
+        amaf = (alphaAMAF) getParameterValue("amaf");
+        ucb1TunedWeight = (double) getParameterValue("ucb1TunedWeight");
+        progressiveBiasWeight = (double) getParameterValue("progressiveBiasWeight");
+        amafWeight = (double) getParameterValue("amafWeight");
+    }
+
+    /**
+     * @return The members' deadline, 0 if none of them has one.
+     */
+    @Override
+    public int getHardDeadlineMs() {
+        return Math.max(ucb1Tuned.hardDeadlineMs, Math.max(progressiveBias.hardDeadlineMs, amaf.hardDeadlineMs));
+    }
+
+    /**
+     * Gives every member the same deadline; they search at the same time.
+     */
+    @Override
+    public void setHardDeadlineMs(int millis) {
+        ucb1Tuned.hardDeadlineMs = millis;
+        progressiveBias.hardDeadlineMs = millis;
+        amaf.hardDeadlineMs = millis;
+    }
+
+    /**
+     * Limits each member's own deadline, and restores each one to its own value.
+     */
+    @Override
+    public Runnable limitHardDeadlineMs(int millis) {
+        Runnable ucb1TunedRestore = ucb1Tuned.limitHardDeadlineMs(millis);
+        Runnable progressiveBiasRestore = progressiveBias.limitHardDeadlineMs(millis);
+        Runnable amafRestore = amaf.limitHardDeadlineMs(millis);
+        return () -> {
+            ucb1TunedRestore.run();
+            progressiveBiasRestore.run();
+            amafRestore.run();
+        };
+    }
+
+    @Override
+    protected PortfolioParams _copy() {
+        // All the copying is done in TunableParameters.copy()
+        return new PortfolioParams();
+    }
+
+    @Override
+    public PortfolioPlayer instantiate() {
+        return new PortfolioPlayer((PortfolioParams) this.copy());
+    }
+}
@@ -0,0 +1,187 @@
+package players.portfolio;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.actions.AbstractAction;
+import players.MCTS_UCB1_Tuned.MCTS_UCB1_TunedPlayer;
+import players.PlayerParameters;
+import players.alphaAMAF.alphaAMAFPlayer;
+import players.progressiveBias_Lab.progressiveBiasPlayer;
+import players.searchCommon.ISearchReporter;
+import players.searchCommon.SearchStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Runs UCB1-Tuned, progressive bias and αAMAF side by side on the same decision and lets them
+ * vote. Each member searches with the portfolio's budget on its own core: the first on the calling
+ * thread, the others on a pool shared by all portfolio players. Each member's root visits are
+ * normalised to sum to 1 and weighted, and the action with the largest total wins. Under
+ * BUDGET_TIME a decision takes about as long as one search; under the other budget types each
+ * member spends the full budget.
+ *
+ * The members read the game state and forward model from several threads at once, which the
+ * Sushi Go forward model and heuristics allow. When more portfolio players search at once than
+ * there are cores, members wait for the pool and decisions take longer.
+ */
+public class PortfolioPlayer extends AbstractPlayer implements ISearchReporter {
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), r -> {
+                Thread thread = new Thread(r, "PortfolioSearch");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Members that take part, and the weight of each one's vote
+    private final List<AbstractPlayer> members = new ArrayList<>();
+    private final List<Double> weights = new ArrayList<>();
+
+    // Summed root visits and statistics of all members in the last decision, for ISearchReporter
+    private Map<AbstractAction, Integer> lastRootVisits = Collections.emptyMap();
+    private SearchStats lastStats;
+
+    public PortfolioPlayer() {
+        this(new PortfolioParams());
+    }
+
+    public PortfolioPlayer(PortfolioParams params) {
+        super(params, "Portfolio");
+        rnd = new Random(params.getRandomSeed());
+        addMember(new MCTS_UCB1_TunedPlayer(params.ucb1Tuned), params.ucb1TunedWeight);
+        addMember(new progressiveBiasPlayer(params.progressiveBias), params.progressiveBiasWeight);
+        addMember(new alphaAMAFPlayer(params.amaf), params.amafWeight);
+        if (members.isEmpty())
+            throw new IllegalArgumentException("Portfolio without members: every weight is 0");
+    }
+
+    private void addMember(AbstractPlayer member, double weight) {
+        if (weight > 0) {
+            members.add(member);
+            weights.add(weight);
+        }
+    }
+
+    @Override
+    public AbstractAction _getAction(AbstractGameState gameState, List<AbstractAction> actions) {
+        long start = System.nanoTime();
+        for (int i = 0; i < members.size(); i++) {
+            prepare(i);
+        }
+
+        // Every member but the first searches a copy of the state on the pool
+        List<Future<AbstractAction>> running = new ArrayList<>();
+        for (int i = 1; i < members.size(); i++) {
+            AbstractPlayer member = members.get(i);
+            AbstractGameState copy = gameState.copy();
+            running.add(POOL.submit(() -> member._getAction(copy, actions)));
+        }
+        AbstractAction first = members.get(0)._getAction(gameState, actions);
+        try {
+            for (Future<AbstractAction> member : running) {
+                member.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Portfolio member failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the portfolio searched", e);
+        }
+
+        // Weighted vote over the normalised root visits
+        Map<AbstractAction, Double> votes = new HashMap<>();
+        Map<AbstractAction, Integer> visits = new HashMap<>();
+        SearchStats stats = new SearchStats();
+        stats.allocatedBytes = 0;
+        for (int i = 0; i < members.size(); i++) {
+            ISearchReporter member = (ISearchReporter) members.get(i);
+            int total = 0;
+            for (int n : member.getRootVisits().values()) {
+                total += n;
+            }
+            for (Map.Entry<AbstractAction, Integer> entry : member.getRootVisits().entrySet()) {
+                votes.merge(entry.getKey(), weights.get(i) * entry.getValue() / total, Double::sum);
+                visits.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+            if (member.getSearchStats() != null)
+                stats.add(member.getSearchStats());
+        }
+        stats.searchNanos = System.nanoTime() - start;
+        lastRootVisits = visits;
+        lastStats = stats;
+
+        // Members that did not search (a forced move, or a deadline before the first iteration) leave no votes
+        AbstractAction best = first;
+        double bestVote = -1;
+        for (AbstractAction action : actions) {
+            double vote = votes.getOrDefault(action, 0.0);
+            if (vote > bestVote) {
+                bestVote = vote;
+                best = action;
+            }
+        }
+        return bestVote > 0 ? best : first;
+    }
+
+    /**
+     * Gives member i this player's id, forward model, budget and a seed of its own.
+     */
+    private void prepare(int i) {
+        AbstractPlayer member = members.get(i);
+        PlayerParameters params = member.getParameters();
+        member.setPlayerID(getPlayerID());
+        member.setForwardModel(getForwardModel());
+        params.budgetType = getParameters().budgetType;
+        params.budget = getParameters().budget;
+        params.setRandomSeed(getParameters().getRandomSeed() + i + 1);
+    }
+
+    @Override
+    public void initializePlayer(AbstractGameState gameState) {
+        for (AbstractPlayer member : members) {
+            member.initializePlayer(gameState);
+        }
+    }
+
+    @Override
+    public void finalizePlayer(AbstractGameState gameState) {
+        for (AbstractPlayer member : members) {
+            member.finalizePlayer(gameState);
+        }
+    }
+
+    @Override
+    public Map<AbstractAction, Integer> getRootVisits() {
+        return lastRootVisits;
+    }
+
+    @Override
+    public SearchStats getSearchStats() {
+        return lastStats;
+    }
+
+    @Override
+    public PortfolioParams getParameters() {
+        return (PortfolioParams) parameters;
+    }
+
+    @Override
+    public String toString() {
+        return "Portfolio";
+    }
+
+    @Override
+    public PortfolioPlayer copy() {
+        return this;
+    }
+}
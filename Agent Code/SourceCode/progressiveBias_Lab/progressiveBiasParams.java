@@ -3,13 +3,16 @@ package players.progressiveBias_Lab;
 import core.AbstractGameState;
 import core.interfaces.IStateHeuristic;
 import players.PlayerParameters;
+import players.searchCommon.BudgetManager;
+import players.searchCommon.IDecisionImportance;
+import players.searchCommon.IHardDeadline;
 
 import java.util.Arrays;
 
 
 
 
-public class progressiveBiasParams extends PlayerParameters {
+public class progressiveBiasParams extends PlayerParameters implements IHardDeadline {
 
 
     public double K = Math.sqrt(2);
@@ -17,6 +20,23 @@ public class progressiveBiasParams extends PlayerParameters {
     public int maxTreeDepth = 100; // effectively no limit
     public double epsilon = 1e-6;
     public IStateHeuristic heuristic = AbstractGameState::getHeuristicScore;
+    // Watchdog deadline of a search in milliseconds, whatever the budget; 0 for none
+    public int hardDeadlineMs = 0;
+    // Share of a core used to keep searching between decisions; 0 turns pondering off
+    public double ponderShare = 0.0;
+    // Longest time to ponder after a decision, in milliseconds; 0 for no limit
+    public int ponderMaxMs = 10000;
+    // Share the budget of a game out over its decisions by importance (see BudgetManager)
+    public boolean budgetScheduling = false;
+    // Budget for a whole game in budget units; 0 for the flat budget times the expected decisions
+    public int gameBudget = 0;
+    // Most a single decision may get, as a multiple of the flat budget
+    public double maxBudgetFactor = 3.0;
+    public IDecisionImportance importance = BudgetManager.FLAT;
+    // Iterations between checks whether the root choice is settled (see EarlyStop); 0 for none
+    public int earlyStopInterval = 0;
+    // Also stop when the leader's value is this many standard errors clear of the rest; 0 for none
+    public double earlyStopZ = 0.0;
 
     public progressiveBiasParams() {
         addTunableParameter("K", Math.sqrt(2), Arrays.asList(0.0, 0.1, 1.0, Math.sqrt(2), 3.0, 10.0));
@@ -24,6 +44,15 @@ public class progressiveBiasParams extends PlayerParameters {
         addTunableParameter("maxTreeDepth", 100, Arrays.asList(1, 3, 10, 30, 100));
         addTunableParameter("epsilon", 1e-6);
         addTunableParameter("heuristic", (IStateHeuristic) AbstractGameState::getHeuristicScore);
+        addTunableParameter("hardDeadlineMs", 0);
+        addTunableParameter("ponderShare", 0.0);
+        addTunableParameter("ponderMaxMs", 10000);
+        addTunableParameter("budgetScheduling", false);
+        addTunableParameter("gameBudget", 0);
+        addTunableParameter("maxBudgetFactor", 3.0);
+        addTunableParameter("importance", BudgetManager.FLAT);
+        addTunableParameter("earlyStopInterval", 0);
+        addTunableParameter("earlyStopZ", 0.0);
     }
 
     @Override
@@ -34,6 +63,25 @@ public class progressiveBiasParams extends PlayerParameters {
         maxTreeDepth = (int) getParameterValue("maxTreeDepth");
         epsilon = (double) getParameterValue("epsilon");
         heuristic = (IStateHeuristic) getParameterValue("heuristic");
+        hardDeadlineMs = (int) getParameterValue("hardDeadlineMs");
+        ponderShare = (double) getParameterValue("ponderShare");
+        ponderMaxMs = (int) getParameterValue("ponderMaxMs");
+        budgetScheduling = (boolean) getParameterValue("budgetScheduling");
+        gameBudget = (int) getParameterValue("gameBudget");
+        maxBudgetFactor = (double) getParameterValue("maxBudgetFactor");
+        importance = (IDecisionImportance) getParameterValue("importance");
+        earlyStopInterval = (int) getParameterValue("earlyStopInterval");
+        earlyStopZ = (double) getParameterValue("earlyStopZ");
+    }
+
+    @Override
+    public int getHardDeadlineMs() {
+        return hardDeadlineMs;
+    }
+
+    @Override
+    public void setHardDeadlineMs(int millis) {
+        hardDeadlineMs = millis;
     }
 
     @Override
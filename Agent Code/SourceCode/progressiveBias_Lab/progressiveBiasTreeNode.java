@@ -5,10 +5,17 @@ import core.AbstractGameState;
 import core.actions.AbstractAction;
 import games.sushigo.SushiGoHeuristic;
 import players.PlayerConstants;
+import players.searchCommon.EarlyStop;
+import players.searchCommon.Ponderer;
+import players.searchCommon.SearchDeadline;
+import players.searchCommon.SearchStats;
 import players.simple.RandomPlayer;
 import utilities.ElapsedCpuTimer;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -25,10 +32,12 @@ class progressiveBiasTreeNode {
     // Children of this node
     Map<AbstractAction, progressiveBiasTreeNode> children = new HashMap<>();
     // Depth of this node
-    final int depth;
+    int depth;
 
     // Total value of this node
     private double totValue;
+    // Total of squared values, for the early-stop confidence test
+    private double totValueSquared;
     // Number of visits
     private int nVisits;
     // Number of FM calls and State copies up until this node
@@ -36,7 +45,11 @@ class progressiveBiasTreeNode {
     // Parameters guiding the search
     private progressiveBiasPlayer player;
     private Random rnd;
-    private RandomPlayer randomPlayer = new RandomPlayer();
+    // Counters and timings of the search, shared by all nodes of the tree
+    SearchStats stats;
+    // Hard deadline of the search, held by the root
+    private SearchDeadline deadline = SearchDeadline.NONE;
+    private RandomPlayer randomPlayer;
 
     // State in this node (closed loop)
     private AbstractGameState state;
@@ -46,6 +59,7 @@ class progressiveBiasTreeNode {
         this.fmCallsCount = 0;
         this.parent = parent;
         this.root = parent == null ? this : parent.root;
+        this.stats = parent == null ? new SearchStats() : parent.stats;
         totValue = 0.0;
         setState(state);
         if (parent != null) {
@@ -53,7 +67,9 @@ class progressiveBiasTreeNode {
         } else {
             depth = 0;
         }
+        stats.nodeCreated(depth);
         this.rnd = rnd;
+        randomPlayer = new RandomPlayer(rnd);
         randomPlayer.setForwardModel(player.getForwardModel());
     }
 
@@ -61,8 +77,19 @@ class progressiveBiasTreeNode {
      * Performs full MCTS search, using the defined budget limits.
      */
     void mctsSearch() {
+        mctsSearch(player.getParameters().budget);
+    }
+
+    /**
+     * Performs full MCTS search with the given budget, in units of the budget type.
+     */
+    void mctsSearch(int budget) {
+        long searchStart = System.nanoTime();
+        long allocatedStart = SearchStats.threadAllocatedBytes();
 
         progressiveBiasParams params = player.getParameters();
+        deadline = SearchDeadline.start(params.hardDeadlineMs);
+        stats.budget = budget;
 
         // Variables for tracking time budget
         double avgTimeTaken;
@@ -71,26 +98,40 @@ class progressiveBiasTreeNode {
         int remainingLimit = params.breakMS;
         ElapsedCpuTimer elapsedTimer = new ElapsedCpuTimer();
         if (params.budgetType == BUDGET_TIME) {
-            elapsedTimer.setMaxTimeMillis(params.budget);
+            elapsedTimer.setMaxTimeMillis(budget);
         }
 
         // Tracking number of iterations for iteration budget
         int numIters = 0;
+        // A reused root has counted calls before this search
+        int fmCallsStart = fmCallsCount;
 
         boolean stop = false;
 
         while (!stop) {
+            // Past the hard deadline, keep what has been found so far
+            if (deadline.isExpired()) {
+                stats.deadlineExpired = true;
+                break;
+            }
             // New timer for this iteration
-            ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer();
+            ElapsedCpuTimer elapsedTimerIteration = params.budgetType == BUDGET_TIME ? new ElapsedCpuTimer() : null;
 
             // Selection + expansion: navigate tree until a node not fully expanded is found, add a new node to the tree
+            long phaseStart = System.nanoTime();
             progressiveBiasTreeNode selected = treePolicy();
+            long treePolicyEnd = System.nanoTime();
+            stats.treePolicyNanos += treePolicyEnd - phaseStart;
             // Monte carlo rollout: return value of MC rollout from the newly added node
             double delta = selected.rollOut();
+            long rolloutEnd = System.nanoTime();
+            stats.rolloutNanos += rolloutEnd - treePolicyEnd;
             // Back up the value of the rollout through the tree
             selected.backUp(delta);
+            stats.backupNanos += System.nanoTime() - rolloutEnd;
             // Finished iteration
             numIters++;
+            stats.iterations++;
 
             // Check stopping condition
             PlayerConstants budgetType = params.budgetType;
@@ -102,12 +143,27 @@ class progressiveBiasTreeNode {
                 stop = remaining <= 2 * avgTimeTaken || remaining <= remainingLimit;
             } else if (budgetType == BUDGET_ITERATIONS) {
                 // Iteration budget
-                stop = numIters >= params.budget;
+                stop = numIters >= budget;
             } else if (budgetType == BUDGET_FM_CALLS) {
                 // FM calls budget
-                stop = fmCallsCount > params.budget;
+                stop = fmCallsCount - fmCallsStart > budget;
+            }
+
+            // Every earlyStopInterval iterations, stop once the choice at the root cannot change
+            if (!stop && params.earlyStopInterval > 0 && numIters % params.earlyStopInterval == 0
+                    && rootSettled(EarlyStop.remainingIterations(budgetType, budget, numIters,
+                    fmCallsCount - fmCallsStart, System.nanoTime() - searchStart), params.earlyStopZ)) {
+                stats.stoppedEarly = true;
+                stop = true;
             }
         }
+        deadline.cancel();
+        stats.searchNanos = System.nanoTime() - searchStart;
+        stats.budgetUsed = params.budgetType == BUDGET_ITERATIONS ? numIters
+                : params.budgetType == BUDGET_FM_CALLS ? fmCallsCount - fmCallsStart
+                : (int) (stats.searchNanos / 1_000_000);
+        if (allocatedStart >= 0)
+            stats.allocatedBytes = SearchStats.threadAllocatedBytes() - allocatedStart;
     }
 
     /**
@@ -123,7 +179,7 @@ class progressiveBiasTreeNode {
 
         // Keep iterating while the state reached is not terminal and the depth of the tree is not exceeded
         while (cur.state.isNotTerminal() && cur.depth < player.getParameters().maxTreeDepth) {
-            if (!cur.unexpandedActions().isEmpty()) {
+            if (cur.hasUnexpandedActions()) {
                 // We have an unexpanded action
                 cur = cur.expand();
                 return cur;
@@ -153,26 +209,41 @@ class progressiveBiasTreeNode {
         return children.keySet().stream().filter(a -> children.get(a) == null).collect(toList());
     }
 
+    /**
+     * Allocation-free check used on every step of the tree policy.
+     *
+     * @return true if at least one action from this State has not been expanded yet
+     */
+    private boolean hasUnexpandedActions() {
+        for (progressiveBiasTreeNode child : children.values()) {
+            if (child == null)
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Expands the node by creating a new random child node and adding to the tree.
      *
      * @return - new child node.
      */
     private progressiveBiasTreeNode expand() {
+        long expandStart = System.nanoTime();
         // Find random child not already created
-        Random r = new Random(player.getParameters().getRandomSeed());
         // pick a random unchosen action
         List<AbstractAction> notChosen = unexpandedActions();
-        AbstractAction chosen = notChosen.get(r.nextInt(notChosen.size()));
+        AbstractAction chosen = notChosen.get(rnd.nextInt(notChosen.size()));
 
         // copy the current state and advance it using the chosen action
         // we first copy the action so that the one stored in the node will not have any state changes
         AbstractGameState nextState = state.copy();
+        stats.stateCopies++;
         advance(nextState, chosen.copy());
 
         // then instantiate a new node
         progressiveBiasTreeNode tn = new progressiveBiasTreeNode(player, this, nextState, rnd);
         children.put(chosen, tn);
+        stats.expansionNanos += System.nanoTime() - expandStart;
         return tn;
     }
 
@@ -184,10 +255,11 @@ class progressiveBiasTreeNode {
      */
     private void advance(AbstractGameState gs, AbstractAction act) {
         player.getForwardModel().next(gs, act);
+        stats.fmCalls++;
         root.fmCallsCount++;
     }
 
-    private AbstractAction ucb() {
+    AbstractAction ucb() {
         AbstractAction bestAction = null;
         double bestValue = -Double.MAX_VALUE;
         progressiveBiasParams params = player.getParameters();
@@ -227,12 +299,15 @@ class progressiveBiasTreeNode {
     }
 
 
-    private double rollOut() {
+    double rollOut() {
         int rolloutDepth = 0; // counting from end of tree
 
         // If rollouts are enabled, select actions for the rollout in line with the rollout policy
-        AbstractGameState rolloutState = state.copy();
-        if (player.getParameters().rolloutLength > 0) {
+        // The heuristic only reads the state, so the copy is only needed when the rollout will advance it
+        AbstractGameState rolloutState = state;
+        if (player.getParameters().rolloutLength > 0 && state.isNotTerminal()) {
+            rolloutState = state.copy();
+            stats.stateCopies++;
             while (!finishRollout(rolloutState, rolloutDepth)) {
                 AbstractAction next = randomPlayer.getAction(rolloutState, randomPlayer.getForwardModel().computeAvailableActions(rolloutState, randomPlayer.parameters.actionSpace));
                 advance(rolloutState, next);
@@ -241,6 +316,7 @@ class progressiveBiasTreeNode {
         }
         // Evaluate final state and return normalised score
         double value = player.getParameters().getHeuristic().evaluateState(rolloutState, player.getPlayerID());
+        stats.heuristicEvals++;
         if (Double.isNaN(value))
             throw new AssertionError("Illegal heuristic value - should be a number");
         return value;
@@ -260,6 +336,8 @@ class progressiveBiasTreeNode {
      * @return - true if rollout finished, false otherwise
      */
     private boolean finishRollout(AbstractGameState rollerState, int depth) {
+        if (root.deadline.isExpired())
+            return true;
         if (depth >= player.getParameters().rolloutLength)
             return true;
 
@@ -272,11 +350,12 @@ class progressiveBiasTreeNode {
      *
      * @param result - value of rollout to backup
      */
-    private void backUp(double result) {
+    void backUp(double result) {
         progressiveBiasTreeNode n = this;
         while (n != null) {
             n.nVisits++;
             n.totValue += result;
+            n.totValueSquared += result * result;
             n = n.parent;
         }
     }
@@ -314,4 +393,126 @@ class progressiveBiasTreeNode {
         return bestAction;
     }
 
+    /**
+     * @param remainingIterations Iterations the budget is likely to allow still.
+     * @param z Standard errors for the confidence test; 0 to only test visits.
+     * @return Whether bestAction() is settled: the most visited child cannot be overtaken in the
+     * remaining iterations, or with z above 0, every child is expanded and its value interval lies
+     * below the leader's.
+     */
+    boolean rootSettled(double remainingIterations, double z) {
+        progressiveBiasTreeNode leader = null, runnerUp = null;
+        boolean expanded = true;
+        for (progressiveBiasTreeNode child : children.values()) {
+            if (child == null) {
+                expanded = false;
+            } else if (leader == null || child.nVisits > leader.nVisits) {
+                runnerUp = leader;
+                leader = child;
+            } else if (runnerUp == null || child.nVisits > runnerUp.nVisits) {
+                runnerUp = child;
+            }
+        }
+        if (leader == null)
+            return false;
+        if (EarlyStop.cannotOvertake(leader.nVisits, runnerUp == null ? 0 : runnerUp.nVisits, remainingIterations))
+            return true;
+        if (z <= 0 || !expanded)
+            return false;
+        for (progressiveBiasTreeNode child : children.values()) {
+            if (child != leader && !EarlyStop.separated(leader.totValue, leader.totValueSquared, leader.nVisits,
+                    child.totValue, child.totValueSquared, child.nVisits, z))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param actual What the player sees at the end of the actions.
+     * @return The node reached from this one by the given actions; null if actions is null, the
+     * tree has not tried them, a new round has begun since this node, or the node's state does not
+     * match actual (see Ponderer.sameObservation).
+     */
+    progressiveBiasTreeNode descendant(List<AbstractAction> actions, AbstractGameState actual) {
+        // The tree dealt the next round at random
+        if (actions == null || state.getRoundCounter() != actual.getRoundCounter())
+            return null;
+        progressiveBiasTreeNode node = this;
+        for (AbstractAction action : actions) {
+            node = node.children.get(action);
+            if (node == null)
+                return null;
+        }
+        return Ponderer.sameObservation(node.state, actual, player.getPlayerID()) ? node : null;
+    }
+
+    /**
+     * Cuts this node from its parent so the next search can carry on from it with what the tree
+     * already knows: the subtree keeps its visits and values, and gets fresh statistics and the
+     * new decision's random numbers.
+     *
+     * @param newState The state the player now sees, with the children brought in line with its
+     *                 available actions; null to keep the node's own state.
+     * @return This node, now a root.
+     */
+    progressiveBiasTreeNode rootify(AbstractGameState newState, Random rnd) {
+        if (newState != null) {
+            state = newState;
+            Map<AbstractAction, progressiveBiasTreeNode> available = new HashMap<>();
+            for (AbstractAction action : player.getForwardModel().computeAvailableActions(state, player.getParameters().actionSpace)) {
+                available.put(action, children.get(action));
+            }
+            children = available;
+        }
+        parent = null;
+        // The selection terms take ratios and logs of this count, so it goes on from the subtree's visits
+        fmCallsCount = nVisits;
+        SearchStats fresh = new SearchStats();
+        fresh.reusedVisits = nVisits;
+        int shift = depth;
+        Deque<progressiveBiasTreeNode> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            progressiveBiasTreeNode node = pending.pop();
+            node.root = this;
+            node.depth -= shift;
+            node.stats = fresh;
+            node.rnd = rnd;
+            node.randomPlayer = new RandomPlayer(rnd);
+            node.randomPlayer.setForwardModel(player.getForwardModel());
+            fresh.nodeCreated(node.depth);
+            for (progressiveBiasTreeNode child : node.children.values()) {
+                if (child != null)
+                    pending.push(child);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Keeps searching from this root on the ponderer's thread until it is stopped, or for maxMillis.
+     */
+    void ponder(Ponderer ponderer, double cpuShare, long maxMillis) {
+        if (!state.isNotTerminal())
+            return;
+        deadline = SearchDeadline.stoppable(maxMillis);
+        ponderer.start(deadline, () -> {
+            progressiveBiasTreeNode selected = treePolicy();
+            double delta = selected.rollOut();
+            selected.backUp(delta);
+        }, cpuShare);
+    }
+
+    /**
+     * @return Visit count of each expanded child, keyed by the action leading to it
+     */
+    Map<AbstractAction, Integer> childVisits() {
+        Map<AbstractAction, Integer> visits = new LinkedHashMap<>();
+        for (Map.Entry<AbstractAction, progressiveBiasTreeNode> entry : children.entrySet()) {
+            if (entry.getValue() != null)
+                visits.put(entry.getKey(), entry.getValue().nVisits);
+        }
+        return visits;
+    }
+
 }
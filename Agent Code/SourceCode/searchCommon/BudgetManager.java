@@ -0,0 +1,88 @@
+package players.searchCommon;
+
+import core.AbstractGameState;
+import core.actions.AbstractAction;
+
+import java.util.List;
+
+
+/**
+ * Shares a player's search budget for a whole game out over its decisions. Forced moves and
+ * choices between equivalent actions get no search at all. Each remaining decision gets a share
+ * of what is left in proportion to its importance, assuming the decisions still to come weigh as
+ * much as those seen so far. A decision gets at most maxFactor times the flat budget, and the
+ * budget given out in a game never exceeds the game budget.
+ *
+ * The budget is in the units of the player's budget type (ms, iterations or FM calls). Without a
+ * game budget, the game gets the flat budget times the number of decisions it is expected to
+ * have, so the player spends no more in total than with a flat budget. If the importance cannot
+ * count the decisions either, as with FLAT, each decision gets the flat budget times its weight
+ * and nothing is tracked across the game.
+ */
+public class BudgetManager {
+
+    /**
+     * Weighs every decision alike, so only moves with a single option are skipped.
+     */
+    public static final IDecisionImportance FLAT = (state, actions, playerId) -> actions.size() > 1 ? 1.0 : 0.0;
+
+    // Budget left for the rest of the game; -1 before the first decision
+    private long remaining = -1;
+    private int decisions;
+    private double totalWeight;
+
+    /**
+     * Forgets the current game.
+     */
+    public void newGame() {
+        remaining = -1;
+        decisions = 0;
+        totalWeight = 0;
+    }
+
+    /**
+     * @param budget The flat budget per decision.
+     * @param gameBudget Budget for the whole game; 0 for the flat budget times the expected decisions.
+     * @param maxFactor Largest multiple of the flat budget a single decision may get.
+     * @return The budget for this decision, 0 if it should be played without searching.
+     */
+    public int allocate(IDecisionImportance importance, AbstractGameState state, List<AbstractAction> actions,
+                        int playerId, int budget, long gameBudget, double maxFactor) {
+        if (actions.size() <= 1)
+            return 0;
+        double weight = importance.importance(state, actions, playerId);
+        if (weight <= 0)
+            return 0;
+        int left = importance.decisionsLeft(state, playerId);
+        if (left <= 0 && gameBudget <= 0 && remaining < 0) {
+            // Without a game budget or a count of the decisions to come there is nothing to share out
+            return (int) Math.max(1, Math.round(Math.min(budget * weight, budget * maxFactor)));
+        }
+        if (remaining < 0)
+            remaining = gameBudget > 0 ? gameBudget : (long) budget * Math.max(left, 1);
+
+        // Decisions to come are assumed to weigh the average so far, or 1 before there is one
+        double meanWeight = decisions == 0 ? 1.0 : totalWeight / decisions;
+        decisions++;
+        totalWeight += weight;
+        double share = left > 1 ? remaining * weight / (weight + (left - 1) * meanWeight) : budget * weight;
+        long allocated = Math.min(remaining, Math.max(1, Math.round(Math.min(share, budget * maxFactor))));
+        remaining -= allocated;
+        return (int) allocated;
+    }
+
+    /**
+     * Gives back budget a decision was allocated but did not use, e.g. after stopping early.
+     */
+    public void refund(long unused) {
+        if (remaining >= 0 && unused > 0)
+            remaining += unused;
+    }
+
+    /**
+     * @return Budget left for the rest of the game, -1 before its first decision.
+     */
+    public long getRemaining() {
+        return remaining;
+    }
+}
@@ -0,0 +1,36 @@
+package players.searchCommon;
+
+import core.AbstractGameState;
+
+
+/**
+ * Seeds for the random numbers of one search. Each decision gets its own seed, mixed from the
+ * player's seed and the point of the game (round, turn and acting player), so a decision does not
+ * depend on how many random numbers earlier decisions drew. A decision can then be re-run on its
+ * own from the game seed, the actions played before it and the player's seed (see DecisionReplay).
+ */
+public class DecisionSeeds {
+
+    /**
+     * @param playerSeed The player's random seed, from its parameters.
+     * @param state The state the decision is made from.
+     * @param playerId The deciding player.
+     * @return The seed of this decision's search.
+     */
+    public static long decisionSeed(long playerSeed, AbstractGameState state, int playerId) {
+        long h = mix(playerSeed);
+        h = mix(h ^ state.getRoundCounter());
+        h = mix(h ^ state.getTurnCounter());
+        return mix(h ^ playerId);
+    }
+
+    /**
+     * SplitMix64 finaliser: spreads every input bit over the whole result.
+     */
+    static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,59 @@
+package players.searchCommon;
+
+import players.PlayerConstants;
+
+
+/**
+ * Tests for stopping a search before its budget is spent, once the action it will choose is
+ * settled. The players choose the most visited root child, so the search can stop when the leader
+ * would keep the most visits even if every remaining iteration went to the runner-up. Optionally
+ * it can also stop when the leader's confidence interval on its value lies above every other
+ * child's, which usually comes much sooner but is only a statistical guarantee.
+ */
+public class EarlyStop {
+
+    /**
+     * @param budgetType The search's budget type.
+     * @param budget The search's budget.
+     * @param iterations Iterations done so far.
+     * @param budgetUsed FM calls counted so far, for BUDGET_FM_CALLS.
+     * @param elapsedNanos Time since the search started, for BUDGET_TIME.
+     * @return Iterations the remaining budget is likely to allow, at the rate so far.
+     */
+    public static double remainingIterations(PlayerConstants budgetType, int budget, int iterations,
+                                             int budgetUsed, long elapsedNanos) {
+        switch (budgetType) {
+            case BUDGET_ITERATIONS:
+                return budget - iterations;
+            case BUDGET_FM_CALLS:
+                return budgetUsed == 0 ? Double.MAX_VALUE : (budget - budgetUsed) * (double) iterations / budgetUsed;
+            case BUDGET_TIME:
+                return elapsedNanos == 0 ? Double.MAX_VALUE : (budget * 1e6 - elapsedNanos) * iterations / elapsedNanos;
+            default:
+                return Double.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return Whether the leader stays most visited even if the runner-up gets every remaining iteration.
+     */
+    public static boolean cannotOvertake(int leaderVisits, int runnerUpVisits, double remainingIterations) {
+        return leaderVisits - runnerUpVisits > remainingIterations;
+    }
+
+    /**
+     * Compares mean ± z standard errors of two children's backed-up values.
+     *
+     * @return Whether the leader's lower bound lies above the other child's upper bound.
+     */
+    public static boolean separated(double leaderTotal, double leaderSquares, int leaderVisits,
+                                    double otherTotal, double otherSquares, int otherVisits, double z) {
+        if (leaderVisits < 2 || otherVisits < 2)
+            return false;
+        double leaderMean = leaderTotal / leaderVisits;
+        double otherMean = otherTotal / otherVisits;
+        double leaderError = Math.sqrt(Math.max(leaderSquares / leaderVisits - leaderMean * leaderMean, 0) / leaderVisits);
+        double otherError = Math.sqrt(Math.max(otherSquares / otherVisits - otherMean * otherMean, 0) / otherVisits);
+        return leaderMean - z * leaderError > otherMean + z * otherError;
+    }
+}
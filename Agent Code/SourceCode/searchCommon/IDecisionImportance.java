@@ -0,0 +1,31 @@
+package players.searchCommon;
+
+import core.AbstractGameState;
+import core.actions.AbstractAction;
+
+import java.util.List;
+
+
+/**
+ * Tells a BudgetManager how much one decision matters, so that search time can be moved from
+ * trivial decisions to key ones. Implementations are game-specific; see SushiGoDecisionImportance.
+ */
+public interface IDecisionImportance {
+
+    /**
+     * @param state The state the decision is made from.
+     * @param actions The available actions.
+     * @param playerId The deciding player.
+     * @return Weight of the decision, where 1 is an ordinary one; 0 if the choice makes no
+     * difference and needs no search.
+     */
+    double importance(AbstractGameState state, List<AbstractAction> actions, int playerId);
+
+    /**
+     * @return Decisions with more than one option the player still has to make in this game,
+     * counting this one; 0 if it cannot tell.
+     */
+    default int decisionsLeft(AbstractGameState state, int playerId) {
+        return 0;
+    }
+}
@@ -0,0 +1,27 @@
+package players.searchCommon;
+
+
+/**
+ * Parameters of a search that can stop at a hard deadline (see SearchDeadline), so that a caller
+ * with its own time limit per move, such as a move server, can tighten it for one decision and
+ * restore it afterwards.
+ */
+public interface IHardDeadline {
+
+    /**
+     * @return The deadline of a search in milliseconds, 0 for none.
+     */
+    int getHardDeadlineMs();
+
+    void setHardDeadlineMs(int millis);
+
+    /**
+     * Lowers the deadline to at most millis for the searches that follow.
+     * @return Puts back the deadline configured before the call.
+     */
+    default Runnable limitHardDeadlineMs(int millis) {
+        int configured = getHardDeadlineMs();
+        setHardDeadlineMs(configured > 0 ? Math.min(configured, millis) : millis);
+        return () -> setHardDeadlineMs(configured);
+    }
+}
@@ -0,0 +1,23 @@
+package players.searchCommon;
+
+import core.actions.AbstractAction;
+
+import java.util.Map;
+
+
+/**
+ * Implemented by the tree-search players so that tools outside the search (self-play recording,
+ * tournaments, listeners) can see what the last decision was based on.
+ */
+public interface ISearchReporter {
+
+    /**
+     * @return Visit count of every expanded root action of the last completed search, empty before the first.
+     */
+    Map<AbstractAction, Integer> getRootVisits();
+
+    /**
+     * @return Counters and phase timings of the last completed search, or null before the first.
+     */
+    SearchStats getSearchStats();
+}
@@ -0,0 +1,166 @@
+package players.searchCommon;
+
+import core.AbstractGameState;
+import core.actions.AbstractAction;
+import core.components.Deck;
+import games.sushigo.SGGameState;
+import games.sushigo.cards.SGCard;
+import games.sushigo.cards.SGCard.SGCardType;
+import utilities.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Keeps growing a player's tree on a background thread between its decisions, while the other
+ * players think. Iterations run in short slices with a pause after each, sized so the thread takes
+ * about cpuShare of one core. Pondering ends when stop() is called, normally at the start of the
+ * player's next decision, or when its deadline expires.
+ *
+ * Only one thread uses the tree at a time: stop() waits for the current iteration to finish, so
+ * the tree can be searched on from the calling thread as soon as it returns. The iteration should
+ * watch the same deadline in its rollouts, as the MCTS nodes do, so that it finishes quickly.
+ */
+public class Ponderer {
+
+    // Busy time between two pauses
+    private static final long SLICE_NANOS = 5_000_000;
+
+    private final String name;
+    private Thread thread;
+    private SearchDeadline deadline;
+    private int iterations;
+    private Throwable failure;
+
+    /**
+     * @param name Name of the pondering thread.
+     */
+    public Ponderer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Starts pondering, stopping any earlier pondering first.
+     * @param deadline Ends pondering when it expires; stop() expires it.
+     * @param iteration One search iteration.
+     * @param cpuShare Share of one core to use, from 0 (exclusive) to 1.
+     */
+    public synchronized void start(SearchDeadline deadline, Runnable iteration, double cpuShare) {
+        if (cpuShare <= 0)
+            throw new IllegalArgumentException("cpuShare must be positive: " + cpuShare);
+        stop();
+        this.deadline = deadline;
+        iterations = 0;
+        failure = null;
+        thread = new Thread(() -> run(deadline, iteration, Math.min(cpuShare, 1.0)), name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(SearchDeadline deadline, Runnable iteration, double cpuShare) {
+        try {
+            long sliceStart = System.nanoTime();
+            while (!deadline.isExpired()) {
+                iteration.run();
+                iterations++;
+                long busy = System.nanoTime() - sliceStart;
+                if (busy >= SLICE_NANOS && cpuShare < 1) {
+                    // stop() unparks the thread, so a pause never delays it
+                    LockSupport.parkNanos(this, (long) (busy * (1 - cpuShare) / cpuShare));
+                    sliceStart = System.nanoTime();
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+        }
+    }
+
+    /**
+     * Stops pondering and waits for the thread to finish.
+     * @return Iterations run since the last start(), 0 if not pondering.
+     */
+    public synchronized int stop() {
+        if (thread == null)
+            return 0;
+        deadline.expire();
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        thread = null;
+        if (failure != null)
+            throw new IllegalStateException("Pondering failed", failure);
+        return iterations;
+    }
+
+    /**
+     * @param historyLength Length of the game history when pondering started.
+     * @return The actions played since then, to find the current state in the pondered tree; null
+     * if the history is shorter, as in a new game.
+     */
+    public static List<AbstractAction> actionsSince(AbstractGameState state, int historyLength) {
+        List<Pair<Integer, AbstractAction>> history = state.getHistory();
+        if (history.size() < historyLength)
+            return null;
+        List<AbstractAction> actions = new ArrayList<>();
+        for (int i = historyLength; i < history.size(); i++) {
+            actions.add(history.get(i).b);
+        }
+        return actions;
+    }
+
+    /**
+     * Whether a node reached by actionsSince() stands for the position the player now sees. The
+     * actions only name moves by hand index, and the pondered tree was grown from a guess at the
+     * hidden cards, so the same actions can lead somewhere else: an opponent's card at that index
+     * was not the one played, or a new round dealt other hands.
+     *
+     * In Sushi Go the node matches if it is in the same round and the player's hand, every
+     * player's cards on the table, the cards kept all game and the scores are the same. In other
+     * games the states must be equal.
+     *
+     * @param pondered State of the node in the pondered tree.
+     * @param actual The player's observation now.
+     */
+    public static boolean sameObservation(AbstractGameState pondered, AbstractGameState actual, int playerId) {
+        if (!(pondered instanceof SGGameState) || !(actual instanceof SGGameState))
+            return pondered.equals(actual);
+        SGGameState a = (SGGameState) pondered, b = (SGGameState) actual;
+        if (a.getRoundCounter() != b.getRoundCounter() || a.getNPlayers() != b.getNPlayers()
+                || !sameCards(a.getPlayerHands().get(playerId), b.getPlayerHands().get(playerId)))
+            return false;
+        for (int p = 0; p < a.getNPlayers(); p++) {
+            if (!sameCards(a.getPlayedCards().get(p), b.getPlayedCards().get(p))
+                    || a.getPlayerScore()[p].getValue() != b.getPlayerScore()[p].getValue())
+                return false;
+            for (SGCardType type : SGCardType.values()) {
+                if (a.getPlayedCardTypesAllGame()[p].get(type).getValue() != b.getPlayedCardTypesAllGame()[p].get(type).getValue())
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameCards(Deck<SGCard> a, Deck<SGCard> b) {
+        if (a.getSize() != b.getSize())
+            return false;
+        for (int i = 0; i < a.getSize(); i++) {
+            if (a.get(i).type != b.get(i).type || a.get(i).count != b.get(i).count)
+                return false;
+        }
+        return true;
+    }
+
+    public synchronized boolean isPondering() {
+        return thread != null && !deadline.isExpired();
+    }
+}
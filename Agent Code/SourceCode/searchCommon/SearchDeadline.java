@@ -0,0 +1,75 @@
+package players.searchCommon;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A hard deadline for one search. A shared watchdog thread sets a volatile flag when the time is
+ * up; the search reads the flag between iterations and on every rollout step, which costs one
+ * volatile read, and stops as soon as it sees it. The search then returns the best action found so
+ * far, so it overruns the deadline by at most one tree-policy descent and one forward model call.
+ */
+public class SearchDeadline {
+
+    // A deadline that never expires, for searches without one
+    public static final SearchDeadline NONE = new SearchDeadline();
+
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "SearchWatchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        WATCHDOG.setRemoveOnCancelPolicy(true);
+    }
+
+    private volatile boolean expired;
+    private ScheduledFuture<?> timer;
+
+    private SearchDeadline() {
+    }
+
+    /**
+     * @param millis Time the search may take; 0 or less for no deadline.
+     * @return A running deadline, or NONE.
+     */
+    public static SearchDeadline start(long millis) {
+        return millis <= 0 ? NONE : stoppable(millis);
+    }
+
+    /**
+     * @param millis Time the search may take; 0 or less for no limit.
+     * @return A running deadline that can also be ended early with expire().
+     */
+    public static SearchDeadline stoppable(long millis) {
+        SearchDeadline deadline = new SearchDeadline();
+        if (millis > 0)
+            deadline.timer = WATCHDOG.schedule(() -> deadline.expired = true, millis, TimeUnit.MILLISECONDS);
+        return deadline;
+    }
+
+    public boolean isExpired() {
+        return expired;
+    }
+
+    /**
+     * Ends the search now, from any thread.
+     */
+    public void expire() {
+        if (this == NONE)
+            throw new IllegalStateException("NONE never expires");
+        expired = true;
+        cancel();
+    }
+
+    /**
+     * Stops the watchdog timer of a search that finished in time.
+     */
+    public void cancel() {
+        if (timer != null)
+            timer.cancel(false);
+    }
+}
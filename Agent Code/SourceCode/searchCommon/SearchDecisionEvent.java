@@ -0,0 +1,95 @@
+package players.searchCommon;
+
+import core.AbstractPlayer;
+import core.actions.AbstractAction;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import players.PlayerParameters;
+
+
+/**
+ * Java Flight Recorder event covering one search decision, so that search latency can be lined up
+ * with GC and allocation in JDK Mission Control. The event's duration is the whole _getAction call.
+ * While no recording has the event enabled, begin() and report() cost next to nothing and the
+ * fields are not filled in.
+ */
+@Name("tag.search.Decision")
+@Label("Search Decision")
+@Category({"TAG", "Search"})
+@Description("One _getAction call of a tree-search player")
+public class SearchDecisionEvent extends Event {
+
+    @Label("Player")
+    public String player;
+
+    @Label("Player ID")
+    public int playerId;
+
+    @Label("Budget Type")
+    public String budgetType;
+
+    @Label("Budget")
+    @Description("Budget the search was given; 0 for a move played without searching")
+    public int budget;
+
+    @Label("Iterations")
+    public int iterations;
+
+    @Label("FM Calls")
+    @Description("Real ForwardModel.next() calls")
+    public long fmCalls;
+
+    @Label("State Copies")
+    public long stateCopies;
+
+    @Label("Heuristic Evaluations")
+    public long heuristicEvals;
+
+    @Label("Tree Size")
+    @Description("Nodes in the search tree")
+    public int treeSize;
+
+    @Label("Max Depth")
+    public int maxDepth;
+
+    @Label("Rollout Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long rolloutNanos;
+
+    @Label("Deadline Expired")
+    public boolean deadlineExpired;
+
+    @Label("Chosen Action")
+    public String chosenAction;
+
+    /**
+     * Fills in the fields and commits the event, if a recording wants it.
+     * @param agent The deciding player.
+     * @param params Its parameters.
+     * @param stats Statistics of the search.
+     * @param chosen The action returned.
+     */
+    public void report(AbstractPlayer agent, PlayerParameters params, SearchStats stats, AbstractAction chosen) {
+        end();
+        if (!shouldCommit())
+            return;
+        player = agent.toString();
+        playerId = agent.getPlayerID();
+        budgetType = String.valueOf(params.budgetType);
+        budget = stats.budget;
+        iterations = stats.iterations;
+        fmCalls = stats.fmCalls;
+        stateCopies = stats.stateCopies;
+        heuristicEvals = stats.heuristicEvals;
+        treeSize = stats.nodesCreated;
+        maxDepth = stats.maxDepth;
+        rolloutNanos = stats.rolloutNanos;
+        deadlineExpired = stats.deadlineExpired;
+        chosenAction = String.valueOf(chosen);
+        commit();
+    }
+}
@@ -0,0 +1,170 @@
+package players.searchCommon;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+
+/**
+ * Counters and phase timings of one search, filled in by the tree nodes as they work. The budget
+ * counter the nodes use (fmCallsCount) also counts selection steps; here forward model calls,
+ * state copies and heuristic evaluations are counted apart. The counters are plain fields bumped
+ * from the single search thread, and the timings take one System.nanoTime() per phase boundary,
+ * so they are cheap enough to leave on.
+ */
+public class SearchStats {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // Budget the search was given, in units of the budget type; 0 for a move played without searching
+    public int budget;
+    // Part of the budget the search used, and whether it stopped early because the choice was settled
+    public int budgetUsed;
+    public boolean stoppedEarly;
+    public int iterations;
+    // Real ForwardModel.next() calls, in expansion and rollouts
+    public long fmCalls;
+    // Full state copies, one per expansion and one per rollout that plays moves
+    public long stateCopies;
+    public long heuristicEvals;
+    public int nodesCreated;
+    public int maxDepth;
+    // Nodes created at each depth
+    private int[] depthCounts = new int[8];
+
+    // Time spent in the tree policy (selection and expansion), in expansion alone, in rollouts and in backups
+    public long treePolicyNanos;
+    public long expansionNanos;
+    public long rolloutNanos;
+    public long backupNanos;
+    // Wall-clock time of the whole search
+    public long searchNanos;
+    // Heap allocated by the search thread during the search; -1 if the JVM cannot tell
+    public long allocatedBytes = -1;
+    // Whether the search was stopped by its hard deadline
+    public boolean deadlineExpired;
+    // Visits of the root carried over from the last decision's tree, and the pondering iterations among them
+    public int reusedVisits;
+    public int ponderIterations;
+
+    /**
+     * Records a node entering the tree.
+     * @param depth Its depth, 0 for the root.
+     */
+    public void nodeCreated(int depth) {
+        nodesCreated++;
+        if (depth > maxDepth)
+            maxDepth = depth;
+        if (depth >= depthCounts.length)
+            depthCounts = Arrays.copyOf(depthCounts, Math.max(depth + 1, 2 * depthCounts.length));
+        depthCounts[depth]++;
+    }
+
+    /**
+     * Adds the counters of another search to these, for a player that runs several searches for
+     * one decision. Times are summed too, so searchNanos becomes the total over all searches.
+     */
+    public void add(SearchStats other) {
+        budget += other.budget;
+        budgetUsed += other.budgetUsed;
+        iterations += other.iterations;
+        fmCalls += other.fmCalls;
+        stateCopies += other.stateCopies;
+        heuristicEvals += other.heuristicEvals;
+        nodesCreated += other.nodesCreated;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        if (other.depthCounts.length > depthCounts.length)
+            depthCounts = Arrays.copyOf(depthCounts, other.depthCounts.length);
+        for (int d = 0; d < other.depthCounts.length; d++) {
+            depthCounts[d] += other.depthCounts[d];
+        }
+        treePolicyNanos += other.treePolicyNanos;
+        expansionNanos += other.expansionNanos;
+        rolloutNanos += other.rolloutNanos;
+        backupNanos += other.backupNanos;
+        searchNanos += other.searchNanos;
+        allocatedBytes = allocatedBytes < 0 || other.allocatedBytes < 0 ? -1 : allocatedBytes + other.allocatedBytes;
+        deadlineExpired |= other.deadlineExpired;
+        reusedVisits += other.reusedVisits;
+        ponderIterations += other.ponderIterations;
+        stoppedEarly |= other.stoppedEarly;
+    }
+
+    /**
+     * @return Number of nodes at each depth from 0 to maxDepth.
+     */
+    public int[] getDepthHistogram() {
+        return Arrays.copyOf(depthCounts, maxDepth + 1);
+    }
+
+    public double getMeanDepth() {
+        long total = 0;
+        for (int d = 0; d <= maxDepth && d < depthCounts.length; d++) {
+            total += (long) d * depthCounts[d];
+        }
+        return nodesCreated == 0 ? 0 : (double) total / nodesCreated;
+    }
+
+    /**
+     * The effective branching factor b: a uniform tree of depth maxDepth with branching b would
+     * have as many nodes as this one, i.e. 1 + b + b^2 + ... + b^maxDepth = nodesCreated.
+     * @return b, found by bisection; 0 for a tree that is only a root.
+     */
+    public double getEffectiveBranchingFactor() {
+        if (maxDepth == 0 || nodesCreated <= 1)
+            return 0;
+        double lo = 0, hi = nodesCreated;
+        for (int i = 0; i < 60; i++) {
+            double b = (lo + hi) / 2;
+            double nodes = 0, level = 1;
+            for (int d = 0; d <= maxDepth && nodes <= nodesCreated; d++) {
+                nodes += level;
+                level *= b;
+            }
+            if (nodes > nodesCreated)
+                hi = b;
+            else
+                lo = b;
+        }
+        return (lo + hi) / 2;
+    }
+
+    public double getNodesPerSecond() {
+        return searchNanos == 0 ? 0 : nodesCreated * 1e9 / searchNanos;
+    }
+
+    /**
+     * @return Bytes allocated so far by the calling thread, or -1 if the JVM does not measure it.
+     */
+    @SuppressWarnings("deprecation")
+    public static long threadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    public long getSelectionNanos() {
+        return treePolicyNanos - expansionNanos;
+    }
+
+    /**
+     * @return Heap allocated per iteration, or -1 if the JVM cannot tell. This is mostly the state
+     * copy and node of each expansion, plus the state copy of each rollout when rolloutLength is above 0.
+     */
+    public double getAllocatedBytesPerIteration() {
+        return allocatedBytes < 0 || iterations == 0 ? -1 : (double) allocatedBytes / iterations;
+    }
+
+    public double getIterationsPerSecond() {
+        return searchNanos == 0 ? 0 : iterations * 1e9 / searchNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d iterations, %d FM calls, %d copies, %d heuristic evals, %d nodes, depth %d; " +
+                        "selection %.2fms, expansion %.2fms, rollout %.2fms, backup %.2fms, total %.2fms; %.0f bytes/iteration",
+                iterations, fmCalls, stateCopies, heuristicEvals, nodesCreated, maxDepth,
+                getSelectionNanos() / 1e6, expansionNanos / 1e6, rolloutNanos / 1e6, backupNanos / 1e6, searchNanos / 1e6,
+                getAllocatedBytesPerIteration());
+    }
+}
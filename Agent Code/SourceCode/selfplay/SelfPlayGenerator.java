@@ -0,0 +1,119 @@
+package evaluation.selfplay;
+
+import core.AbstractGameState;
+import core.AbstractPlayer;
+import core.actions.AbstractAction;
+import evaluation.experiments.AgentSpec;
+import evaluation.experiments.GameOutcome;
+import evaluation.experiments.MatchRunner;
+import games.GameType;
+import games.sushigo.SGGameState;
+import games.sushigo.SushiGoFeatureTracker;
+import players.searchCommon.ISearchReporter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * Generates labelled Sushi Go positions by self-play on all cores. Every decision of every game
+ * becomes a SelfPlayRecord (position, acting hand, root visit distribution, chosen action and
+ * final scores), streamed to a SelfPlayWriter file that SelfPlayReader can read back.
+ *
+ * Arguments (name=value):
+ *   agents   comma-separated player JSON files, seated in rotation
+ *            (default: the alphaAMAF, progressiveBias and UCB1-Tuned configs)
+ *   nPlayers number of players per game (default 3)
+ *   games    number of games (default 1000)
+ *   seed     seed of the first game; game i uses seed + i (default 0)
+ *   threads  worker threads (default: available processors)
+ *   out      output file (default selfplay.sgsp)
+ */
+public class SelfPlayGenerator {
+
+    static final String DEFAULT_AGENTS = "json/testplayers/alphaAMAF.json,json/testplayers/progressiveBias.json,json/sushigo/MCTS_UCB1_Tuned.json";
+
+    public static void main(String[] args) throws Exception {
+        List<AgentSpec> agents = AgentSpec.fromList(getArg(args, "agents", DEFAULT_AGENTS));
+        int nPlayers = getArg(args, "nPlayers", 3);
+        int nGames = getArg(args, "games", 1000);
+        long seed = getArg(args, "seed", 0L);
+        int threads = getArg(args, "threads", Runtime.getRuntime().availableProcessors());
+        Path out = Paths.get(getArg(args, "out", "selfplay.sgsp"));
+
+        long start = System.currentTimeMillis();
+        SelfPlayWriter writer = new SelfPlayWriter(out);
+        try (SelfPlayWriter closing = writer) {
+            run(agents, nPlayers, nGames, seed, threads, closing);
+        }
+        // close() has drained the queue, so the count is final
+        System.out.printf("%d games, %d records written to %s in %.1fs%n", nGames, writer.getRecordCount(), out,
+                (System.currentTimeMillis() - start) / 1000.0);
+    }
+
+    /**
+     * Plays the games on a fixed pool of worker threads, handing each finished game to the writer.
+     */
+    static void run(List<AgentSpec> agents, int nPlayers, int nGames, long seed, int threads, SelfPlayWriter writer) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger finished = new AtomicInteger();
+        List<Future<?>> games = new ArrayList<>();
+        for (int g = 0; g < nGames; g++) {
+            int game = g;
+            games.add(pool.submit(() -> {
+                List<AgentSpec> seats = new ArrayList<>();
+                for (int p = 0; p < nPlayers; p++) {
+                    seats.add(agents.get((game + p) % agents.size()));
+                }
+                RecordingObserver recorder = new RecordingObserver();
+                MatchRunner.play(GameType.SushiGo, seats, seed + game, recorder);
+                writer.submit(recorder.records);
+                int done = finished.incrementAndGet();
+                if (done % 100 == 0)
+                    System.out.printf("%d / %d games%n", done, nGames);
+                return null;
+            }));
+        }
+        pool.shutdown();
+        for (Future<?> game : games) {
+            game.get();
+        }
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Encodes each decision as it is made and completes the records with the final scores.
+     */
+    static class RecordingObserver implements MatchRunner.DecisionObserver {
+        final SushiGoFeatureTracker tracker = new SushiGoFeatureTracker();
+        final List<byte[]> partial = new ArrayList<>();
+        List<byte[]> records = Collections.emptyList();
+
+        @Override
+        public void onDecision(int decision, AbstractGameState state, int playerId, AbstractPlayer player,
+                               List<AbstractAction> actions, AbstractAction chosen, long nanos) {
+            Map<AbstractAction, Integer> visits = player instanceof ISearchReporter
+                    ? ((ISearchReporter) player).getRootVisits() : Collections.emptyMap();
+            partial.add(SelfPlayRecord.encodeDecision((SGGameState) state, playerId, actions, chosen, visits, tracker));
+        }
+
+        @Override
+        public void onGameOver(GameOutcome outcome, AbstractGameState finalState) {
+            records = new ArrayList<>(partial.size());
+            for (byte[] record : partial) {
+                records.add(SelfPlayRecord.complete(record, outcome.scores));
+            }
+        }
+    }
+}
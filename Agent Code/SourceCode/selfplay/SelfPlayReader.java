@@ -0,0 +1,87 @@
+package evaluation.selfplay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+/**
+ * Reads a file written by SelfPlayWriter. Each chunk is memory-mapped and inflated straight from
+ * the mapping into one reused buffer, so files of any size are read without loading them whole or
+ * copying the compressed bytes.
+ */
+public class SelfPlayReader {
+
+    private final Path file;
+
+    public SelfPlayReader(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Decodes every record in file order.
+     * @param consumer Receives each record.
+     * @return The number of records read.
+     */
+    public long forEach(Consumer<SelfPlayRecord> consumer) throws IOException {
+        long count = 0;
+        Inflater inflater = new Inflater();
+        ByteBuffer raw = ByteBuffer.allocate(0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8);
+            if (header.getInt() != SelfPlayWriter.MAGIC)
+                throw new IOException(file + " is not a self-play record file");
+            int version = header.getInt();
+            if (version != SelfPlayWriter.VERSION)
+                throw new IOException(file + " has format version " + version + ", expected " + SelfPlayWriter.VERSION);
+
+            long pos = 8;
+            while (pos + SelfPlayWriter.CHUNK_HEADER_BYTES <= size) {
+                MappedByteBuffer chunkHeader = channel.map(FileChannel.MapMode.READ_ONLY, pos, SelfPlayWriter.CHUNK_HEADER_BYTES);
+                int nRecords = chunkHeader.getInt();
+                int rawLength = chunkHeader.getInt();
+                int compressedLength = chunkHeader.getInt();
+                pos += SelfPlayWriter.CHUNK_HEADER_BYTES;
+                if (pos + compressedLength > size)
+                    throw new IOException(file + " ends in the middle of a chunk");
+
+                // The inflater reads the mapped chunk in place, without copying it to the heap first
+                MappedByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, pos, compressedLength);
+                if (raw.capacity() < rawLength)
+                    raw = ByteBuffer.allocate(rawLength);
+                raw.clear().limit(rawLength);
+                inflater.reset();
+                inflater.setInput(body);
+                while (raw.hasRemaining() && !inflater.finished()) {
+                    if (inflater.inflate(raw) == 0 && inflater.needsInput())
+                        break;
+                }
+                if (raw.hasRemaining())
+                    throw new IOException(file + " has a corrupt chunk at offset " + (pos - SelfPlayWriter.CHUNK_HEADER_BYTES));
+                pos += compressedLength;
+
+                ByteBuffer records = raw.flip();
+                for (int r = 0; r < nRecords; r++) {
+                    int length = records.getShort() & 0xFFFF;
+                    ByteBuffer record = records.slice();
+                    record.limit(length);
+                    consumer.accept(SelfPlayRecord.decode(record));
+                    records.position(records.position() + length);
+                    count++;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(file + " has a corrupt chunk", e);
+        } finally {
+            inflater.end();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,218 @@
+package evaluation.selfplay;
+
+import core.actions.AbstractAction;
+import games.sushigo.SGGameState;
+import games.sushigo.SushiGoFeatureTracker;
+import games.sushigo.SushiGoValueFeatures;
+import games.sushigo.actions.ChooseCard;
+import games.sushigo.cards.SGCard;
+import games.sushigo.cards.SGCard.SGCardType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * One recorded Sushi Go decision: a compact encoding of the position, the acting player's hand,
+ * the root visit count of each available action, the chosen action and the final scores.
+ *
+ * Binary layout (version 1), all multi-byte values big-endian:
+ * <pre>
+ *   u8  nPlayers, u8 nRounds, u8 round, u8 player
+ *   per player: i16 score, u8 puddings this game, u8 count per card type (SGCardType order)
+ *   u8  hand size, per card: u8 card type ordinal | maki icons &lt;&lt; 4
+ *   u8  number of actions, per action: u8 code, varint visits
+ *   u8  index of the chosen action (255 if not among the actions)
+ *   per player: i16 final score
+ * </pre>
+ * An action code is the chosen card's index in the hand, plus 128 when chopsticks are used;
+ * 127 marks an action that is not a ChooseCard.
+ */
+public class SelfPlayRecord {
+
+    static final SGCardType[] CARD_TYPES = SGCardType.values();
+    static final int CHOPSTICKS_FLAG = 0x80;
+    static final int OTHER_ACTION = 0x7F;
+    static final int NOT_LISTED = 0xFF;
+
+    public final int nPlayers;
+    public final int nRounds;
+    public final int round;
+    public final int player;
+    public final int[] scores;
+    public final int[] puddingAllGame;
+    // [player][card type ordinal], cards on the table this round (icons for Maki)
+    public final int[][] counts;
+    public final SGCardType[] hand;
+    public final int[] handMakiIcons;
+    public final int[] actionCodes;
+    public final int[] visits;
+    public final int chosen;
+    public final double[] finalScores;
+
+    private SelfPlayRecord(ByteBuffer in) {
+        nPlayers = in.get() & 0xFF;
+        nRounds = in.get() & 0xFF;
+        round = in.get() & 0xFF;
+        player = in.get() & 0xFF;
+        scores = new int[nPlayers];
+        puddingAllGame = new int[nPlayers];
+        counts = new int[nPlayers][CARD_TYPES.length];
+        for (int p = 0; p < nPlayers; p++) {
+            scores[p] = in.getShort();
+            puddingAllGame[p] = in.get() & 0xFF;
+            for (int t = 0; t < CARD_TYPES.length; t++) {
+                counts[p][t] = in.get() & 0xFF;
+            }
+        }
+        int handSize = in.get() & 0xFF;
+        hand = new SGCardType[handSize];
+        handMakiIcons = new int[handSize];
+        for (int c = 0; c < handSize; c++) {
+            int code = in.get() & 0xFF;
+            hand[c] = CARD_TYPES[code & 0x0F];
+            handMakiIcons[c] = code >>> 4;
+        }
+        int nActions = in.get() & 0xFF;
+        actionCodes = new int[nActions];
+        visits = new int[nActions];
+        for (int a = 0; a < nActions; a++) {
+            actionCodes[a] = in.get() & 0xFF;
+            visits[a] = readVarInt(in);
+        }
+        chosen = in.get() & 0xFF;
+        finalScores = new double[nPlayers];
+        for (int p = 0; p < nPlayers; p++) {
+            finalScores[p] = in.getShort();
+        }
+    }
+
+    /**
+     * @param in Buffer positioned at the start of a record; advanced past it.
+     * @return The decoded record.
+     */
+    public static SelfPlayRecord decode(ByteBuffer in) {
+        return new SelfPlayRecord(in);
+    }
+
+    /**
+     * Encodes everything about a decision except the final scores, which are only known once the
+     * game is over; see complete().
+     * @param state The true game state before the action is applied.
+     * @param playerId The acting player.
+     * @param actions The actions the player chose from.
+     * @param chosen The chosen action.
+     * @param rootVisits Root visit counts reported by the player; may be empty.
+     * @param tracker Scratch tracker, reset from the state.
+     * @return The partial record.
+     */
+    public static byte[] encodeDecision(SGGameState state, int playerId, List<? extends AbstractAction> actions,
+                                        AbstractAction chosen, Map<AbstractAction, Integer> rootVisits,
+                                        SushiGoFeatureTracker tracker) {
+        tracker.reset(state);
+        int nPlayers = tracker.getNPlayers();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + nPlayers * (3 + CARD_TYPES.length) + 3 * actions.size());
+        out.write(nPlayers);
+        out.write(tracker.getParams().nRounds);
+        out.write(tracker.getRound());
+        out.write(playerId);
+        for (int p = 0; p < nPlayers; p++) {
+            writeShort(out, tracker.getScore(p));
+            out.write(tracker.getPuddingAllGame(p));
+            for (SGCardType type : CARD_TYPES) {
+                out.write(tracker.getCount(p, type));
+            }
+        }
+
+        List<SGCard> hand = state.getPlayerHands().get(playerId).getComponents();
+        out.write(hand.size());
+        for (SGCard card : hand) {
+            int makiIcons = card.type == SGCardType.Maki ? card.count : 0;
+            out.write(card.type.ordinal() | makiIcons << 4);
+        }
+
+        out.write(actions.size());
+        int chosenIndex = NOT_LISTED;
+        for (int a = 0; a < actions.size(); a++) {
+            AbstractAction action = actions.get(a);
+            if (action instanceof ChooseCard) {
+                ChooseCard choice = (ChooseCard) action;
+                out.write(choice.cardIdx | (choice.useChopsticks ? CHOPSTICKS_FLAG : 0));
+            } else {
+                out.write(OTHER_ACTION);
+            }
+            writeVarInt(out, rootVisits.getOrDefault(action, 0));
+            if (chosenIndex == NOT_LISTED && action.equals(chosen))
+                chosenIndex = a;
+        }
+        out.write(chosenIndex);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param partial A record from encodeDecision().
+     * @param finalScores Final score of each player.
+     * @return The full record.
+     */
+    public static byte[] complete(byte[] partial, double[] finalScores) {
+        byte[] record = new byte[partial.length + 2 * finalScores.length];
+        System.arraycopy(partial, 0, record, 0, partial.length);
+        int pos = partial.length;
+        for (double score : finalScores) {
+            int s = (int) Math.round(score);
+            record[pos++] = (byte) (s >> 8);
+            record[pos++] = (byte) s;
+        }
+        return record;
+    }
+
+    /**
+     * @param perspective The player whose point of view is taken.
+     * @param out Destination for SushiGoValueFeatures.N_FEATURES values.
+     */
+    public void valueFeatures(int perspective, double[] out) {
+        SushiGoValueFeatures.extract(counts, puddingAllGame, scores, nPlayers, round, nRounds, perspective, out);
+    }
+
+    /**
+     * @return Root visits as a probability distribution over the actions, or uniform if there were none.
+     */
+    public double[] visitDistribution() {
+        double[] distribution = new double[visits.length];
+        long total = 0;
+        for (int v : visits) {
+            total += v;
+        }
+        for (int a = 0; a < visits.length; a++) {
+            distribution[a] = total > 0 ? (double) visits[a] / total : 1.0 / visits.length;
+        }
+        return distribution;
+    }
+
+    static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >> 8);
+        out.write(value);
+    }
+
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
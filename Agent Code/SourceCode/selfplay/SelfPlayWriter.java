@@ -0,0 +1,171 @@
+package evaluation.selfplay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+
+/**
+ * Streams self-play records to a chunked, compressed file. Game workers hand over the records of
+ * a finished game with submit(); a single writer thread batches them into chunks of about
+ * CHUNK_BYTES, deflates each chunk and appends it. The queue is bounded, so workers slow down
+ * rather than run out of memory if the disk cannot keep up.
+ *
+ * File layout: the magic "SGSP", an int format version, then chunks of
+ * <pre>
+ *   int nRecords, int rawLength, int compressedLength, byte[compressedLength]
+ * </pre>
+ * where the inflated chunk holds nRecords records, each prefixed by its length as an unsigned short.
+ */
+public class SelfPlayWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x53475350; // "SGSP"
+    static final int VERSION = 1;
+    static final int CHUNK_BYTES = 1 << 20;
+    static final int CHUNK_HEADER_BYTES = 12;
+
+    private static final List<byte[]> END = List.of();
+
+    private final FileChannel channel;
+    private final BlockingQueue<List<byte[]>> queue = new ArrayBlockingQueue<>(256);
+    private final Thread writerThread;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_BYTES + (1 << 16));
+    private final DataOutputStream chunkOut = new DataOutputStream(chunk);
+    private byte[] compressed = new byte[CHUNK_BYTES];
+    private int chunkRecords;
+    // Written by the writer thread only, read from any thread
+    private volatile long nRecords;
+    private volatile IOException failure;
+
+    public SelfPlayWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        writeFully(header);
+        writerThread = new Thread(this::drain, "SelfPlayWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues the records of one game, blocking while the queue is full. Fails instead of blocking
+     * once the writer thread has stopped on an error.
+     * @param records Complete records, each shorter than 64 KiB.
+     */
+    public void submit(List<byte[]> records) throws IOException {
+        if (failure != null)
+            throw failure;
+        if (records.isEmpty())
+            return;
+        try {
+            if (!enqueue(records))
+                throw failure != null ? failure : new IOException("Self-play writer has stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing self-play records", e);
+        }
+    }
+
+    // Waits for room in the queue while the writer thread is still taking from it
+    private boolean enqueue(List<byte[]> records) throws InterruptedException {
+        while (!queue.offer(records, 100, TimeUnit.MILLISECONDS)) {
+            if (failure != null || !writerThread.isAlive())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Records written so far; all of them once close() has returned.
+     */
+    public long getRecordCount() {
+        return nRecords;
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                List<byte[]> records = queue.take();
+                if (records == END)
+                    break;
+                for (byte[] record : records) {
+                    chunkOut.writeShort(record.length);
+                    chunkOut.write(record);
+                    chunkRecords++;
+                    nRecords++;
+                }
+                if (chunk.size() >= CHUNK_BYTES)
+                    flushChunk();
+            }
+            flushChunk();
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new IOException("Self-play writer interrupted", e);
+        }
+        // Nothing more will be written; let go of what is still queued
+        queue.clear();
+    }
+
+    private void flushChunk() throws IOException {
+        if (chunkRecords == 0)
+            return;
+        byte[] raw = chunk.toByteArray();
+        if (compressed.length < raw.length + 64)
+            compressed = new byte[raw.length + 64];
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            if (compressedLength == compressed.length && !deflater.finished()) {
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, compressedLength);
+                compressed = larger;
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES).putInt(chunkRecords).putInt(raw.length).putInt(compressedLength);
+        header.flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(compressed, 0, compressedLength));
+        chunk.reset();
+        chunkRecords = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes out everything queued so far and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (failure == null && writerThread.isAlive())
+                enqueue(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing self-play file", e);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -0,0 +1,342 @@
+package evaluation.tuning;
+
+import evaluation.experiments.AgentSpec;
+import evaluation.experiments.GameOutcome;
+import evaluation.experiments.MatchRunner;
+import evaluation.optimisation.TunableParameters;
+import games.GameType;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import players.PlayerParameters;
+
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static utilities.Utils.getArg;
+
+
+/**
+ * Tunes a player configuration by successive halving. A set of candidate configurations is sampled
+ * from the search space; every rung plays each surviving candidate's games in parallel against a
+ * fixed pool of opponents, then keeps the best 1/eta of them and multiplies the games per
+ * candidate by eta. Weak configurations are dropped after a few games and most of the budget goes
+ * to the strong ones. All candidates play the same seeds in the same seats, so their results are
+ * compared on equal deals.
+ *
+ * The search space maps parameter names to lists of values. Nested parameters are addressed with
+ * dots, e.g. "heuristic.FACTOR_MAKI_POSITION". Without a space file, the tuner uses the value lists
+ * the player registers for the search parameters in TUNED_PARAMETERS, plus half and double the
+ * default of each heuristic factor in TUNED_FACTORS. Budget and framework parameters are left alone.
+ * Sampled candidates that would play exactly like the base configuration are skipped.
+ *
+ * Arguments (name=value):
+ *   base       player JSON to tune (default json/testplayers/alphaAMAF.json)
+ *   space      JSON file with the search space (default: derived from the player, see above)
+ *   opponents  comma-separated player JSON files (default the files in json/testplayers)
+ *   nPlayers   players per game (default 3)
+ *   candidates number of sampled configurations, including the base one (default 27)
+ *   eta        reduction factor per rung (default 3)
+ *   games      games per candidate in the first rung (default 6)
+ *   seed       seed of the first game and of the sampling (default 0)
+ *   threads    worker threads (default: available processors)
+ *   out        file for the best configuration (default json/tuning/tuned.json). It is kept out of
+ *              json/testplayers, the default opponent pool, so a tuning run does not change later
+ *              tournaments unless the file is copied there.
+ */
+public class SuccessiveHalvingTuner {
+
+    // Player parameters the default space tunes, with the value lists the players register
+    static final List<String> TUNED_PARAMETERS = Arrays.asList("K", "rolloutLength", "maxTreeDepth", "amafConstant");
+    // SushiGoHeuristic factors the default space tunes; FACTOR_POTENTIAL_SCORE is not read by the heuristic
+    static final List<String> TUNED_FACTORS = Arrays.asList("FACTOR_CURRENT_SCORE", "FACTOR_TEMPURA_SET",
+            "FACTOR_SASHIMI_SET", "FACTOR_DUMPLING_SET", "FACTOR_WASABI_VALUE", "FACTOR_MAKI_POSITION",
+            "FACTOR_PUDDING_POSITION", "FACTOR_CHOPSTICKS_VALUE");
+
+    final GameType gameType = GameType.SushiGo;
+    final JSONObject base;
+    final List<AgentSpec> opponents;
+    final int nPlayers;
+    final long seed;
+    final ExecutorService pool;
+
+    public SuccessiveHalvingTuner(JSONObject base, List<AgentSpec> opponents, int nPlayers, long seed, int threads) {
+        this.base = base;
+        this.opponents = opponents;
+        this.nPlayers = nPlayers;
+        this.seed = seed;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseFile = getArg(args, "base", "json/testplayers/alphaAMAF.json");
+        String spaceFile = getArg(args, "space", "");
+        String opponentList = getArg(args, "opponents", "");
+        int nPlayers = getArg(args, "nPlayers", 3);
+        int nCandidates = getArg(args, "candidates", 27);
+        int eta = getArg(args, "eta", 3);
+        int games = getArg(args, "games", 6);
+        long seed = getArg(args, "seed", 0L);
+        int threads = getArg(args, "threads", Runtime.getRuntime().availableProcessors());
+        String out = getArg(args, "out", "json/tuning/tuned.json");
+
+        List<AgentSpec> opponents = opponentList.isEmpty() ? AgentSpec.fromDirectory("json/testplayers") : AgentSpec.fromList(opponentList);
+        Map<String, List<Object>> space = spaceFile.isEmpty() ? defaultSpace(AgentSpec.fromFile(baseFile)) : readSpace(spaceFile);
+        if (space.isEmpty())
+            throw new IllegalArgumentException("Nothing to tune in " + baseFile);
+        System.out.println("Search space: " + space);
+
+        SuccessiveHalvingTuner tuner = new SuccessiveHalvingTuner(readJSON(baseFile), opponents, nPlayers, seed, threads);
+        try {
+            Candidate best = tuner.run(tuner.sample(space, nCandidates), eta, games);
+            Path parent = Paths.get(out).toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+            try (FileWriter writer = new FileWriter(out)) {
+                writer.write(best.config.toJSONString());
+            }
+            System.out.println("Best " + best + " written to " + out);
+        } finally {
+            tuner.pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One configuration under evaluation, with its results so far.
+     */
+    static class Candidate {
+        final int id;
+        final Map<String, Object> overrides;
+        final JSONObject config;
+        final AgentSpec agent;
+        int nGames;
+        double totalPoints;
+
+        Candidate(int id, Map<String, Object> overrides, JSONObject config, AgentSpec agent) {
+            this.id = id;
+            this.overrides = overrides;
+            this.config = config;
+            this.agent = agent;
+        }
+
+        double mean() {
+            return nGames == 0 ? 0 : totalPoints / nGames;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("#%d %s: %.3f over %d games", id, overrides.isEmpty() ? "(base)" : overrides, mean(), nGames);
+        }
+    }
+
+    /**
+     * Samples distinct candidates from the space. The first candidate is always the base configuration;
+     * samples whose every value equals the base player's are dropped.
+     */
+    List<Candidate> sample(Map<String, List<Object>> space, int nCandidates) throws IOException {
+        Random rnd = new Random(seed);
+        long gridSize = 1;
+        for (List<Object> values : space.values()) {
+            gridSize = Math.min(Long.MAX_VALUE / values.size(), gridSize) * values.size();
+        }
+        int n = (int) Math.min(nCandidates, gridSize + 1);
+
+        List<Candidate> candidates = new ArrayList<>();
+        Set<Map<String, Object>> seen = new HashSet<>();
+        candidates.add(newCandidate(0, new LinkedHashMap<>()));
+        PlayerParameters baseParams = candidates.get(0).agent.newPlayer().getParameters();
+        while (candidates.size() < n && seen.size() < gridSize) {
+            Map<String, Object> overrides = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Object>> parameter : space.entrySet()) {
+                List<Object> values = parameter.getValue();
+                overrides.put(parameter.getKey(), values.get(rnd.nextInt(values.size())));
+            }
+            if (seen.add(overrides) && !sameAsBase(baseParams, overrides))
+                candidates.add(newCandidate(candidates.size(), overrides));
+        }
+        return candidates;
+    }
+
+    static boolean sameAsBase(TunableParameters base, Map<String, Object> overrides) {
+        for (Map.Entry<String, Object> override : overrides.entrySet()) {
+            String[] path = override.getKey().split("\\.");
+            Object value = base;
+            for (String name : path) {
+                if (!(value instanceof TunableParameters))
+                    return false;
+                value = ((TunableParameters) value).getParameterValue(name);
+            }
+            Object candidate = override.getValue();
+            if (value instanceof Number && candidate instanceof Number) {
+                if (((Number) value).doubleValue() != ((Number) candidate).doubleValue())
+                    return false;
+            } else if (value == null || candidate == null || !value.toString().equals(candidate.toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Candidate newCandidate(int id, Map<String, Object> overrides) throws IOException {
+        JSONObject config = apply(base, overrides);
+        Path file = Files.createTempFile("candidate" + id + "-", ".json");
+        file.toFile().deleteOnExit();
+        Files.write(file, config.toJSONString().getBytes());
+        return new Candidate(id, overrides, config, new AgentSpec("candidate" + id, file.toString()));
+    }
+
+    /**
+     * Runs the rungs until one candidate is left.
+     * @param candidates Candidates to race.
+     * @param eta Fraction of candidates dropped per rung is 1 - 1/eta; games per candidate grow by eta.
+     * @param firstRungGames Games per candidate in the first rung.
+     * @return The winner.
+     */
+    Candidate run(List<Candidate> candidates, int eta, int firstRungGames) throws Exception {
+        List<Candidate> alive = new ArrayList<>(candidates);
+        int target = firstRungGames;
+        for (int rung = 0; ; rung++) {
+            playUpTo(alive, target);
+            alive.sort(Comparator.comparingDouble(Candidate::mean).reversed());
+            System.out.printf("Rung %d, %d candidates at %d games:%n", rung, alive.size(), target);
+            for (Candidate candidate : alive) {
+                System.out.println("  " + candidate);
+            }
+            if (alive.size() == 1)
+                return alive.get(0);
+            alive = new ArrayList<>(alive.subList(0, Math.max(1, alive.size() / eta)));
+            target *= eta;
+        }
+    }
+
+    /**
+     * Tops every candidate up to the given number of games, playing all games of the rung in
+     * parallel. Earlier games are kept, so each rung only plays the difference.
+     */
+    void playUpTo(List<Candidate> candidates, int nGames) throws Exception {
+        List<Future<Double>> results = new ArrayList<>();
+        List<Candidate> owners = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            for (int g = candidate.nGames; g < nGames; g++) {
+                int game = g;
+                results.add(pool.submit(() -> playGame(candidate, game)));
+                owners.add(candidate);
+            }
+        }
+        for (int i = 0; i < results.size(); i++) {
+            Candidate candidate = owners.get(i);
+            candidate.totalPoints += results.get(i).get();
+            candidate.nGames++;
+        }
+    }
+
+    /**
+     * Plays game number g of a candidate. The seed, the candidate's seat and the opponents depend
+     * only on g, so every candidate faces the same games.
+     * @return The candidate's points: 1 for first place down to 0 for last.
+     */
+    double playGame(Candidate candidate, int g) {
+        int seat = g % nPlayers;
+        List<AgentSpec> seats = new ArrayList<>();
+        for (int p = 0; p < nPlayers; p++) {
+            seats.add(p == seat ? candidate.agent : opponents.get((g + p) % opponents.size()));
+        }
+        GameOutcome outcome = MatchRunner.play(gameType, seats, seed + g, null);
+        return (double) (nPlayers - outcome.ordinals[seat]) / (nPlayers - 1);
+    }
+
+    /**
+     * @return A deep copy of the config with the overrides applied; dotted names descend into nested objects.
+     */
+    static JSONObject apply(JSONObject config, Map<String, Object> overrides) {
+        JSONObject copy = deepCopy(config);
+        for (Map.Entry<String, Object> override : overrides.entrySet()) {
+            String[] path = override.getKey().split("\\.");
+            JSONObject target = copy;
+            for (int i = 0; i < path.length - 1; i++) {
+                Object child = target.get(path[i]);
+                if (!(child instanceof JSONObject))
+                    throw new IllegalArgumentException("No object '" + path[i] + "' for parameter " + override.getKey());
+                target = (JSONObject) child;
+            }
+            target.put(path[path.length - 1], override.getValue());
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    static JSONObject deepCopy(JSONObject config) {
+        JSONObject copy = new JSONObject();
+        for (Object key : config.keySet()) {
+            Object value = config.get(key);
+            copy.put(key, value instanceof JSONObject ? deepCopy((JSONObject) value) : value);
+        }
+        return copy;
+    }
+
+    /**
+     * Builds the search space from the value lists the player registers for TUNED_PARAMETERS, and
+     * from half and double each TUNED_FACTORS default of its heuristic.
+     */
+    static Map<String, List<Object>> defaultSpace(AgentSpec agent) {
+        PlayerParameters params = agent.newPlayer().getParameters();
+        Map<String, List<Object>> space = new LinkedHashMap<>();
+        for (String name : TUNED_PARAMETERS) {
+            if (!params.getParameterNames().contains(name))
+                continue;
+            List<Object> values = params.getPossibleValues(name);
+            if (values != null && values.size() > 1)
+                space.put(name, values);
+        }
+        Object heuristic = params.getParameterValue("heuristic");
+        if (heuristic instanceof TunableParameters) {
+            TunableParameters heuristicParams = (TunableParameters) heuristic;
+            for (String name : TUNED_FACTORS) {
+                if (!heuristicParams.getParameterNames().contains(name))
+                    continue;
+                Object value = heuristicParams.getParameterValue(name);
+                if (value instanceof Double)
+                    space.put("heuristic." + name, Arrays.asList((Double) value / 2, value, (Double) value * 2));
+            }
+        }
+        return space;
+    }
+
+    static Map<String, List<Object>> readSpace(String file) throws IOException {
+        JSONObject json = readJSON(file);
+        Map<String, List<Object>> space = new LinkedHashMap<>();
+        for (Object key : json.keySet()) {
+            Object values = json.get(key);
+            if (!(values instanceof JSONArray) || ((JSONArray) values).isEmpty())
+                throw new IllegalArgumentException("Parameter " + key + " in " + file + " needs a non-empty list of values");
+            space.put((String) key, new ArrayList<Object>((JSONArray) values));
+        }
+        return space;
+    }
+
+    static JSONObject readJSON(String file) throws IOException {
+        try (Reader reader = new FileReader(file)) {
+            return (JSONObject) new JSONParser().parse(reader);
+        } catch (ParseException e) {
+            throw new IOException("Could not parse " + file, e);
+        }
+    }
+}